@@ -0,0 +1,465 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// negamax alpha-beta search with quiescence and the selective techniques from SearchParameters
+public class AlphaBeta implements MoveStrategy {
+
+	static final int INFINITY = 1000000;
+	static final int MATE = 100000;
+	static final int MAX_DEPTH = 64;
+	// the clock is read once every 16 nodes, the stop flag in every node
+	private static final int CLOCK_CHECK_MASK = 15;
+	private static final int DEFAULT_TABLE_MEGABYTES = 4;
+
+	private final BoardEvaluator evaluator;
+	private final SearchParameters parameters;
+	private final int searchDepth;
+	// history heuristic: how often a quiet move from one tile to another caused a beta cutoff
+	private final int[][] history;
+	// may be shared with other AlphaBeta instances searching the same position on other threads
+	private final TranspositionTable transpositionTable;
+	private SearchListener listener;
+	// exact scores for positions with few pieces; null when no tablebases are loaded
+	private Tablebase tablebase;
+	private long nodesSearched;
+	private int bestScore;
+	private int rootScore;
+	private int completedDepth;
+	// stops the running search and ends its pondering; a new one for every search
+	private volatile SearchControl control;
+	// the running iteration ran out of time or nodes, or was stopped
+	private boolean aborted;
+	private long startTime;
+	private long hardDeadline;
+	private long nodeLimit;
+
+	public AlphaBeta(final int searchDepth) {
+		this(searchDepth, new StandardBoardEvaluator(), SearchParameters.createDefault());
+	}
+
+	public AlphaBeta(final int searchDepth, final BoardEvaluator evaluator, final SearchParameters parameters) {
+		this(searchDepth, evaluator, parameters, new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+	}
+
+	public AlphaBeta(final int searchDepth, final BoardEvaluator evaluator, final SearchParameters parameters,
+			final TranspositionTable transpositionTable) {
+		this.searchDepth = searchDepth;
+		this.evaluator = evaluator;
+		this.parameters = parameters;
+		this.transpositionTable = transpositionTable;
+		this.history = new int[64][64];
+		this.control = new SearchControl();
+	}
+
+	public void setSearchListener(final SearchListener listener) {
+		this.listener = listener;
+	}
+
+	public void setTablebase(final Tablebase tablebase) {
+		this.tablebase = tablebase;
+	}
+
+	// nodes visited by the last call to execute()
+	public long getNodesSearched() {
+		return this.nodesSearched;
+	}
+
+	// score of the best move from the current player's point of view
+	public int getBestScore() {
+		return this.bestScore;
+	}
+
+	// deepest iteration finished by the last call to execute()
+	public int getCompletedDepth() {
+		return this.completedDepth;
+	}
+
+	// milliseconds spent by the running or the last search
+	public long getElapsedTime() {
+		return (System.nanoTime() - this.startTime) / 1000000;
+	}
+
+	// ask the running search to return as soon as possible; safe to call from any thread
+	// a search that may not have started yet is stopped through the SearchControl it is given
+	public void stop() {
+		this.control.stop();
+	}
+
+	// moves the transposition table expects from the board on, starting with the best move
+	public List<Move> getPrincipalVariation(final Board board, final int maxLength) {
+		final List<Move> principalVariation = new ArrayList<>();
+		Board current = board;
+		while (principalVariation.size() < maxLength) {
+			final long entry = this.transpositionTable.probe(current.getZobristHash());
+			if (entry == 0 || !TranspositionTable.hasMove(entry)) {
+				break;
+			}
+			final Move move = findMove(current, TranspositionTable.getMoveSource(entry),
+					TranspositionTable.getMoveDestination(entry));
+			final MoveTransition transition = current.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().done()) {
+				break;
+			}
+			principalVariation.add(move);
+			current = transition.getNextBoard();
+		}
+		return principalVariation;
+	}
+
+	@Override
+	public Move execute(final Board board) {
+		return execute(board, SearchLimits.fixedDepth(this.searchDepth));
+	}
+
+	// anytime search: returns the best move of the last completed iteration
+	// when the limits are reached or stop() is called
+	public Move execute(final Board board, final SearchLimits limits) {
+		return execute(board, limits, new SearchControl(limits.isPonder()));
+	}
+
+	// the control is made by the caller before the search runs, so a stop or ponder hit sent before this call
+	// is not lost; whether the search ponders is up to the control
+	public Move execute(final Board board, final SearchLimits limits, final SearchControl control) {
+		this.control = control;
+		this.aborted = false;
+		this.nodesSearched = 0;
+		this.completedDepth = 0;
+		ageHistory();
+		final TimeManager timeManager = new TimeManager(limits, board.currentPlayer().getColor());
+		this.startTime = System.nanoTime();
+		this.hardDeadline = deadline(timeManager.getHardLimit());
+		final long softDeadline = deadline(timeManager.getSoftLimit());
+		this.nodeLimit = limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE;
+		final int maxDepth = maxDepth(limits);
+		Move bestMove = Move.NULL_MOVE;
+		// iterative deepening: the best move of each iteration is searched first in the next one
+		for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+			final Move iterationBestMove = searchRoot(board, depth, bestMove);
+			if (this.aborted) {
+				// the interrupted iteration is thrown away unless no iteration was completed at all
+				if (bestMove == Move.NULL_MOVE) {
+					bestMove = iterationBestMove;
+				}
+				break;
+			}
+			bestMove = iterationBestMove;
+			this.bestScore = this.rootScore;
+			this.completedDepth = depth;
+			if (this.listener != null) {
+				this.listener.iterationCompleted(depth, this.bestScore, this.nodesSearched, getElapsedTime(), bestMove);
+			}
+			// no legal move, or the next iteration would most likely not finish in time
+			if (bestMove == Move.NULL_MOVE || control.isStopped() || depth >= maxDepth
+					|| (!control.isPondering() && System.nanoTime() >= softDeadline)) {
+				break;
+			}
+		}
+		control.awaitPonderEnd();
+		return bestMove;
+	}
+
+	private int maxDepth(final SearchLimits limits) {
+		if (limits.getDepth() > 0) {
+			return Math.min(limits.getDepth(), MAX_DEPTH);
+		}
+		if (limits.isTimed() || limits.isInfinite() || limits.getNodes() > 0) {
+			return MAX_DEPTH;
+		}
+		return this.searchDepth;
+	}
+
+	private long deadline(final long millis) {
+		return millis == Long.MAX_VALUE ? Long.MAX_VALUE : this.startTime + millis * 1000000;
+	}
+
+	private boolean shouldStop() {
+		final SearchControl control = this.control;
+		if (!this.aborted && (control.isStopped() || (!control.isPondering() && (this.nodesSearched >= this.nodeLimit
+				|| ((this.nodesSearched & CLOCK_CHECK_MASK) == 0 && System.nanoTime() >= this.hardDeadline))))) {
+			this.aborted = true;
+		}
+		return this.aborted;
+	}
+
+	private Move searchRoot(final Board board, final int depth, final Move previousBest) {
+		Move bestMove = Move.NULL_MOVE;
+		int alpha = -INFINITY;
+		for (final Move move : orderMoves(board, previousBest)) {
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().done()) {
+				continue;
+			}
+			final Board nextBoard = transition.getNextBoard();
+			int score;
+			if (bestMove == Move.NULL_MOVE) {
+				score = -search(nextBoard, depth - 1, -INFINITY, INFINITY, 1, true);
+			} else {
+				score = -search(nextBoard, depth - 1, -alpha - 1, -alpha, 1, true);
+				if (score > alpha && !this.aborted) {
+					score = -search(nextBoard, depth - 1, -INFINITY, -alpha, 1, true);
+				}
+			}
+			if (this.aborted) {
+				// fall back to any legal move when the very first move could not be searched
+				if (bestMove == Move.NULL_MOVE) {
+					bestMove = move;
+				}
+				break;
+			}
+			if (score > alpha || bestMove == Move.NULL_MOVE) {
+				alpha = score;
+				bestMove = move;
+			}
+		}
+		this.rootScore = alpha;
+		if (!this.aborted && bestMove != Move.NULL_MOVE) {
+			this.transpositionTable.store(board.getZobristHash(), depth, alpha, TranspositionTable.EXACT, bestMove, 0);
+		}
+		return bestMove;
+	}
+
+	private int search(final Board board, final int depth, int alpha, final int beta, final int ply,
+			final boolean allowNullMove) {
+		if (depth <= 0) {
+			return quiescence(board, alpha, beta, ply);
+		}
+		this.nodesSearched++;
+		if (shouldStop()) {
+			return 0;
+		}
+		// the tablebase knows the distance to mate, no need to search any further
+		final int tablebaseScore = probeTablebase(board, ply);
+		if (tablebaseScore != Integer.MIN_VALUE) {
+			return tablebaseScore;
+		}
+		final boolean inCheck = board.currentPlayer().inCheck();
+		final boolean pvNode = beta - alpha > 1;
+		final int originalAlpha = alpha;
+
+		// a result of at least the same depth is already known
+		Move hashMove = Move.NULL_MOVE;
+		final long entry = this.transpositionTable.probe(board.getZobristHash());
+		if (entry != 0) {
+			if (!pvNode && TranspositionTable.getDepth(entry) >= depth) {
+				final int score = TranspositionTable.getScore(entry, ply);
+				final int flag = TranspositionTable.getFlag(entry);
+				if (flag == TranspositionTable.EXACT || (flag == TranspositionTable.LOWER_BOUND && score >= beta)
+						|| (flag == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+					return score;
+				}
+			}
+			if (TranspositionTable.hasMove(entry)) {
+				hashMove = findMove(board, TranspositionTable.getMoveSource(entry),
+						TranspositionTable.getMoveDestination(entry));
+			}
+		}
+		final int staticEval = relativeEvaluation(board, depth);
+
+		if (!inCheck && !pvNode) {
+			// reverse futility pruning: even after giving up a margin per ply we stay above beta
+			if (this.parameters.reverseFutilityPruning() && depth <= this.parameters.getReverseFutilityMaxDepth()
+					&& staticEval - this.parameters.getReverseFutilityMargin() * depth >= beta) {
+				return staticEval;
+			}
+			// null move pruning: pass the turn and search shallower with a null window around beta
+			// skipped without pieces other than pawns, where passing may be better than any move (zugzwang)
+			if (this.parameters.nullMovePruning() && allowNullMove && depth >= this.parameters.getNullMoveMinDepth()
+					&& hasPiecesOtherThanPawns(board.currentPlayer())) {
+				final Board passedBoard = Move.MoveFactory.createNullMove(board).execute();
+				final int score = -search(passedBoard, depth - 1 - this.parameters.getNullMoveReduction(), -beta,
+						-beta + 1, ply + 1, false);
+				if (this.aborted) {
+					return 0;
+				}
+				if (score >= beta) {
+					return beta;
+				}
+			}
+		}
+
+		// futility pruning: quiet moves cannot raise the score above alpha near the leaves
+		final boolean futile = this.parameters.futilityPruning() && !inCheck && !pvNode
+				&& depth <= this.parameters.getFutilityMaxDepth()
+				&& staticEval + this.parameters.getFutilityMargin() * depth <= alpha;
+
+		int bestScore = -INFINITY;
+		Move bestMove = Move.NULL_MOVE;
+		int legalMoves = 0;
+		for (final Move move : orderMoves(board, hashMove)) {
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().done()) {
+				continue;
+			}
+			legalMoves++;
+			final Board nextBoard = transition.getNextBoard();
+			final boolean quiet = isQuiet(move);
+			final boolean givesCheck = nextBoard.currentPlayer().inCheck();
+			if (futile && quiet && !givesCheck && legalMoves > 1) {
+				continue;
+			}
+			int score;
+			if (legalMoves == 1) {
+				score = -search(nextBoard, depth - 1, -beta, -alpha, ply + 1, true);
+			} else {
+				int reduction = 0;
+				if (this.parameters.lateMoveReductions() && depth >= this.parameters.getLateMoveMinDepth()
+						&& legalMoves > this.parameters.getLateMoveFullDepthMoves() && quiet && !inCheck
+						&& !givesCheck) {
+					// late move reductions: the later the move and the worse its history, the shallower the search
+					reduction = this.parameters.getLateMoveReduction();
+					if (legalMoves > 2 * this.parameters.getLateMoveFullDepthMoves()) {
+						reduction++;
+					}
+					if (historyScore(move) > 0) {
+						reduction--;
+					}
+					reduction = Math.max(0, Math.min(reduction, depth - 2));
+				}
+				// principal variation search: prove the move is worse than alpha with a null window
+				score = -search(nextBoard, depth - 1 - reduction, -alpha - 1, -alpha, ply + 1, true);
+				// the reduced search beat alpha, so search again at full depth
+				if (score > alpha && reduction > 0) {
+					score = -search(nextBoard, depth - 1, -alpha - 1, -alpha, ply + 1, true);
+				}
+				if (score > alpha && score < beta) {
+					score = -search(nextBoard, depth - 1, -beta, -alpha, ply + 1, true);
+				}
+			}
+			if (this.aborted) {
+				return 0;
+			}
+			if (score > bestScore) {
+				bestScore = score;
+				bestMove = move;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+			if (alpha >= beta) {
+				if (quiet) {
+					this.history[move.getCurrentCoordinate()][move.getDestination()] += depth * depth;
+				}
+				break;
+			}
+		}
+		// no legal move: checkmate or stalemate
+		if (legalMoves == 0) {
+			return inCheck ? -MATE + ply : 0;
+		}
+		final int flag = bestScore >= beta ? TranspositionTable.LOWER_BOUND
+				: bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+		this.transpositionTable.store(board.getZobristHash(), depth, bestScore, flag, bestMove, ply);
+		return bestScore;
+	}
+
+	// the legal move of the board going from one tile to another
+	static Move findMove(final Board board, final int source, final int destination) {
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			if (move.getCurrentCoordinate() == source && move.getDestination() == destination) {
+				return move;
+			}
+		}
+		return Move.NULL_MOVE;
+	}
+
+	// only captures are searched until the position is quiet
+	private int quiescence(final Board board, int alpha, final int beta, final int ply) {
+		this.nodesSearched++;
+		if (shouldStop()) {
+			return 0;
+		}
+		// the leaves of the main search are probed here, and the captures that lead into a table
+		final int tablebaseScore = probeTablebase(board, ply);
+		if (tablebaseScore != Integer.MIN_VALUE) {
+			return tablebaseScore;
+		}
+		final int standPat = relativeEvaluation(board, 0);
+		if (standPat >= beta) {
+			return standPat;
+		}
+		if (standPat > alpha) {
+			alpha = standPat;
+		}
+		for (final Move move : orderMoves(board, Move.NULL_MOVE)) {
+			if (isQuiet(move)) {
+				// captures and promotions are ordered first
+				break;
+			}
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().done()) {
+				continue;
+			}
+			final int score = -quiescence(transition.getNextBoard(), -beta, -alpha, ply + 1);
+			if (this.aborted) {
+				return 0;
+			}
+			if (score >= beta) {
+				return score;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+		}
+		return alpha;
+	}
+
+	// the exact score when the position is in a table, Integer.MIN_VALUE otherwise
+	private int probeTablebase(final Board board, final int ply) {
+		if (this.tablebase == null || board.getAllPieces().size() > Tablebase.MAX_PIECES) {
+			return Integer.MIN_VALUE;
+		}
+		return this.tablebase.score(board, ply, MATE);
+	}
+
+	// the evaluator scores from white's side, negamax needs the side to move
+	private int relativeEvaluation(final Board board, final int depth) {
+		final int score = this.evaluator.evaluate(board, depth);
+		return board.currentPlayer().getColor().white() ? score : -score;
+	}
+
+	// best move first, then captures by most valuable victim / least valuable attacker, then by history
+	private List<Move> orderMoves(final Board board, final Move bestMove) {
+		final List<Move> moves = new ArrayList<>(board.currentPlayer().getLegalMoves());
+		moves.sort((m1, m2) -> Integer.compare(orderScore(m2, bestMove), orderScore(m1, bestMove)));
+		return moves;
+	}
+
+	private int orderScore(final Move move, final Move bestMove) {
+		if (move.equals(bestMove)) {
+			return Integer.MAX_VALUE;
+		}
+		if (move instanceof Move.PawnPromotion) {
+			return 2000000;
+		}
+		if (move.isAttack()) {
+			return 1000000 + move.getAttackedPiece().getType().getPieceValue() * 10
+					- move.getMovedPiece().getType().getPieceValue() / 100;
+		}
+		return Math.min(historyScore(move), 999999);
+	}
+
+	private int historyScore(final Move move) {
+		return this.history[move.getCurrentCoordinate()][move.getDestination()];
+	}
+
+	private void ageHistory() {
+		for (final int[] from : this.history) {
+			for (int i = 0; i < from.length; i++) {
+				from[i] /= 2;
+			}
+		}
+	}
+
+	private static boolean isQuiet(final Move move) {
+		return !move.isAttack() && !(move instanceof Move.PawnPromotion);
+	}
+
+	private static boolean hasPiecesOtherThanPawns(final Player player) {
+		for (final Piece piece : player.getActivePieces()) {
+			if (piece.getType() != Piece.Type.PAWN && !piece.getType().isKing()) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
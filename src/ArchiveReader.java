@@ -0,0 +1,92 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// reads the games of a binary game archive one at a time, see GameArchive for the format
+public class ArchiveReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final FileChannel channel;
+	private ByteBuffer buffer;
+
+	public ArchiveReader(final Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.buffer.limit(0);
+		if (!fill(GameArchive.MAGIC.length + 1)) {
+			throw new IOException("Not a game archive: " + path);
+		}
+		for (final byte b : GameArchive.MAGIC) {
+			if (this.buffer.get() != b) {
+				throw new IOException("Not a game archive: " + path);
+			}
+		}
+		final byte version = this.buffer.get();
+		if (version != GameArchive.VERSION) {
+			throw new IOException("Unsupported game archive version " + version + ": " + path);
+		}
+	}
+
+	// the next game, or null at the end of the file
+	public ArchivedGame nextGame() throws IOException {
+		if (!fill(4)) {
+			return null;
+		}
+		final int length = this.buffer.getInt();
+		if (length < 4 || !fill(length)) {
+			throw new IOException("Truncated game archive");
+		}
+		final int tagCount = this.buffer.get() & 0xFF;
+		final Map<String, String> tags = new LinkedHashMap<>();
+		for (int i = 0; i < tagCount; i++) {
+			final String name = getString(this.buffer.get() & 0xFF, StandardCharsets.US_ASCII);
+			final String value = getString(this.buffer.getShort() & 0xFFFF, StandardCharsets.UTF_8);
+			tags.put(name, value);
+		}
+		final String result = GameArchive.result(this.buffer.get());
+		final byte[] plies = new byte[this.buffer.getShort() & 0xFFFF];
+		this.buffer.get(plies);
+		return new ArchivedGame(tags, result, plies);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	private String getString(final int length, final Charset charset) {
+		final String value = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(),
+				length, charset);
+		this.buffer.position(this.buffer.position() + length);
+		return value;
+	}
+
+	// at least the given number of bytes in the buffer; false at the end of the file
+	private boolean fill(final int bytes) throws IOException {
+		if (this.buffer.remaining() >= bytes) {
+			return true;
+		}
+		if (this.buffer.capacity() < bytes) {
+			final ByteBuffer larger = ByteBuffer.allocate(bytes);
+			larger.put(this.buffer);
+			larger.flip();
+			this.buffer = larger;
+		}
+		this.buffer.compact();
+		while (this.buffer.position() < bytes) {
+			if (this.channel.read(this.buffer) < 0) {
+				break;
+			}
+		}
+		this.buffer.flip();
+		return this.buffer.remaining() >= bytes;
+	}
+}
@@ -0,0 +1,165 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// writes games into a binary game archive, see GameArchive for the format
+// usage as PGN import: java ArchiveWriter <in.pgn> <out.cga>
+public class ArchiveWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	// one game is assembled here before it is copied into the output buffer
+	private ByteBuffer record;
+
+	public ArchiveWriter(final Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.record = ByteBuffer.allocate(1024);
+		this.buffer.put(GameArchive.MAGIC).put(GameArchive.VERSION);
+	}
+
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: java ArchiveWriter <in.pgn> <out.cga>");
+			System.exit(2);
+		}
+		final long start = System.nanoTime();
+		long games = 0;
+		long skipped = 0;
+		try (PgnReader reader = new PgnReader(Paths.get(args[0]));
+				ArchiveWriter writer = new ArchiveWriter(Paths.get(args[1]))) {
+			PgnGame game;
+			while ((game = reader.nextGame()) != null) {
+				if (writer.writeGame(game)) {
+					games++;
+				} else {
+					skipped++;
+				}
+			}
+		}
+		System.out.println(games + " games written, " + skipped + " skipped, "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	// PGN import: false when a move of the game cannot be played, the game is not written then
+	public boolean writeGame(final PgnGame game) throws IOException {
+		final List<Move> moves = new ArrayList<>();
+		try {
+			PgnUtilities.replay(game, moves);
+		} catch (final IllegalArgumentException e) {
+			return false;
+		}
+		if (moves.size() < game.getMoves().size()) {
+			return false;
+		}
+		final String result = game.getHeader("Result").isEmpty() ? game.getResult() : game.getHeader("Result");
+		final Board startBoard = moves.isEmpty() ? PgnUtilities.createStartingBoard(game) : moves.get(0).getBoard();
+		writeGame(game.getHeaders(), startBoard, moves, result);
+		return true;
+	}
+
+	// moves.get(i).getBoard() is the board move i is played on, e.g. the moves of Table.MoveLog;
+	// a game that does not start from the standard position gets a FEN tag so the reader starts from the same one,
+	// also when it has no moves
+	public void writeGame(final Map<String, String> tags, final Board startBoard, final List<Move> moves,
+			final String result) throws IOException {
+		if (moves.size() > GameArchive.MAX_PLIES) {
+			throw new IllegalArgumentException("Game has more than " + GameArchive.MAX_PLIES + " plies");
+		}
+		String fen = null;
+		if (!tags.containsKey("FEN")) {
+			fen = FenUtilities.createFENFromGame(startBoard);
+			if (fen.equals(FenUtilities.STANDARD_FEN)) {
+				fen = null;
+			}
+		}
+		this.record.clear();
+		final int tagCount = Math.min(tags.size() + (fen != null ? 1 : 0), 0xFF);
+		ensureRecordSpace(5);
+		this.record.putInt(0).put((byte) tagCount);
+		int written = 0;
+		if (fen != null) {
+			putTag("FEN", fen);
+			written++;
+		}
+		for (final Map.Entry<String, String> tag : tags.entrySet()) {
+			if (written++ == tagCount) {
+				break;
+			}
+			putTag(tag.getKey(), tag.getValue());
+		}
+		ensureRecordSpace(3 + moves.size());
+		this.record.put((byte) GameArchive.resultCode(result)).putShort((short) moves.size());
+		for (final Move move : moves) {
+			this.record.put((byte) GameArchive.moveIndex(move.getBoard(), move));
+		}
+		this.record.putInt(0, this.record.position() - 4);
+		this.record.flip();
+		while (this.record.hasRemaining()) {
+			if (!this.buffer.hasRemaining()) {
+				flush();
+			}
+			final int length = Math.min(this.record.remaining(), this.buffer.remaining());
+			final int limit = this.record.limit();
+			this.record.limit(this.record.position() + length);
+			this.buffer.put(this.record);
+			this.record.limit(limit);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			this.channel.close();
+		}
+	}
+
+	private void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	private void putTag(final String name, final String value) {
+		putString(name.getBytes(StandardCharsets.US_ASCII), 0xFF, false);
+		putString(value.getBytes(StandardCharsets.UTF_8), 0xFFFF, true);
+	}
+
+	// a length prefix of one or two bytes, then the bytes; longer strings are cut
+	private void putString(final byte[] bytes, final int maxLength, final boolean shortLength) {
+		final int length = Math.min(bytes.length, maxLength);
+		ensureRecordSpace(2 + length);
+		if (shortLength) {
+			this.record.putShort((short) length);
+		} else {
+			this.record.put((byte) length);
+		}
+		this.record.put(bytes, 0, length);
+	}
+
+	private void ensureRecordSpace(final int bytes) {
+		if (this.record.remaining() >= bytes) {
+			return;
+		}
+		final ByteBuffer larger = ByteBuffer.allocate(Math.max(this.record.capacity() * 2,
+				this.record.position() + bytes));
+		this.record.flip();
+		larger.put(this.record);
+		this.record = larger;
+	}
+}
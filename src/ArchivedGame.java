@@ -0,0 +1,67 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// one game of a binary game archive: its tags, its result and one byte per ply
+public final class ArchivedGame {
+
+	private final Map<String, String> tags;
+	private final String result;
+	private final byte[] plies;
+
+	public ArchivedGame(final Map<String, String> tags, final String result, final byte[] plies) {
+		this.tags = Collections.unmodifiableMap(tags);
+		this.result = result;
+		this.plies = plies;
+	}
+
+	public Map<String, String> getTags() {
+		return this.tags;
+	}
+
+	// value of a tag, or an empty string when the game does not have it
+	public String getTag(final String name) {
+		final String value = this.tags.get(name);
+		return value != null ? value : "";
+	}
+
+	public String getResult() {
+		return this.result;
+	}
+
+	public int getPlyCount() {
+		return this.plies.length;
+	}
+
+	// the index of each move among the moves of its position, see GameArchive
+	byte[] getPlies() {
+		return this.plies;
+	}
+
+	public Board createStartingBoard() {
+		final String fen = getTag("FEN");
+		return fen.isEmpty() ? Board.createStandardBoard() : FenUtilities.createGameFromFEN(fen);
+	}
+
+	// play the moves of the game, adding each one to playedMoves
+	// stops at the first move that cannot be played, so playedMoves may end up shorter than the game
+	public Board replay(final List<Move> playedMoves) {
+		final int[] keys = new int[256];
+		Board board = createStartingBoard();
+		for (final byte ply : this.plies) {
+			final Move move = GameArchive.moveAt(board, ply & 0xFF, keys);
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().done()) {
+				break;
+			}
+			playedMoves.add(move);
+			board = transition.getNextBoard();
+		}
+		return board;
+	}
+
+	@Override
+	public String toString() {
+		return getTag("White") + " - " + getTag("Black") + "  " + this.result + "  " + this.plies.length + " plies";
+	}
+}
@@ -18,6 +18,7 @@ public class Board {
 	private final Player currentPlayer;
 	private final Pawn enPassantPawn;
 	private final Move transitionMove;
+	private final long zobristHash;
 
 	private Board(final Builder builder) {
 		this.gameBoard = createGameBoard(builder);
@@ -31,6 +32,7 @@ public class Board {
 		this.blackPlayer = new BlackPlayer(this, whiteLegalMoves, blackLegalMoves);
 		this.currentPlayer = builder.turn.choosePlayer(this.whitePlayer, this.blackPlayer);
 		this.transitionMove = builder.transitionMove != null ? builder.transitionMove : Move.MoveFactory.getNullMove();
+		this.zobristHash = ZobristHashing.hash(this);
 	}
 
 	@Override
@@ -66,6 +68,11 @@ public class Board {
 		return this.transitionMove;
 	}
 
+	// 64-bit key of the position, used by the transposition table
+	public long getZobristHash() {
+		return this.zobristHash;
+	}
+
 	public Collection<Piece> getBlackPieces() {
 		return this.black;
 	}
@@ -0,0 +1,6 @@
+public interface BoardEvaluator {
+
+	// score of the board from white's point of view
+	// positive: white is better, negative: black is better
+	int evaluate(Board board, int depth);
+}
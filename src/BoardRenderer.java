@@ -0,0 +1,442 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.swing.ImageIcon;
+
+// draws boards to PNG or SVG without any window, for diagrams of many positions at once
+// usage: java -Djava.awt.headless=true BoardRenderer <positions.fen> <directory> [png|svg] [tile size] [threads]
+//
+// the board looks like the one Table shows: the same tile colors and the same piece images, scaled once to the
+// tile size; every thread draws into its own image and encodes with its own PNG encoder, both reused for
+// every board it renders, and ranks already deflated for an earlier board are shared between threads
+public class BoardRenderer implements Closeable {
+
+	public static final Color LIGHT_TILE_COLOR = Color.decode("#98AFC7");
+	public static final Color DARK_TILE_COLOR = Color.decode("#E5E4E2");
+	public static final int DEFAULT_TILE_SIZE = 45;
+	private static final String LIGHT_TILE_FILL = hex(LIGHT_TILE_COLOR);
+	private static final String DARK_TILE_FILL = hex(DARK_TILE_COLOR);
+	// deflated ranks kept; the cache starts over when it is full
+	private static final int MAX_CACHED_BANDS = 4096;
+
+	public enum Format {
+		PNG, SVG
+	}
+
+	private final PieceSprites sprites;
+	private final int tileSize;
+	private final ExecutorService pool;
+	private final ThreadLocal<Canvas> canvas;
+	// deflated ranks by bandKey, shared by all threads
+	private final Map<Long, Band> bandCache;
+	// <image> elements of the twelve pieces, by PieceSprites slot, shared by every SVG
+	private final String[] svgSprites;
+
+	public BoardRenderer(final PieceSprites sprites, final int tileSize, final int threads) {
+		if (tileSize <= 0 || threads <= 0) {
+			throw new IllegalArgumentException("Tile size and threads must be positive");
+		}
+		this.sprites = sprites;
+		this.tileSize = tileSize;
+		this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+			final Thread thread = new Thread(runnable, "board-renderer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.canvas = ThreadLocal.withInitial(() -> new Canvas(this.tileSize));
+		this.bandCache = new ConcurrentHashMap<>();
+		this.svgSprites = createSvgSprites();
+	}
+
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.err.println("usage: java -Djava.awt.headless=true BoardRenderer <positions.fen> <directory> "
+					+ "[png|svg] [tile size] [threads]");
+			System.exit(2);
+		}
+		final Format format = args.length > 2 ? Format.valueOf(args[2].toUpperCase()) : Format.PNG;
+		final int tileSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_TILE_SIZE;
+		final int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		final List<Board> boards = new ArrayList<>();
+		for (final String line : Files.readAllLines(Paths.get(args[0]))) {
+			if (!line.isBlank()) {
+				boards.add(FenUtilities.createGameFromFEN(line.trim()));
+			}
+		}
+		final Path directory = Paths.get(args[1]);
+		Files.createDirectories(directory);
+		try (BoardRenderer renderer = new BoardRenderer(PieceSprites.load("pieces/chessPieces/"), tileSize, threads)) {
+			final long start = System.nanoTime();
+			final List<byte[]> images = renderer.renderAll(boards, format, false);
+			final long elapsed = System.nanoTime() - start;
+			for (int i = 0; i < images.size(); i++) {
+				Files.write(directory.resolve("position-" + (i + 1) + "." + format.name().toLowerCase()),
+						images.get(i));
+			}
+			System.out.println(images.size() + " images, " + images.size() * 1000000000L / Math.max(1, elapsed)
+					+ " images/s");
+		}
+	}
+
+	// renders the boards on the pool; the images come back in the order of the boards
+	public List<byte[]> renderAll(final List<Board> boards, final Format format, final boolean flipped)
+			throws InterruptedException {
+		final List<Callable<byte[]>> jobs = new ArrayList<>(boards.size());
+		for (final Board board : boards) {
+			jobs.add(() -> render(board, format, flipped));
+		}
+		final List<byte[]> images = new ArrayList<>(boards.size());
+		for (final Future<byte[]> image : this.pool.invokeAll(jobs)) {
+			try {
+				images.add(image.get());
+			} catch (final ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return images;
+	}
+
+	public Future<byte[]> submit(final Board board, final Format format, final boolean flipped) {
+		return this.pool.submit(() -> render(board, format, flipped));
+	}
+
+	// renders on the calling thread; flipped puts black at the bottom
+	public byte[] render(final Board board, final Format format, final boolean flipped) {
+		return format == Format.PNG ? renderPng(board, flipped) : renderSvg(board, flipped);
+	}
+
+	// the image is put together from its ranks: the deflated rows of a rank depend only on its eight tiles,
+	// so a rank drawn before (an empty rank, a rank of the starting position, ...) is copied from the cache
+	public byte[] renderPng(final Board board, final boolean flipped) {
+		final Canvas canvas = this.canvas.get();
+		for (int viewRow = 0; viewRow < 8; viewRow++) {
+			final long key = bandKey(board, flipped, viewRow);
+			Band band = this.bandCache.get(key);
+			if (band == null) {
+				band = drawBand(board, flipped, viewRow, canvas);
+				if (this.bandCache.size() >= MAX_CACHED_BANDS) {
+					this.bandCache.clear();
+				}
+				this.bandCache.put(key, band);
+			}
+			canvas.bands[viewRow] = band;
+		}
+		return canvas.assemble(this.tileSize * 8, this.tileSize * 8, false, canvas.bands);
+	}
+
+	// the color of the first tile and the piece on each tile of a rank, 13 possibilities per tile
+	private static long bandKey(final Board board, final boolean flipped, final int viewRow) {
+		long key = 0;
+		for (int column = 0; column < 8; column++) {
+			final int viewIndex = viewRow * 8 + column;
+			final Piece piece = board.getTile(flipped ? 63 - viewIndex : viewIndex).getPiece();
+			key = key * 13 + (piece == null ? 0 : 1 + slot(piece.getColor(), piece.getType()));
+		}
+		final int firstTile = flipped ? 63 - viewRow * 8 : viewRow * 8;
+		return key * 2 + (isLight(firstTile) ? 1 : 0);
+	}
+
+	private Band drawBand(final Board board, final boolean flipped, final int viewRow, final Canvas canvas) {
+		final Graphics2D graphics = canvas.bandImage.createGraphics();
+		try {
+			for (int column = 0; column < 8; column++) {
+				final int viewIndex = viewRow * 8 + column;
+				final int tileId = flipped ? 63 - viewIndex : viewIndex;
+				final int x = column * this.tileSize;
+				graphics.setColor(isLight(tileId) ? LIGHT_TILE_COLOR : DARK_TILE_COLOR);
+				graphics.fillRect(x, 0, this.tileSize, this.tileSize);
+				final Piece piece = board.getTile(tileId).getPiece();
+				if (piece != null) {
+					final ImageIcon icon = this.sprites.getIcon(piece, this.tileSize);
+					if (icon != null) {
+						graphics.drawImage(icon.getImage(), x, 0, null);
+					}
+				}
+			}
+		} finally {
+			graphics.dispose();
+		}
+		return canvas.deflate(canvas.bandImage);
+	}
+
+	// the pieces are PNG images embedded once in <defs> and placed with <use>
+	public byte[] renderSvg(final Board board, final boolean flipped) {
+		final int size = this.tileSize * 8;
+		final StringBuilder svg = new StringBuilder(4096 + 1024 * this.svgSprites.length);
+		svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"")
+				.append(size).append("\" height=\"").append(size).append("\" viewBox=\"0 0 ").append(size).append(' ')
+				.append(size).append("\">\n<defs>\n");
+		final boolean[] used = new boolean[this.svgSprites.length];
+		for (final Piece piece : board.getAllPieces()) {
+			final int slot = slot(piece.getColor(), piece.getType());
+			if (!used[slot] && this.svgSprites[slot] != null) {
+				used[slot] = true;
+				svg.append(this.svgSprites[slot]);
+			}
+		}
+		svg.append("</defs>\n<rect width=\"").append(size).append("\" height=\"").append(size).append("\" fill=\"")
+				.append(DARK_TILE_FILL).append("\"/>\n");
+		for (int viewIndex = 0; viewIndex < 64; viewIndex++) {
+			final int tileId = flipped ? 63 - viewIndex : viewIndex;
+			final int x = viewIndex % 8 * this.tileSize;
+			final int y = viewIndex / 8 * this.tileSize;
+			if (isLight(tileId)) {
+				svg.append("<rect x=\"").append(x).append("\" y=\"").append(y).append("\" width=\"")
+						.append(this.tileSize).append("\" height=\"").append(this.tileSize).append("\" fill=\"")
+						.append(LIGHT_TILE_FILL).append("\"/>\n");
+			}
+			final Piece piece = board.getTile(tileId).getPiece();
+			if (piece != null && this.svgSprites[slot(piece.getColor(), piece.getType())] != null) {
+				svg.append("<use xlink:href=\"#").append(spriteId(piece.getColor(), piece.getType()))
+						.append("\" x=\"").append(x).append("\" y=\"").append(y).append("\"/>\n");
+			}
+		}
+		return svg.append("</svg>\n").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() {
+		this.pool.shutdown();
+	}
+
+	private String[] createSvgSprites() {
+		final String[] svgSprites = new String[PieceColor.values().length * Piece.Type.values().length];
+		final Canvas encoder = new Canvas(this.tileSize);
+		for (final PieceColor color : PieceColor.values()) {
+			for (final Piece.Type type : Piece.Type.values()) {
+				final ImageIcon icon = this.sprites.getIcon(color, type, this.tileSize);
+				if (icon == null) {
+					continue;
+				}
+				final byte[] png = encoder.encode((BufferedImage) icon.getImage());
+				svgSprites[slot(color, type)] = "<image id=\"" + spriteId(color, type) + "\" width=\"" + this.tileSize
+						+ "\" height=\"" + this.tileSize + "\" xlink:href=\"data:image/png;base64,"
+						+ Base64.getEncoder().encodeToString(png) + "\"/>\n";
+			}
+		}
+		return svgSprites;
+	}
+
+	// the same pattern as the board in Table: a8 is light
+	private static boolean isLight(final int tileId) {
+		return (tileId / 8 + tileId % 8) % 2 == 0;
+	}
+
+	private static int slot(final PieceColor color, final Piece.Type type) {
+		return color.ordinal() * Piece.Type.values().length + type.ordinal();
+	}
+
+	// e.g. WN, BK: the names of the image files
+	private static String spriteId(final PieceColor color, final Piece.Type type) {
+		return color.toString().substring(0, 1) + type;
+	}
+
+	private static String hex(final Color color) {
+		return String.format("#%06X", color.getRGB() & 0xFFFFFF);
+	}
+
+	// rows of an image, filtered and deflated on their own, flushed to a byte boundary: bands written one
+	// after the other form a valid deflate stream
+	private static final class Band {
+		final byte[] deflated;
+		// Adler-32 and length of the filtered rows, before deflating
+		final int adler;
+		final int length;
+
+		Band(final byte[] deflated, final int adler, final int length) {
+			this.deflated = deflated;
+			this.adler = adler;
+			this.length = length;
+		}
+	}
+
+	// the image a thread draws a rank into and a PNG encoder, kept for the life of the thread
+	// rows are written as 8 bit RGB or RGBA with the Sub filter, which turns the flat colors of a diagram into
+	// runs of zeros, and deflated at the fastest level; ImageIO tries every filter on every row and is far slower
+	private static final class Canvas {
+		private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+		private static final byte[] IHDR = { 'I', 'H', 'D', 'R' };
+		private static final byte[] IDAT = { 'I', 'D', 'A', 'T' };
+		private static final byte[] IEND = { 'I', 'E', 'N', 'D' };
+		// zlib header for deflate with a 32K window and fast compression, and the empty final deflate block
+		private static final byte[] ZLIB_HEADER = { 0x78, 0x01 };
+		private static final byte[] FINAL_BLOCK = { 0x03, 0x00 };
+		private static final int ADLER_BASE = 65521;
+		final BufferedImage bandImage;
+		final Band[] bands;
+		private final Deflater deflater;
+		private final Adler32 adler;
+		private final CRC32 crc;
+		private final ByteArrayOutputStream bytes;
+		private final ByteArrayOutputStream deflated;
+		private final byte[] buffer;
+		private byte[] rows;
+		private int[] pixels;
+
+		Canvas(final int tileSize) {
+			this.bandImage = new BufferedImage(tileSize * 8, tileSize, BufferedImage.TYPE_INT_RGB);
+			this.bands = new Band[8];
+			this.deflater = new Deflater(Deflater.BEST_SPEED, true);
+			this.adler = new Adler32();
+			this.crc = new CRC32();
+			this.bytes = new ByteArrayOutputStream(64 * tileSize * tileSize / 4);
+			this.deflated = new ByteArrayOutputStream(8 * tileSize * tileSize / 4);
+			this.buffer = new byte[8192];
+			this.rows = new byte[0];
+			this.pixels = new int[0];
+		}
+
+		// a whole image as PNG
+		byte[] encode(final BufferedImage source) {
+			return assemble(source.getWidth(), source.getHeight(), source.getColorModel().hasAlpha(),
+					new Band[] { deflate(source) });
+		}
+
+		Band deflate(final BufferedImage source) {
+			final int width = source.getWidth();
+			final int height = source.getHeight();
+			final boolean alpha = source.getColorModel().hasAlpha();
+			final int channels = alpha ? 4 : 3;
+			final int[] argb;
+			if (source.getType() == BufferedImage.TYPE_INT_RGB) {
+				argb = ((DataBufferInt) source.getRaster().getDataBuffer()).getData();
+			} else {
+				if (this.pixels.length < width * height) {
+					this.pixels = new int[width * height];
+				}
+				argb = source.getRGB(0, 0, width, height, this.pixels, 0, width);
+			}
+			final int rowLength = 1 + width * channels;
+			final int length = rowLength * height;
+			if (this.rows.length < length) {
+				this.rows = new byte[length];
+			}
+			for (int y = 0; y < height; y++) {
+				// filter type 1, Sub: each byte minus the same byte of the pixel to the left
+				int offset = y * rowLength;
+				this.rows[offset++] = 1;
+				int previous = 0;
+				for (int x = 0; x < width; x++) {
+					final int pixel = argb[y * width + x];
+					this.rows[offset++] = (byte) ((pixel >>> 16) - (previous >>> 16));
+					this.rows[offset++] = (byte) ((pixel >>> 8) - (previous >>> 8));
+					this.rows[offset++] = (byte) (pixel - previous);
+					if (alpha) {
+						this.rows[offset++] = (byte) ((pixel >>> 24) - (previous >>> 24));
+					}
+					previous = pixel;
+				}
+			}
+			this.adler.reset();
+			this.adler.update(this.rows, 0, length);
+			this.deflater.reset();
+			this.deflater.setInput(this.rows, 0, length);
+			this.deflated.reset();
+			int count;
+			do {
+				count = this.deflater.deflate(this.buffer, 0, this.buffer.length, Deflater.FULL_FLUSH);
+				this.deflated.write(this.buffer, 0, count);
+			} while (count == this.buffer.length);
+			return new Band(this.deflated.toByteArray(), (int) this.adler.getValue(), length);
+		}
+
+		// signature, header, the bands as one zlib stream in one IDAT chunk, end
+		byte[] assemble(final int width, final int height, final boolean alpha, final Band[] imageBands) {
+			this.bytes.reset();
+			this.bytes.write(SIGNATURE, 0, SIGNATURE.length);
+			final byte[] header = ByteBuffer.allocate(13).putInt(width).putInt(height).put((byte) 8)
+					.put((byte) (alpha ? 6 : 2)).put((byte) 0).put((byte) 0).put((byte) 0).array();
+			startChunk(IHDR, header.length);
+			write(header);
+			endChunk();
+			int dataLength = ZLIB_HEADER.length + FINAL_BLOCK.length + 4;
+			int checksum = 1;
+			for (final Band band : imageBands) {
+				dataLength += band.deflated.length;
+				checksum = combineAdler(checksum, band.adler, band.length);
+			}
+			startChunk(IDAT, dataLength);
+			write(ZLIB_HEADER);
+			for (final Band band : imageBands) {
+				write(band.deflated);
+			}
+			write(FINAL_BLOCK);
+			write(new byte[] { (byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8),
+					(byte) checksum });
+			endChunk();
+			startChunk(IEND, 0);
+			endChunk();
+			return this.bytes.toByteArray();
+		}
+
+		private void startChunk(final byte[] type, final int length) {
+			writeInt(length);
+			this.crc.reset();
+			write(type);
+		}
+
+		private void write(final byte[] data) {
+			this.crc.update(data);
+			this.bytes.write(data, 0, data.length);
+		}
+
+		private void endChunk() {
+			writeInt((int) this.crc.getValue());
+		}
+
+		private void writeInt(final int value) {
+			this.bytes.write(value >>> 24);
+			this.bytes.write(value >>> 16);
+			this.bytes.write(value >>> 8);
+			this.bytes.write(value);
+		}
+
+		// the Adler-32 of two pieces of data from the Adler-32 of each, as zlib's adler32_combine
+		private static int combineAdler(final int first, final int second, final int secondLength) {
+			final long remainder = secondLength % ADLER_BASE;
+			long sum1 = first & 0xFFFF;
+			long sum2 = remainder * sum1 % ADLER_BASE;
+			sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+			sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+			if (sum1 >= ADLER_BASE) {
+				sum1 -= ADLER_BASE;
+			}
+			if (sum1 >= ADLER_BASE) {
+				sum1 -= ADLER_BASE;
+			}
+			if (sum2 >= 2L * ADLER_BASE) {
+				sum2 -= 2L * ADLER_BASE;
+			}
+			if (sum2 >= ADLER_BASE) {
+				sum2 -= ADLER_BASE;
+			}
+			return (int) (sum1 | (sum2 << 16));
+		}
+	}
+}
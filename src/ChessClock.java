@@ -0,0 +1,222 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// the clock of one timed game: the time each side has left and whose time runs
+// usage (benchmark): java ChessClock [clocks] [seconds]
+//
+// press() is called after every move with the board the move led to: its current player is the side whose clock
+// starts, the other side is charged the time it took, less the delay, and gets the increment
+// the flag is not polled: every clock has one timer on a TimerWheel shared by all clocks, set to the moment the
+// running side's time is up, and moved on every press
+public final class ChessClock {
+
+	private final TimeControl timeControl;
+	private final TimerWheel wheel;
+	private final TimerWheel.Timer timer;
+	private final FlagListener listener;
+	// the fields below are guarded by this
+	private long whiteTime;
+	private long blackTime;
+	// the side whose time runs, null before start() and after stop() or a flag fall
+	private PieceColor running;
+	// wheel time the running side's turn started
+	private long turnStart;
+	// the turn start before the last press, for undoPress()
+	private long previousTurnStart;
+	private PieceColor flagged;
+
+	public ChessClock(final TimerWheel wheel, final TimeControl timeControl, final FlagListener listener) {
+		this(wheel, timeControl, listener, timeControl.getInitialTime(), timeControl.getInitialTime());
+	}
+
+	// a clock set to the times a game had left, e.g. one recovered from a MoveJournal
+	public ChessClock(final TimerWheel wheel, final TimeControl timeControl, final FlagListener listener,
+			final long whiteTime, final long blackTime) {
+		this.timeControl = timeControl;
+		this.wheel = wheel;
+		this.timer = wheel.newTimer(this::checkFlag);
+		this.listener = listener;
+		this.whiteTime = whiteTime;
+		this.blackTime = blackTime;
+	}
+
+	public static void main(final String[] args) throws InterruptedException {
+		final int clocks = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		try (TimerWheel wheel = new TimerWheel("chess-clock")) {
+			// half of the clocks are left to run out at known times, the other half are pressed at random
+			// the clocks count whole milliseconds, so a flag may fall up to 1 ms before the deadline measured here
+			final int flagging = clocks / 2;
+			final long[] lateness = new long[flagging];
+			final AtomicInteger flags = new AtomicInteger();
+			final ChessClock[] all = new ChessClock[clocks];
+			final long[] flagAt = new long[clocks];
+			final long start = System.nanoTime();
+			for (int i = 0; i < clocks; i++) {
+				final int index = i;
+				final long time = i < flagging ? 1 + ThreadLocalRandom.current().nextLong(seconds * 1000L) : 3600000;
+				all[i] = new ChessClock(wheel, TimeControl.withIncrement(time, 1000), (clock, color) -> {
+					lateness[flags.getAndIncrement()] = System.nanoTime() - flagAt[index];
+				});
+				flagAt[i] = System.nanoTime() + time * 1000000;
+				all[i].start(PieceColor.WHITE);
+			}
+			final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			long wheelThread = -1;
+			for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+				if (thread.getName().equals("chess-clock")) {
+					wheelThread = thread.getId();
+				}
+			}
+			final long cpuStart = threads.getThreadCpuTime(wheelThread);
+			long presses = 0;
+			while (flags.get() < flagging && System.nanoTime() - start < (seconds + 5) * 1000000000L) {
+				// a move every 5 s on average in every game that is pressed
+				for (int i = 0; i < (clocks - flagging) / 5000; i++) {
+					final ChessClock clock = all[flagging + ThreadLocalRandom.current().nextInt(clocks - flagging)];
+					clock.press(clock.getRunning().white() ? PieceColor.BLACK : PieceColor.WHITE);
+					presses++;
+				}
+				Thread.sleep(1);
+			}
+			final long elapsed = System.nanoTime() - start;
+			final long wheelCpu = threads.getThreadCpuTime(wheelThread) - cpuStart;
+			final long[] sorted = Arrays.copyOf(lateness, flags.get());
+			Arrays.sort(sorted);
+			System.out.println(clocks + " clocks, " + sorted.length + " flags, " + presses + " presses in "
+					+ elapsed / 1000000 + " ms; flag fall after the deadline p50 " + percentile(sorted, 50) + " us, p99 "
+					+ percentile(sorted, 99) + " us, max " + percentile(sorted, 100) + " us; wheel thread "
+					+ wheelCpu / 1000000 + " ms cpu");
+		}
+	}
+
+	private static long percentile(final long[] sorted, final int percent) {
+		return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)] / 1000;
+	}
+
+	public TimeControl getTimeControl() {
+		return this.timeControl;
+	}
+
+	// starts the clock of the side to move
+	public synchronized void start(final PieceColor color) {
+		if (this.running != null || this.flagged != null) {
+			throw new IllegalStateException("Clock already started");
+		}
+		run(color, this.wheel.now());
+	}
+
+	// after a move: the board's current player is to move next; false when the side that moved was out of time,
+	// in which case the clock stops with that side flagged
+	public boolean press(final Board board) {
+		return press(board.currentPlayer().getColor());
+	}
+
+	synchronized boolean press(final PieceColor next) {
+		if (this.flagged != null) {
+			return false;
+		}
+		if (this.running == null || this.running == next) {
+			throw new IllegalStateException("The clock of " + next + " is not the one stopped by this move");
+		}
+		final long now = this.wheel.now();
+		final long left = timeLeft(this.running, now);
+		if (left <= 0) {
+			flag(this.running);
+			return false;
+		}
+		setTime(this.running, left + this.timeControl.getIncrement());
+		this.previousTurnStart = this.turnStart;
+		run(next, now);
+		return true;
+	}
+
+	// takes back the last press when the move it was for could not be made: the side that moved is to move again
+	// and its time runs on as if the clock had not been pressed
+	synchronized void undoPress(final PieceColor mover) {
+		if (this.running == null || this.running == mover) {
+			throw new IllegalStateException("The clock of " + mover + " was not stopped by the last press");
+		}
+		final long used = Math.max(0, this.turnStart - this.previousTurnStart - this.timeControl.getDelay());
+		setTime(mover, (mover.white() ? this.whiteTime : this.blackTime) - this.timeControl.getIncrement() + used);
+		run(mover, this.previousTurnStart);
+	}
+
+	// stops both clocks, e.g. when the game ends on the board
+	public synchronized void stop() {
+		if (this.running != null) {
+			setTime(this.running, Math.max(0, timeLeft(this.running, this.wheel.now())));
+			this.running = null;
+		}
+		this.timer.cancel();
+	}
+
+	// the time left on the given side's clock now, in milliseconds
+	public synchronized long getTime(final PieceColor color) {
+		if (color == this.running) {
+			return Math.max(0, timeLeft(color, this.wheel.now()));
+		}
+		return color.white() ? this.whiteTime : this.blackTime;
+	}
+
+	public synchronized PieceColor getRunning() {
+		return this.running;
+	}
+
+	// the side that ran out of time, or null
+	public synchronized PieceColor getFlagged() {
+		return this.flagged;
+	}
+
+	private void run(final PieceColor color, final long now) {
+		this.running = color;
+		this.turnStart = now;
+		this.timer.schedule(deadline(color));
+	}
+
+	// wheel time the running side's time is up
+	private long deadline(final PieceColor color) {
+		return this.turnStart + this.timeControl.getDelay() + (color.white() ? this.whiteTime : this.blackTime);
+	}
+
+	// the stored time less what the running turn used beyond the delay
+	private long timeLeft(final PieceColor color, final long now) {
+		final long used = Math.max(0, now - this.turnStart - this.timeControl.getDelay());
+		return (color.white() ? this.whiteTime : this.blackTime) - used;
+	}
+
+	private void setTime(final PieceColor color, final long time) {
+		if (color.white()) {
+			this.whiteTime = time;
+		} else {
+			this.blackTime = time;
+		}
+	}
+
+	private void flag(final PieceColor color) {
+		setTime(color, 0);
+		this.running = null;
+		this.flagged = color;
+		this.timer.cancel();
+	}
+
+	// on the wheel thread; a press may have moved the deadline after the timer fired
+	private void checkFlag() {
+		final PieceColor color;
+		synchronized (this) {
+			color = this.running;
+			if (color == null) {
+				return;
+			}
+			if (timeLeft(color, this.wheel.now()) > 0) {
+				this.timer.schedule(deadline(color));
+				return;
+			}
+			flag(color);
+		}
+		this.listener.flagFell(this, color);
+	}
+}
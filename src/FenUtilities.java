@@ -0,0 +1,285 @@
+// Forsyth-Edwards Notation: one line describing a position
+// e.g. rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1
+// the reader walks the characters once by index: no regex, no split, no substrings
+public class FenUtilities {
+
+	public static final String STANDARD_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	private static final char[] WHITE_LETTERS = { 'P', 'N', 'B', 'R', 'Q', 'K' };
+	private static final char[] BLACK_LETTERS = { 'p', 'n', 'b', 'r', 'q', 'k' };
+
+	private FenUtilities() {
+		throw new RuntimeException();
+	}
+
+	public static Board createGameFromFEN(final CharSequence fen) {
+		final int length = fen.length();
+		// field 1: piece placement from a8 to h1; pieces are created once the castling rights are known
+		final char[] placement = new char[64];
+		int index = skipSpaces(fen, 0);
+		int tile = 0;
+		int whiteKings = 0;
+		int blackKings = 0;
+		while (index < length && fen.charAt(index) != ' ') {
+			final char c = fen.charAt(index++);
+			if (c == '/') {
+				if (tile == 0 || tile % 8 != 0) {
+					throw invalid(fen);
+				}
+			} else if (c >= '1' && c <= '8') {
+				tile += c - '0';
+			} else if (tile < 64 && pieceType(c) >= 0) {
+				placement[tile++] = c;
+				if (c == 'K') {
+					whiteKings++;
+				} else if (c == 'k') {
+					blackKings++;
+				}
+			} else {
+				throw invalid(fen);
+			}
+			if (tile > 64) {
+				throw invalid(fen);
+			}
+		}
+		// the players need exactly one king each
+		if (tile != 64 || whiteKings != 1 || blackKings != 1) {
+			throw invalid(fen);
+		}
+
+		// field 2: side to move
+		index = skipSpaces(fen, index);
+		if (index >= length) {
+			throw invalid(fen);
+		}
+		final PieceColor turn;
+		final char side = fen.charAt(index++);
+		if (side == 'w') {
+			turn = PieceColor.WHITE;
+		} else if (side == 'b') {
+			turn = PieceColor.BLACK;
+		} else {
+			throw invalid(fen);
+		}
+
+		// field 3: castling rights, optional
+		boolean whiteKingSide = false;
+		boolean whiteQueenSide = false;
+		boolean blackKingSide = false;
+		boolean blackQueenSide = false;
+		index = skipSpaces(fen, index);
+		while (index < length && fen.charAt(index) != ' ') {
+			switch (fen.charAt(index++)) {
+			case 'K':
+				whiteKingSide = true;
+				break;
+			case 'Q':
+				whiteQueenSide = true;
+				break;
+			case 'k':
+				blackKingSide = true;
+				break;
+			case 'q':
+				blackQueenSide = true;
+				break;
+			case '-':
+				break;
+			default:
+				throw invalid(fen);
+			}
+		}
+		// a right needs the king and that rook on their starting tiles: the King only remembers that it may castle
+		if ((whiteKingSide || whiteQueenSide) && placement[60] != 'K' || whiteKingSide && placement[63] != 'R'
+				|| whiteQueenSide && placement[56] != 'R' || (blackKingSide || blackQueenSide) && placement[4] != 'k'
+				|| blackKingSide && placement[7] != 'r' || blackQueenSide && placement[0] != 'r') {
+			throw invalid(fen);
+		}
+
+		// field 4: en passant target square, optional
+		int enPassantTarget = -1;
+		index = skipSpaces(fen, index);
+		if (index < length && fen.charAt(index) != '-') {
+			if (index + 1 >= length) {
+				throw invalid(fen);
+			}
+			final char file = fen.charAt(index);
+			final char rank = fen.charAt(index + 1);
+			if (file < 'a' || file > 'h' || (rank != '3' && rank != '6')) {
+				throw invalid(fen);
+			}
+			enPassantTarget = ('8' - rank) * 8 + (file - 'a');
+			index += 2;
+		} else if (index < length) {
+			index++;
+		}
+
+		// fields 5 and 6: halfmove clock and fullmove number, optional
+		// the board does not keep them, they are only checked
+		for (int field = 0; field < 2; field++) {
+			index = skipSpaces(fen, index);
+			while (index < length && fen.charAt(index) != ' ') {
+				final char c = fen.charAt(index++);
+				if (c < '0' || c > '9') {
+					throw invalid(fen);
+				}
+			}
+		}
+		if (skipSpaces(fen, index) != length) {
+			throw invalid(fen);
+		}
+
+		final Board.Builder builder = new Board.Builder();
+		Pawn enPassantPawn = null;
+		// the pawn that just jumped stands one tile past the target square
+		final int enPassantPawnPosition = enPassantTarget < 0 ? -1 : enPassantTarget + (turn.white() ? 8 : -8);
+		for (int i = 0; i < 64; i++) {
+			final char c = placement[i];
+			if (c == 0) {
+				continue;
+			}
+			final PieceColor color = c < 'a' ? PieceColor.WHITE : PieceColor.BLACK;
+			final boolean kingSide = color.white() ? whiteKingSide : blackKingSide;
+			final boolean queenSide = color.white() ? whiteQueenSide : blackQueenSide;
+			final Piece piece;
+			switch (pieceType(c)) {
+			case 0:
+				piece = new Pawn(i, color);
+				if (i == enPassantPawnPosition && color != turn) {
+					enPassantPawn = (Pawn) piece;
+				}
+				break;
+			case 1:
+				piece = new Knight(i, color);
+				break;
+			case 2:
+				piece = new Bishop(i, color);
+				break;
+			case 3:
+				// a rook that may still castle has not moved yet
+				final int kingSideCorner = color.white() ? 63 : 7;
+				final int queenSideCorner = color.white() ? 56 : 0;
+				piece = new Rook(i, color, (i == kingSideCorner && kingSide) || (i == queenSideCorner && queenSide));
+				break;
+			case 4:
+				piece = new Queen(i, color);
+				break;
+			default:
+				piece = new King(i, color, kingSide || queenSide, false, kingSide, queenSide);
+				break;
+			}
+			builder.setPiece(piece);
+		}
+		builder.setTurn(turn);
+		if (enPassantPawn != null) {
+			builder.setEnPassantPawn(enPassantPawn);
+		}
+		return builder.build();
+	}
+
+	// the board does not track the halfmove clock and the fullmove number, so they are written as 0 and 1
+	public static String createFENFromGame(final Board board) {
+		return appendFEN(board, new StringBuilder(90)).toString();
+	}
+
+	public static StringBuilder appendFEN(final Board board, final StringBuilder builder) {
+		for (int row = 0; row < 8; row++) {
+			if (row > 0) {
+				builder.append('/');
+			}
+			int emptyTiles = 0;
+			for (int i = row * 8; i < row * 8 + 8; i++) {
+				final Piece piece = board.getTile(i).getPiece();
+				if (piece == null) {
+					emptyTiles++;
+					continue;
+				}
+				if (emptyTiles > 0) {
+					builder.append((char) ('0' + emptyTiles));
+					emptyTiles = 0;
+				}
+				final int type = piece.getType().ordinal();
+				builder.append(piece.getColor().white() ? WHITE_LETTERS[type] : BLACK_LETTERS[type]);
+			}
+			if (emptyTiles > 0) {
+				builder.append((char) ('0' + emptyTiles));
+			}
+		}
+		builder.append(' ').append(board.currentPlayer().getColor().white() ? 'w' : 'b').append(' ');
+		final int castlingStart = builder.length();
+		if (canCastle(board, 60, 63, true)) {
+			builder.append('K');
+		}
+		if (canCastle(board, 60, 56, false)) {
+			builder.append('Q');
+		}
+		if (canCastle(board, 4, 7, true)) {
+			builder.append('k');
+		}
+		if (canCastle(board, 4, 0, false)) {
+			builder.append('q');
+		}
+		if (builder.length() == castlingStart) {
+			builder.append('-');
+		}
+		builder.append(' ');
+		final Pawn enPassantPawn = board.getEnPassantPawn();
+		if (enPassantPawn != null) {
+			// the target square is the tile the pawn jumped over
+			final int target = enPassantPawn.getPosition() - enPassantPawn.getColor().getDirection() * 8;
+			NotationCodec.appendSquare(target, builder);
+		} else {
+			builder.append('-');
+		}
+		return builder.append(" 0 1");
+	}
+
+	// castling is still possible when neither the king nor that rook has moved
+	static boolean canCastle(final Board board, final int kingPosition, final int rookPosition,
+			final boolean kingSide) {
+		final Piece king = board.getTile(kingPosition).getPiece();
+		final Piece rook = board.getTile(rookPosition).getPiece();
+		if (!(king instanceof King) || rook == null || !rook.getType().isRook() || king.getColor() != rook.getColor()
+				|| !king.firstMove() || !rook.firstMove()) {
+			return false;
+		}
+		final King castlingKing = (King) king;
+		return kingSide ? castlingKing.isKingSideCastleCapable() : castlingKing.isQueenSideCastleCapable();
+	}
+
+	// index into Piece.Type order, or -1 for a character that is no piece
+	private static int pieceType(final char c) {
+		switch (c) {
+		case 'P':
+		case 'p':
+			return 0;
+		case 'N':
+		case 'n':
+			return 1;
+		case 'B':
+		case 'b':
+			return 2;
+		case 'R':
+		case 'r':
+			return 3;
+		case 'Q':
+		case 'q':
+			return 4;
+		case 'K':
+		case 'k':
+			return 5;
+		default:
+			return -1;
+		}
+	}
+
+	private static int skipSpaces(final CharSequence fen, int index) {
+		while (index < fen.length() && fen.charAt(index) == ' ') {
+			index++;
+		}
+		return index;
+	}
+
+	private static IllegalArgumentException invalid(final CharSequence fen) {
+		return new IllegalArgumentException("Invalid FEN: " + fen);
+	}
+}
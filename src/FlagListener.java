@@ -0,0 +1,5 @@
+public interface FlagListener {
+
+	// called by the TimerWheel thread of the clock when the given side runs out of time; must return quickly
+	void flagFell(ChessClock clock, PieceColor color);
+}
@@ -0,0 +1,87 @@
+import java.util.Arrays;
+
+// compact binary game format
+// every move is one byte: its index in the moves of its position, sorted by source tile and then destination tile
+// the sorting makes the index independent of the order the pieces generate their moves in
+//
+// file:   magic "CHGA", version byte
+// game:   int length of the rest of the record
+//         byte number of tags, per tag: byte name length, name (ASCII), short value length, value (UTF-8)
+//         byte result (0 *, 1 1-0, 2 0-1, 3 1/2-1/2)
+//         short number of plies, then one byte per ply
+// the start position is the standard one unless there is a FEN tag
+public final class GameArchive {
+
+	static final byte[] MAGIC = { 'C', 'H', 'G', 'A' };
+	static final byte VERSION = 1;
+	static final int MAX_PLIES = 0xFFFF;
+	private static final String[] RESULTS = { "*", "1-0", "0-1", "1/2-1/2" };
+
+	private GameArchive() {
+		throw new RuntimeException();
+	}
+
+	// position of the move among the moves of its board; the moves list of a board has both legal moves
+	// and moves that leave the king in check, all of them are counted so no move has to be played to find out
+	public static int moveIndex(final Board board, final Move move) {
+		final int key = key(move);
+		int index = 0;
+		boolean found = false;
+		for (final Move other : board.currentPlayer().getLegalMoves()) {
+			final int otherKey = key(other);
+			if (otherKey < key) {
+				index++;
+			} else if (otherKey == key) {
+				found = true;
+			}
+		}
+		if (!found) {
+			throw new IllegalArgumentException("Move " + move + " is not a move of the position");
+		}
+		if (index > 0xFF) {
+			throw new IllegalArgumentException("Move " + move + " has index " + index + ", more than one byte");
+		}
+		return index;
+	}
+
+	// the move at an index, or the null move when the position has fewer moves
+	// keys is scratch space of at least 256 entries, so replaying a game sorts without allocating
+	public static Move moveAt(final Board board, final int index, final int[] keys) {
+		int count = 0;
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			if (count == keys.length) {
+				return Move.NULL_MOVE;
+			}
+			keys[count++] = key(move);
+		}
+		if (index >= count) {
+			return Move.NULL_MOVE;
+		}
+		Arrays.sort(keys, 0, count);
+		final int key = keys[index];
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			if (key(move) == key) {
+				return move;
+			}
+		}
+		return Move.NULL_MOVE;
+	}
+
+	static int resultCode(final String result) {
+		for (int i = 1; i < RESULTS.length; i++) {
+			if (RESULTS[i].equals(result)) {
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	static String result(final int code) {
+		return code >= 0 && code < RESULTS.length ? RESULTS[code] : RESULTS[0];
+	}
+
+	// a source and destination pair names one move: pawns only promote to a queen
+	private static int key(final Move move) {
+		return move.getCurrentCoordinate() * 64 + move.getDestination();
+	}
+}
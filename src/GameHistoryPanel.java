@@ -7,16 +7,19 @@ import javax.swing.JPanel;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 
 public class GameHistoryPanel extends JPanel {
 	private final DataModel model;
 	private final JScrollPane scrollPane;
+	// formats the moves, with the check and mate suffixes
+	private final PgnWriter pgnWriter;
 	private static final Dimension HISTORY_PANEL_DIMENSION = new Dimension(100, 400);
 
 	GameHistoryPanel() {
 		this.setLayout(new BorderLayout());
 		this.model = new DataModel();
+		this.pgnWriter = new PgnWriter();
 		final JTable table = new JTable(model);
 		table.setRowHeight(15);
 		this.scrollPane = new JScrollPane(table);
@@ -26,63 +29,89 @@ public class GameHistoryPanel extends JPanel {
 		this.setVisible(true);
 	}
 
+	// only the moves that changed since the last call are formatted: a take back truncates the model,
+	// a new move is appended, so a long game costs the same per move as a short one
 	public void redo(final Board board, final Table.MoveLog moveHistory) {
-		int currentRow = 0;
-		this.model.clear();
-		for (final Move move : moveHistory.getMoves()) {
-			final String moveText = move.toString();
-			if (move.getMovedPiece().getColor().white()) {
-				this.model.setValueAt(moveText, currentRow, 0);
-			} else if (move.getMovedPiece().getColor().black()) {
-				this.model.setValueAt(moveText, currentRow, 1);
-				currentRow++;
-			}
-		}
-		if (moveHistory.getMoves().size() > 0) {
-			final Move lastMove = moveHistory.getMoves().get(moveHistory.size() - 1);
-			final String moveText = lastMove.toString();
-
-			if (lastMove.getMovedPiece().getColor().white()) {
-				this.model.setValueAt(moveText + calculateCheckAndCheckMateHash(board), currentRow, 0);
-			} else if (lastMove.getMovedPiece().getColor().black()) {
-				this.model.setValueAt(moveText + calculateCheckAndCheckMateHash(board), currentRow - 1, 1);
-			}
-		}
+		final List<Move> moves = moveHistory.getMoves();
+		final int common = moveHistory.commonPlies(this.model.moves);
+		final int shown = this.model.getPlyCount();
+		if (common == shown && common == moves.size()) {
+			return;
+		}
+		this.model.truncate(common);
+		final List<String> texts = new ArrayList<>(moves.size() - common);
+		final StringBuilder builder = new StringBuilder();
+		for (int i = common; i < moves.size(); i++) {
+			// the board after the move gives the check or mate suffix
+			final Board nextBoard = i + 1 < moves.size() ? moves.get(i + 1).getBoard() : board;
+			builder.setLength(0);
+			texts.add(this.pgnWriter.appendSan(moves.get(i), nextBoard, builder).toString());
+		}
+		this.model.append(moves.subList(common, moves.size()), texts);
 
 		final JScrollBar vertical = scrollPane.getVerticalScrollBar();
 		vertical.setValue(vertical.getMaximum());
-
-	}
-	
-	private String calculateCheckAndCheckMateHash(final Board board) {
-		if (board.currentPlayer().inCheckMate()) {
-			return "#";
-		} else if (board.currentPlayer().inCheck()) {
-			return "+";
-		}
-		return "";
 	}
 
-	private static class DataModel extends DefaultTableModel {
+	// white moves on the left, black moves on the right; a game started by black leaves the first white cell empty
+	private static class DataModel extends AbstractTableModel {
 
-		private final List<Row> values;
 		private static final String[] NAMES = { "White", "Black" };
+		private final List<Move> moves;
+		// the text of each ply, formatted when it was appended
+		private final List<String> texts;
+		// 1 when the first move is a black move
+		private int offset;
 
 		DataModel() {
-			this.values = new ArrayList<>();
+			this.moves = new ArrayList<>();
+			this.texts = new ArrayList<>();
+		}
+
+		int getPlyCount() {
+			return this.moves.size();
+		}
+
+		void truncate(final int plies) {
+			if (plies == this.moves.size()) {
+				return;
+			}
+			final int oldRows = getRowCount();
+			this.moves.subList(plies, this.moves.size()).clear();
+			this.texts.subList(plies, this.texts.size()).clear();
+			final int newRows = getRowCount();
+			if (newRows < oldRows) {
+				fireTableRowsDeleted(newRows, oldRows - 1);
+			}
+			if (newRows > 0 && (plies + this.offset) % 2 == 1) {
+				// the last row lost its black move
+				fireTableRowsUpdated(newRows - 1, newRows - 1);
+			}
 		}
 
-		public void clear() {
-			this.values.clear();
-			setRowCount(0);
+		void append(final List<Move> newMoves, final List<String> newTexts) {
+			if (newMoves.isEmpty()) {
+				return;
+			}
+			if (this.moves.isEmpty()) {
+				this.offset = newMoves.get(0).getMovedPiece().getColor().white() ? 0 : 1;
+			}
+			final int oldRows = getRowCount();
+			final boolean fillsLastRow = oldRows > 0 && (this.moves.size() + this.offset) % 2 == 1;
+			this.moves.addAll(newMoves);
+			this.texts.addAll(newTexts);
+			if (fillsLastRow) {
+				fireTableCellUpdated(oldRows - 1, 1);
+			}
+			final int newRows = getRowCount();
+			if (newRows > oldRows) {
+				fireTableRowsInserted(oldRows, newRows - 1);
+			}
 		}
 
 		@Override
 		public int getRowCount() {
-			if (this.values == null) {
-				return 0;
-			}
-			return this.values.size();
+			return (this.moves.size() + this.offset + 1) / 2;
 		}
 
 		@Override
@@ -92,38 +121,13 @@ public class GameHistoryPanel extends JPanel {
 
 		@Override
 		public Object getValueAt(final int row, final int col) {
-			final Row currentRow = this.values.get(row);
-			// white history is on the left
-			if (col == 0) {
-				return currentRow.getWhiteMove();
-			// black history is on the right
-			} else if (col == 1) {
-				return currentRow.getBlackMove();
-			}
-			return null;
-		}
-
-		@Override
-		public void setValueAt(final Object aValue, final int row, final int col) {
-			final Row currentRow;
-			if (this.values.size() <= row) {
-				currentRow = new Row();
-				this.values.add(currentRow);
-			} else {
-				currentRow = this.values.get(row);
-			}
-			if (col == 0) {
-				currentRow.setWhiteMove((String) aValue);
-				fireTableRowsInserted(row, row);
-			} else if (col == 1) {
-				currentRow.setBlackMove((String) aValue);
-				fireTableCellUpdated(row, col);
-			}
+			final int ply = row * 2 + col - this.offset;
+			return ply >= 0 && ply < this.texts.size() ? this.texts.get(ply) : null;
 		}
 
 		@Override
 		public Class<?> getColumnClass(final int col) {
-			return Move.class;
+			return String.class;
 		}
 
 		@Override
@@ -132,30 +136,4 @@ public class GameHistoryPanel extends JPanel {
 		}
 
 	}
-
-	private static class Row {
-
-		private String whiteMove;
-		private String blackMove;
-
-		Row() {
-		}
-
-		public String getWhiteMove() {
-			return this.whiteMove;
-		}
-
-		public String getBlackMove() {
-			return this.blackMove;
-		}
-
-		public void setWhiteMove(final String move) {
-			this.whiteMove = move;
-		}
-
-		public void setBlackMove(final String move) {
-			this.blackMove = move;
-		}
-
-	}
-}
\ No newline at end of file
+}
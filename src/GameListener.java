@@ -0,0 +1,6 @@
+public interface GameListener {
+
+	// called by GameSessionManager after every command that changed a game, on the thread that ran it;
+	// the calls for one game come one at a time and in order, so they must return quickly and never throw
+	void gameChanged(GameSessionManager.GameState state);
+}
@@ -0,0 +1,771 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// games over HTTP, on top of GameSessionManager and the HttpServer of the JDK
+// usage: java GameServer [port] [threads] [journal directory]
+//        java GameServer load [games] [spectators per game] [plies] [journal directory]
+//        (a server and its load generator in one JVM)
+//
+// requests are plain text, answers small JSON objects:
+//   POST   /games[?clock=180+2] body: a FEN or nothing           the new game, timed when a TimeControl is given
+//   GET    /games/{id}                                           the game
+//   POST   /games/{id}/moves    body: e2e4 or Nf3                 400 for an illegal move, 409 when the game is over
+//   POST   /games/{id}/resign   body: white or black
+//   POST   /games/{id}/draw     body: white or black              an offer, or the acceptance of the opponent's
+//   DELETE /games/{id}                                           also done by the server FINISHED_GAME_LIFETIME after
+//                                                                the game ends
+//   GET    /games/{id}/events   server-sent events for players and spectators: one "state" event with the
+//                               whole position, then one "move", "offer" or "end" event per change; closed when
+//                               the game ends
+//
+// an event is encoded once and its bytes are shared by every spectator of the game; the spectators are written
+// by a small pool, each by at most one thread at a time, never by the thread that ran the move
+// a spectator that falls more than RECENT_EVENTS behind is sent one "state" event in place of the deltas it missed,
+// so a slow consumer costs the others no memory; one whose write blocks for WRITE_TIMEOUT has stopped reading and is
+// dropped, so it holds a writer for no longer than that
+// with a journal directory the games survive a restart: they are journaled by GameSessionManager, and a change
+// is only acknowledged once it is on disk
+public class GameServer implements Closeable {
+
+	// deltas kept per game for spectators that are behind
+	static final int RECENT_EVENTS = 64;
+	private static final int DEFAULT_PORT = 8080;
+	private static final int MAX_GAMES = 100000;
+	private static final int MAX_BODY_LENGTH = 256;
+	// milliseconds
+	private static final long WRITE_TIMEOUT = 10000;
+	private static final long FINISHED_GAME_LIFETIME = 300000;
+
+	static {
+		// the headers and the body of an answer, and every event, are separate writes: without this each of them
+		// waits for the client's delayed acknowledgement, some 40 ms
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService handlers;
+	private final ExecutorService writers;
+	private final TimerWheel timers;
+	private final GameSessionManager manager;
+	private final Map<Long, Channel> channels;
+	// milliseconds a finished game stays, for the clients to fetch its result
+	private final long finishedGameLifetime;
+
+	public GameServer(final int port, final int threads) throws IOException {
+		this(port, threads, null);
+	}
+
+	// continues the games journaled in the directory; null keeps the games in memory only
+	public GameServer(final int port, final int threads, final Path journalDirectory) throws IOException {
+		this(port, threads, journalDirectory, FINISHED_GAME_LIFETIME);
+	}
+
+	GameServer(final int port, final int threads, final Path journalDirectory, final long finishedGameLifetime)
+			throws IOException {
+		this.manager = journalDirectory == null ? new GameSessionManager(threads, MAX_GAMES)
+				: GameSessionManager.open(threads, MAX_GAMES, journalDirectory);
+		this.finishedGameLifetime = finishedGameLifetime;
+		this.channels = new ConcurrentHashMap<>();
+		this.handlers = Executors.newFixedThreadPool(threads, runnable -> newThread(runnable, "game-server"));
+		this.writers = Executors.newFixedThreadPool(threads, runnable -> newThread(runnable, "game-server-events"));
+		this.timers = new TimerWheel("game-server-timers");
+		for (final long gameId : this.manager.getGameIds()) {
+			final GameSessionManager.GameState state = this.manager.getState(gameId);
+			this.channels.put(gameId, new Channel(state));
+			// finished before the restart
+			if (state.getStatus() != GameSessionManager.Status.ACTIVE) {
+				evictLater(gameId);
+			}
+		}
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.server.createContext("/games", this::handle);
+		this.server.setExecutor(this.handlers);
+		this.manager.setGameListener(this::gameChanged);
+	}
+
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		if (args.length > 0 && args[0].equals("load")) {
+			final int games = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+			final int spectators = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+			final int plies = args.length > 3 ? Integer.parseInt(args[3]) : 40;
+			try (GameServer server = new GameServer(0, Runtime.getRuntime().availableProcessors() * 2,
+					args.length > 4 ? Paths.get(args[4]) : null)) {
+				server.start();
+				new LoadGenerator(server.getPort(), games, spectators, plies).run();
+			}
+			return;
+		}
+		final int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+		final GameServer server = new GameServer(port, threads, args.length > 2 ? Paths.get(args[2]) : null);
+		// what is journaled but not yet on disk is written when the server is stopped
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+		server.start();
+		System.out.println("Listening on port " + server.getPort());
+	}
+
+	public void start() {
+		this.server.start();
+	}
+
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		this.server.stop(0);
+		for (final Channel channel : this.channels.values()) {
+			channel.closeAll();
+		}
+		this.handlers.shutdown();
+		this.writers.shutdown();
+		this.timers.close();
+		this.manager.close();
+	}
+
+	private static Thread newThread(final Runnable runnable, final String name) {
+		final Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	// runs on the thread of the game's last command, see GameListener
+	private void gameChanged(final GameSessionManager.GameState state) {
+		final Channel channel = this.channels.get(state.getGameId());
+		if (channel != null) {
+			channel.publish(state);
+			if (state.getStatus() != GameSessionManager.Status.ACTIVE) {
+				evictLater(state.getGameId());
+			}
+		}
+	}
+
+	// a finished game still counts against MAX_GAMES until it is removed, so the server does not wait for a DELETE
+	private void evictLater(final long gameId) {
+		this.timers.newTimer(() -> removeGame(gameId)).schedule(this.timers.now() + this.finishedGameLifetime);
+	}
+
+	// neither blocks: the game is closed by its own thread and the streams by the writers
+	private void removeGame(final long gameId) {
+		this.manager.closeGame(gameId);
+		final Channel channel = this.channels.remove(gameId);
+		if (channel != null) {
+			channel.closeAll();
+		}
+	}
+
+	private void handle(final HttpExchange exchange) throws IOException {
+		try {
+			final String[] path = exchange.getRequestURI().getPath().split("/");
+			final String method = exchange.getRequestMethod();
+			if (path.length == 2 && method.equals("POST")) {
+				final String fen = readBody(exchange);
+				final String query = exchange.getRequestURI().getQuery();
+				final TimeControl timeControl = query != null && query.startsWith("clock=")
+						? TimeControl.parse(query.substring("clock=".length())) : null;
+				final long gameId = this.manager.createGame(fen.isEmpty() ? null : fen, timeControl);
+				final GameSessionManager.GameState state = this.manager.getState(gameId);
+				this.channels.put(gameId, new Channel(state));
+				reply(exchange, 201, CompletableFuture.completedFuture(state));
+				return;
+			}
+			final Channel channel = path.length == 3 || path.length == 4 ? channel(path[2]) : null;
+			if (channel == null) {
+				send(exchange, 404, error("No such resource"));
+				return;
+			}
+			final long gameId = channel.gameId;
+			final String action = path.length == 4 ? path[3] : "";
+			switch (method + " " + action) {
+			case "GET ":
+				send(exchange, 200, appendState(this.manager.getState(gameId), new StringBuilder()));
+				break;
+			case "DELETE ":
+				removeGame(gameId);
+				send(exchange, 204, null);
+				break;
+			case "POST moves":
+				reply(exchange, 200, this.manager.move(gameId, readBody(exchange)));
+				break;
+			case "POST resign":
+				reply(exchange, 200, this.manager.resign(gameId, readColor(exchange)));
+				break;
+			case "POST draw":
+				reply(exchange, 200, this.manager.offerDraw(gameId, readColor(exchange)));
+				break;
+			case "GET events":
+				subscribe(exchange, channel);
+				break;
+			default:
+				send(exchange, 405, error("Method not allowed"));
+				break;
+			}
+		} catch (final IllegalArgumentException e) {
+			send(exchange, 400, error(e.getMessage()));
+		} catch (final IllegalStateException e) {
+			send(exchange, 409, error(e.getMessage()));
+		} catch (final RuntimeException e) {
+			// anything else is a bug here rather than a bad request, but the client still gets an answer
+			send(exchange, 500, error(String.valueOf(e)));
+		}
+	}
+
+	private Channel channel(final String gameId) {
+		try {
+			return this.channels.get(Long.parseLong(gameId));
+		} catch (final NumberFormatException e) {
+			return null;
+		}
+	}
+
+	// waits for the game to run the command and for the journal to have it on disk; the game's thread is never
+	// the one writing to the client, and spectators see the change without waiting for the disk
+	private void reply(final HttpExchange exchange, final int status,
+			final CompletableFuture<GameSessionManager.GameState> result) throws IOException {
+		try {
+			final GameSessionManager.GameState state = result.join();
+			this.manager.awaitDurable().join();
+			send(exchange, status, appendState(state, new StringBuilder()));
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof IllegalArgumentException) {
+				send(exchange, 400, error(e.getCause().getMessage()));
+			} else if (e.getCause() instanceof IllegalStateException) {
+				send(exchange, 409, error(e.getCause().getMessage()));
+			} else {
+				send(exchange, 500, error(String.valueOf(e.getCause())));
+			}
+		}
+	}
+
+	private void subscribe(final HttpExchange exchange, final Channel channel) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		// chunked: the response stays open after this handler returns and is written by the event writers
+		exchange.sendResponseHeaders(200, 0);
+		final Spectator spectator = new Spectator(channel, exchange);
+		channel.spectators.add(spectator);
+		spectator.schedule();
+	}
+
+	private static PieceColor readColor(final HttpExchange exchange) throws IOException {
+		final String color = readBody(exchange).toLowerCase();
+		if (!color.equals("white") && !color.equals("black")) {
+			throw new IllegalArgumentException("Expected white or black");
+		}
+		return color.equals("white") ? PieceColor.WHITE : PieceColor.BLACK;
+	}
+
+	private static String readBody(final HttpExchange exchange) throws IOException {
+		try (InputStream input = exchange.getRequestBody()) {
+			final byte[] body = input.readNBytes(MAX_BODY_LENGTH + 1);
+			if (body.length > MAX_BODY_LENGTH) {
+				throw new IllegalArgumentException("Request body too long");
+			}
+			return new String(body, StandardCharsets.UTF_8).trim();
+		}
+	}
+
+	private static void send(final HttpExchange exchange, final int status, final CharSequence json) throws IOException {
+		if (json == null) {
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+		final byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(body);
+		}
+	}
+
+	private static StringBuilder error(final String message) {
+		return appendString(new StringBuilder("{\"error\":"), message).append('}');
+	}
+
+	// {"id":1,"ply":2,"fen":"...","result":"*","termination":null,"lastMove":"e7e5"}, in a timed game
+	// followed by "clock":[white, black] in milliseconds
+	static StringBuilder appendState(final GameSessionManager.GameState state, final StringBuilder builder) {
+		builder.append("{\"id\":").append(state.getGameId()).append(",\"ply\":").append(state.getPlyCount());
+		FenUtilities.appendFEN(state.getBoard(), builder.append(",\"fen\":\"")).append('"');
+		appendString(builder.append(",\"result\":"), state.getStatus().getResult());
+		appendString(builder.append(",\"termination\":"), state.getTermination());
+		appendString(builder.append(",\"lastMove\":"), state.getLastMove());
+		appendDrawOffer(state, builder);
+		return appendClock(state, builder).append('}');
+	}
+
+	// {"ply":3,"move":"g1f3"}, with the standing draw offer, the clock in a timed game and the result and termination
+	// once the game is over
+	static StringBuilder appendDelta(final GameSessionManager.GameState state, final StringBuilder builder) {
+		builder.append("{\"ply\":").append(state.getPlyCount());
+		if (state.getLastMove() != null) {
+			builder.append(",\"move\":\"").append(state.getLastMove()).append('"');
+		}
+		appendDrawOffer(state, builder);
+		appendClock(state, builder);
+		if (state.getStatus() != GameSessionManager.Status.ACTIVE) {
+			appendString(builder.append(",\"result\":"), state.getStatus().getResult());
+			appendString(builder.append(",\"termination\":"), state.getTermination());
+		}
+		return builder.append('}');
+	}
+
+	private static StringBuilder appendDrawOffer(final GameSessionManager.GameState state,
+			final StringBuilder builder) {
+		if (state.getDrawOffer() != null) {
+			builder.append(",\"drawOffer\":\"").append(state.getDrawOffer().white() ? "white" : "black").append('"');
+		}
+		return builder;
+	}
+
+	private static StringBuilder appendClock(final GameSessionManager.GameState state, final StringBuilder builder) {
+		if (state.isTimed()) {
+			builder.append(",\"clock\":[").append(state.getTime(PieceColor.WHITE)).append(',')
+					.append(state.getTime(PieceColor.BLACK)).append(']');
+		}
+		return builder;
+	}
+
+	// the texts are error messages, results and moves: only quotes and backslashes need escaping
+	private static StringBuilder appendString(final StringBuilder builder, final String text) {
+		if (text == null) {
+			return builder.append("null");
+		}
+		builder.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\');
+			}
+			builder.append(c < ' ' ? ' ' : c);
+		}
+		return builder.append('"');
+	}
+
+	private static byte[] event(final String type, final long sequence, final CharSequence data) {
+		final StringBuilder builder = new StringBuilder(data.length() + 32);
+		builder.append("event: ").append(type).append("\nid: ").append(sequence).append("\ndata: ").append(data)
+				.append("\n\n");
+		return builder.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	// a delta and the number of the change it describes
+	private static final class Event {
+		final long sequence;
+		final byte[] bytes;
+
+		Event(final long sequence, final byte[] bytes) {
+			this.sequence = sequence;
+			this.bytes = bytes;
+		}
+	}
+
+	// the state after a change; its event is encoded the first time a spectator needs it
+	private static final class Snapshot {
+		final long sequence;
+		final GameSessionManager.GameState state;
+		private volatile byte[] bytes;
+
+		Snapshot(final long sequence, final GameSessionManager.GameState state) {
+			this.sequence = sequence;
+			this.state = state;
+		}
+
+		boolean finished() {
+			return this.state.getStatus() != GameSessionManager.Status.ACTIVE;
+		}
+
+		byte[] bytes() {
+			byte[] bytes = this.bytes;
+			if (bytes == null) {
+				bytes = event("state", this.sequence, appendState(this.state, new StringBuilder(128)));
+				this.bytes = bytes;
+			}
+			return bytes;
+		}
+	}
+
+	// the events of one game; publish() is only called by the game's commands, one at a time
+	private final class Channel {
+		private final long gameId;
+		private final AtomicReferenceArray<Event> recent;
+		private final List<Spectator> spectators;
+		private volatile Snapshot snapshot;
+
+		Channel(final GameSessionManager.GameState state) {
+			this.gameId = state.getGameId();
+			this.recent = new AtomicReferenceArray<>(RECENT_EVENTS);
+			this.spectators = new CopyOnWriteArrayList<>();
+			this.snapshot = new Snapshot(0, state);
+		}
+
+		void publish(final GameSessionManager.GameState state) {
+			final long sequence = this.snapshot.sequence + 1;
+			final String type = state.getStatus() != GameSessionManager.Status.ACTIVE ? "end"
+					: state.getLastMove() != null ? "move" : "offer";
+			this.recent.set((int) (sequence % RECENT_EVENTS),
+					new Event(sequence, event(type, sequence, appendDelta(state, new StringBuilder(64)))));
+			// after the delta, so a spectator that sees the snapshot finds its delta too
+			this.snapshot = new Snapshot(sequence, state);
+			for (final Spectator spectator : this.spectators) {
+				spectator.schedule();
+			}
+		}
+
+		// the streams are closed by the writers, so a stalled client does not block the caller
+		void closeAll() {
+			for (final Spectator spectator : this.spectators) {
+				spectator.end();
+			}
+		}
+	}
+
+	private final class Spectator {
+		private final Channel channel;
+		private final HttpExchange exchange;
+		private final OutputStream output;
+		// true while queued on or running on the writers, so one spectator is never written by two threads
+		private final AtomicBoolean scheduled;
+		private final Event[] batch;
+		// fires when a write has blocked for WRITE_TIMEOUT
+		private final TimerWheel.Timer stall;
+		// the last change written, -1 before the first state event
+		private long sent;
+		private volatile boolean ended;
+		// the thread writing and when it has to be done, guarded by this
+		private Thread writer;
+		private long deadline;
+		private boolean stalled;
+
+		Spectator(final Channel channel, final HttpExchange exchange) {
+			this.channel = channel;
+			this.exchange = exchange;
+			this.output = exchange.getResponseBody();
+			this.scheduled = new AtomicBoolean();
+			this.batch = new Event[RECENT_EVENTS];
+			this.stall = GameServer.this.timers.newTimer(this::interruptStalledWrite);
+			this.sent = -1;
+		}
+
+		void schedule() {
+			if (this.scheduled.compareAndSet(false, true)) {
+				try {
+					GameServer.this.writers.execute(this::drain);
+				} catch (final RuntimeException e) {
+					// the server is closing
+					close();
+				}
+			}
+		}
+
+		// writes everything the spectator has not seen in one go; the changes made while the write blocks
+		// are written by the next round
+		private void drain() {
+			final Snapshot latest = this.channel.snapshot;
+			try {
+				if (!this.ended && latest.sequence != this.sent) {
+					final int count = collectDeltas(latest.sequence);
+					beginWrite();
+					try {
+						if (count < 0) {
+							this.output.write(latest.bytes());
+						} else {
+							for (int i = 0; i < count; i++) {
+								this.output.write(this.batch[i].bytes);
+								this.batch[i] = null;
+							}
+						}
+						this.output.flush();
+					} finally {
+						endWrite();
+					}
+					this.sent = latest.sequence;
+				}
+				if (this.ended || latest.finished()) {
+					close();
+					return;
+				}
+			} catch (final IOException e) {
+				close();
+				return;
+			}
+			this.scheduled.set(false);
+			// a change published, or the game closed, after the snapshot was read
+			if (this.ended || this.channel.snapshot.sequence != this.sent) {
+				schedule();
+			}
+		}
+
+		// a client that stops reading blocks the write once the socket buffers are full, and closing the exchange
+		// would block the same way; the socket is an interruptible channel, so interrupting the writer closes the
+		// connection under it and the write fails
+		private synchronized void beginWrite() {
+			this.writer = Thread.currentThread();
+			this.deadline = GameServer.this.timers.now() + WRITE_TIMEOUT;
+			this.stalled = false;
+			this.stall.schedule(this.deadline);
+		}
+
+		private synchronized void endWrite() {
+			this.writer = null;
+			this.stall.cancel();
+			if (this.stalled) {
+				// also when the interrupt came after the write returned: it must not close the next spectator's socket
+				Thread.interrupted();
+			}
+		}
+
+		// on the timer thread; the timer may fire late, after the write it was set for
+		private synchronized void interruptStalledWrite() {
+			if (this.writer != null && GameServer.this.timers.now() >= this.deadline) {
+				this.stalled = true;
+				this.writer.interrupt();
+			}
+		}
+
+		// the deltas after sent up to the given change into batch, or -1 when a state event has to be sent instead
+		private int collectDeltas(final long last) {
+			if (this.sent < 0 || last - this.sent > RECENT_EVENTS) {
+				return -1;
+			}
+			int count = 0;
+			for (long sequence = this.sent + 1; sequence <= last; sequence++) {
+				final Event event = this.channel.recent.get((int) (sequence % RECENT_EVENTS));
+				// overwritten by a newer change while collecting
+				if (event == null || event.sequence != sequence) {
+					return -1;
+				}
+				this.batch[count++] = event;
+			}
+			return count;
+		}
+
+		// the game was closed: the stream is closed by the writers
+		void end() {
+			this.ended = true;
+			schedule();
+		}
+
+		// only by the thread the spectator is scheduled on
+		private void close() {
+			this.channel.spectators.remove(this);
+			beginWrite();
+			try {
+				this.exchange.close();
+			} finally {
+				endWrite();
+			}
+		}
+	}
+
+	// opens the event streams of the spectators, plays random legal moves in every game through the moves endpoint
+	// and then resigns it, so the server ends the streams; reports the moves and events per second and whether
+	// every spectator saw every game to its last ply
+	static final class LoadGenerator {
+		private final String address;
+		private final int games;
+		private final int spectators;
+		private final int plies;
+		private final HttpClient client;
+
+		LoadGenerator(final int port, final int games, final int spectators, final int plies) {
+			this.address = "http://localhost:" + port + "/games";
+			this.games = games;
+			this.spectators = spectators;
+			this.plies = plies;
+			this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		}
+
+		void run() throws IOException, InterruptedException {
+			final long[] gameIds = new long[this.games];
+			for (int i = 0; i < this.games; i++) {
+				gameIds[i] = jsonNumber(post(this.address, ""), "id");
+			}
+			final List<EventCounter> counters = new ArrayList<>();
+			final List<CompletableFuture<?>> streams = new ArrayList<>();
+			for (final long gameId : gameIds) {
+				for (int i = 0; i < this.spectators; i++) {
+					final EventCounter counter = new EventCounter(gameId);
+					counters.add(counter);
+					streams.add(this.client.sendAsync(request(this.address + "/" + gameId + "/events").GET().build(),
+							HttpResponse.BodyHandlers.fromLineSubscriber(counter)));
+				}
+			}
+			// every stream has its state event before the first move
+			for (final EventCounter counter : counters) {
+				counter.awaitFirstEvent();
+			}
+			final AtomicLong moves = new AtomicLong();
+			final long[] finalPlies = new long[this.games];
+			final ExecutorService players = Executors.newFixedThreadPool(Math.min(this.games, 32));
+			final long start = System.nanoTime();
+			for (int i = 0; i < this.games; i++) {
+				final int game = i;
+				players.execute(() -> finalPlies[game] = play(gameIds[game], moves));
+			}
+			players.shutdown();
+			players.awaitTermination(1, TimeUnit.HOURS);
+			final long played = System.nanoTime() - start;
+			CompletableFuture.allOf(streams.toArray(new CompletableFuture<?>[0])).orTimeout(60, TimeUnit.SECONDS)
+					.exceptionally(failure -> null).join();
+			final long elapsed = System.nanoTime() - start;
+			long events = 0;
+			long states = 0;
+			int inSync = 0;
+			for (final EventCounter counter : counters) {
+				events += counter.events;
+				states += counter.states;
+				for (int i = 0; i < this.games; i++) {
+					if (gameIds[i] == counter.gameId && counter.lastPly == finalPlies[i] && counter.ended) {
+						inSync++;
+					}
+				}
+			}
+			System.out.println(this.games + " games, " + counters.size() + " spectators, " + moves.get() + " moves, "
+					+ moves.get() * 1000000000L / Math.max(1, played) + " moves/s, " + events + " events, "
+					+ events * 1000000000L / Math.max(1, elapsed) + " events/s, " + (states - counters.size())
+					+ " coalesced, " + inSync + "/" + counters.size() + " spectators saw every game end");
+		}
+
+		// random legal moves picked from the position the server reports, then a resignation; the last ply
+		private long play(final long gameId, final AtomicLong moves) {
+			final String game = this.address + "/" + gameId;
+			try {
+				String state = get(game);
+				for (int ply = 0; ply < this.plies && jsonString(state, "result").equals("*"); ply++) {
+					final Board board = FenUtilities.createGameFromFEN(jsonString(state, "fen"));
+					final List<Move> legal = new ArrayList<>();
+					for (final Move move : board.currentPlayer().getLegalMoves()) {
+						if (board.currentPlayer().makeMove(move).getMoveStatus().done()) {
+							legal.add(move);
+						}
+					}
+					final Move move = legal.get(ThreadLocalRandom.current().nextInt(legal.size()));
+					state = post(game + "/moves", NotationCodec.toUci(move));
+					moves.incrementAndGet();
+				}
+				if (jsonString(state, "result").equals("*")) {
+					state = post(game + "/resign", "white");
+				}
+				return jsonNumber(state, "ply");
+			} catch (final IOException | InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private HttpRequest.Builder request(final String uri) {
+			return HttpRequest.newBuilder(URI.create(uri));
+		}
+
+		private String get(final String uri) throws IOException, InterruptedException {
+			return this.client.send(request(uri).GET().build(), HttpResponse.BodyHandlers.ofString()).body();
+		}
+
+		private String post(final String uri, final String body) throws IOException, InterruptedException {
+			final HttpResponse<String> response = this.client.send(
+					request(uri).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+					HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() >= 300) {
+				throw new IOException(response.statusCode() + " " + response.body());
+			}
+			return response.body();
+		}
+
+		static long jsonNumber(final String json, final String key) {
+			final int start = json.indexOf("\"" + key + "\":") + key.length() + 3;
+			int end = start;
+			while (end < json.length() && Character.isDigit(json.charAt(end))) {
+				end++;
+			}
+			return Long.parseLong(json.substring(start, end));
+		}
+
+		static String jsonString(final String json, final String key) {
+			final int start = json.indexOf("\"" + key + "\":\"") + key.length() + 4;
+			return json.substring(start, json.indexOf('"', start));
+		}
+	}
+
+	// counts the events of one stream as its lines arrive
+	private static final class EventCounter implements Flow.Subscriber<String> {
+		private final long gameId;
+		private final CompletableFuture<Void> firstEvent;
+		private volatile long events;
+		private volatile long states;
+		private volatile long lastPly;
+		private volatile boolean ended;
+
+		EventCounter(final long gameId) {
+			this.gameId = gameId;
+			this.firstEvent = new CompletableFuture<>();
+		}
+
+		void awaitFirstEvent() {
+			this.firstEvent.orTimeout(60, TimeUnit.SECONDS).join();
+		}
+
+		@Override
+		public void onSubscribe(final Flow.Subscription subscription) {
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		// called one line at a time, so the counters need no atomic updates
+		@Override
+		public void onNext(final String line) {
+			if (line.startsWith("event: ")) {
+				if (line.equals("event: state")) {
+					this.states++;
+				} else if (line.equals("event: end")) {
+					this.ended = true;
+				}
+			} else if (line.startsWith("data: ")) {
+				this.events++;
+				this.lastPly = LoadGenerator.jsonNumber(line, "ply");
+				if (line.contains("\"result\":\"") && !LoadGenerator.jsonString(line, "result").equals("*")) {
+					this.ended = true;
+				}
+				this.firstEvent.complete(null);
+			}
+		}
+
+		@Override
+		public void onError(final Throwable throwable) {
+			this.firstEvent.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			this.firstEvent.complete(null);
+		}
+	}
+}
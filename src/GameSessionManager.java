@@ -0,0 +1,629 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// hosts many independent games in one JVM, without any window
+// usage (load test): java GameSessionManager [games] [plies per game] [threads] [journal directory]
+//
+// every game is an actor: commands go to its mailbox and run one at a time, in order, on a shared pool,
+// so moves of one game never race and games never wait for each other; there is no lock shared by games
+// a game keeps only its current board, its moves as 16 bit source/destination pairs and at most
+// MAX_PENDING_COMMANDS queued commands, so memory per game is bounded
+// the results are futures: an illegal move completes exceptionally with an IllegalArgumentException,
+// a move in a finished game or a full mailbox with an IllegalStateException
+// opened on a MoveJournal, every change is journaled by the command that makes it and the games of the journal
+// are continued; awaitDurable() tells when the changes made so far are on disk
+public class GameSessionManager implements Closeable {
+
+	public static final int MAX_PLIES = GameArchive.MAX_PLIES;
+	static final int MAX_PENDING_COMMANDS = 64;
+	// set in a stored move for a pawn that promotes, to a queen as always in this game
+	static final int PROMOTION = 1 << 12;
+	// a new journal segment, beginning with a snapshot of every game, is started after this many bytes
+	private static final long JOURNAL_SEGMENT_SIZE = 64L << 20;
+	// commands one game runs before it lets the other games have the thread
+	private static final int COMMANDS_PER_TURN = 16;
+
+	public enum Status {
+		ACTIVE("*"), WHITE_WON("1-0"), BLACK_WON("0-1"), DRAWN("1/2-1/2");
+
+		private final String result;
+
+		Status(final String result) {
+			this.result = result;
+		}
+
+		// the PGN result
+		public String getResult() {
+			return this.result;
+		}
+	}
+
+	private final ExecutorService pool;
+	// the flags of all timed games
+	private final TimerWheel clocks;
+	private final Map<Long, Session> sessions;
+	private final AtomicLong nextGameId;
+	private final int maxGames;
+	// null when the games are only kept in memory
+	private final MoveJournal journal;
+	private volatile GameListener listener;
+
+	public GameSessionManager(final int threads, final int maxGames) {
+		this(threads, maxGames, null);
+	}
+
+	private GameSessionManager(final int threads, final int maxGames, final MoveJournal journal) {
+		this.journal = journal;
+		this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+			final Thread thread = new Thread(runnable, "game-session");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.clocks = new TimerWheel("game-clock");
+		this.sessions = new ConcurrentHashMap<>();
+		this.nextGameId = new AtomicLong();
+		this.maxGames = maxGames;
+	}
+
+	// continues the games journaled in the directory, and journals every change from now on
+	public static GameSessionManager open(final int threads, final int maxGames, final Path journalDirectory)
+			throws IOException {
+		final MoveJournal journal = new MoveJournal(journalDirectory, JOURNAL_SEGMENT_SIZE);
+		final GameSessionManager manager = new GameSessionManager(threads, maxGames, journal);
+		for (final MoveJournal.RecoveredGame game : journal.recover()) {
+			final Session session = manager.new Session(game);
+			manager.sessions.put(game.getGameId(), session);
+			manager.nextGameId.set(Math.max(manager.nextGameId.get(), game.getGameId()));
+			if (session.clock != null && game.getStatus() == Status.ACTIVE) {
+				session.clock.start(game.getBoard().currentPlayer().getColor());
+			}
+		}
+		journal.start(manager::snapshotAll);
+		// the recovered games go into the new segment, then the old ones can go
+		manager.snapshotAll(journal.getSegment());
+		return manager;
+	}
+
+	public static void main(final String[] args) throws InterruptedException, IOException {
+		final int games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		final int plies = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		final int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		final Path journalDirectory = args.length > 3 ? Paths.get(args[3]) : null;
+		try (GameSessionManager manager = journalDirectory == null ? new GameSessionManager(threads, games)
+				: open(threads, Integer.MAX_VALUE, journalDirectory)) {
+			final CountDownLatch finished = new CountDownLatch(games);
+			final AtomicLong moves = new AtomicLong();
+			final long start = System.nanoTime();
+			for (int i = 0; i < games; i++) {
+				final long gameId = manager.createGame();
+				playRandomMoves(manager, manager.getState(gameId), plies, moves, finished);
+			}
+			finished.await();
+			final long elapsed = System.nanoTime() - start;
+			// the games are still open: what is left after a collection is what they hold
+			System.gc();
+			final Runtime runtime = Runtime.getRuntime();
+			System.out.println(manager.getGameCount() + " games, " + moves.get() + " moves, "
+					+ moves.get() * 1000000000L / Math.max(1, elapsed) + " moves/s, "
+					+ (runtime.totalMemory() - runtime.freeMemory()) / games + " bytes/game retained");
+		}
+		if (journalDirectory != null) {
+			final long start = System.nanoTime();
+			try (GameSessionManager recovered = open(threads, Integer.MAX_VALUE, journalDirectory)) {
+				System.out.println(recovered.getGameCount() + " games recovered in " + (System.nanoTime() - start) / 1000000
+						+ " ms");
+			}
+		}
+	}
+
+	// the load test: every game plays random moves until it ends or reaches the given number of plies
+	private static void playRandomMoves(final GameSessionManager manager, final GameState state, final int plies,
+			final AtomicLong moves, final CountDownLatch finished) {
+		if (state.getStatus() != Status.ACTIVE || state.getPlyCount() >= plies) {
+			finished.countDown();
+			return;
+		}
+		// a random move from the list: most of them are legal, an illegal one is simply tried again
+		final List<Move> candidates = new ArrayList<>(state.getBoard().currentPlayer().getLegalMoves());
+		final Move move = candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+		manager.move(state.getGameId(), NotationCodec.toUci(move)).whenComplete((next, failure) -> {
+			if (failure == null) {
+				moves.incrementAndGet();
+				playRandomMoves(manager, next, plies, moves, finished);
+			} else {
+				playRandomMoves(manager, manager.getState(state.getGameId()), plies, moves, finished);
+			}
+		});
+	}
+
+	public long createGame() {
+		return createGame(Board.createStandardBoard(), null);
+	}
+
+	public long createGame(final String fen) {
+		return createGame(FenUtilities.createGameFromFEN(fen), null);
+	}
+
+	// a timed game: the clock of the side to move starts at once, a side that runs out of time loses
+	public long createGame(final String fen, final TimeControl timeControl) {
+		return createGame(fen == null ? Board.createStandardBoard() : FenUtilities.createGameFromFEN(fen), timeControl);
+	}
+
+	private long createGame(final Board board, final TimeControl timeControl) {
+		if (this.sessions.size() >= this.maxGames) {
+			throw new IllegalStateException("Too many games: " + this.maxGames);
+		}
+		final long gameId = this.nextGameId.incrementAndGet();
+		final Session session = new Session(gameId, board, timeControl);
+		// registered before it is journaled: a new segment started from now on gets a snapshot of the game, and the
+		// creation is journaled by the game's own thread, ahead of that snapshot in its mailbox
+		this.sessions.put(gameId, session);
+		if (this.journal != null) {
+			try {
+				session.ask(() -> this.journal.created(gameId, FenUtilities.createFENFromGame(board), timeControl)).join();
+			} catch (final RuntimeException e) {
+				this.sessions.remove(gameId);
+				throw e instanceof CompletionException && e.getCause() instanceof RuntimeException
+						? (RuntimeException) e.getCause() : e;
+			}
+		}
+		if (session.clock != null) {
+			session.clock.start(board.currentPlayer().getColor());
+		}
+		return gameId;
+	}
+
+	// a move in UCI (e2e4) or SAN (e4, Nf3, O-O) notation
+	public CompletableFuture<GameState> move(final long gameId, final String move) {
+		final Session session = session(gameId);
+		return session.ask(() -> session.play(move));
+	}
+
+	public CompletableFuture<GameState> resign(final long gameId, final PieceColor color) {
+		final Session session = session(gameId);
+		return session.ask(() -> session.resign(color));
+	}
+
+	// an offer stands until the side that made it moves; the game is drawn when the opponent offers a draw as well
+	public CompletableFuture<GameState> offerDraw(final long gameId, final PieceColor color) {
+		final Session session = session(gameId);
+		return session.ask(() -> session.offerDraw(color));
+	}
+
+	// the moves played so far in UCI notation
+	public CompletableFuture<List<String>> getMoves(final long gameId) {
+		final Session session = session(gameId);
+		return session.ask(session::moveList);
+	}
+
+	// the state after the last command that ran; answered at once, without going through the mailbox
+	public GameState getState(final long gameId) {
+		return session(gameId).state;
+	}
+
+	public boolean closeGame(final long gameId) {
+		final Session session = this.sessions.remove(gameId);
+		if (session == null) {
+			return false;
+		}
+		if (session.clock != null) {
+			session.clock.stop();
+		}
+		// after the commands already queued, which may still journal a move
+		session.tell(session::close);
+		return true;
+	}
+
+	public int getGameCount() {
+		return this.sessions.size();
+	}
+
+	public List<Long> getGameIds() {
+		return new ArrayList<>(this.sessions.keySet());
+	}
+
+	// completes when every change made before the call is on disk; at once without a journal
+	public CompletableFuture<Void> awaitDurable() {
+		return this.journal == null ? CompletableFuture.completedFuture(null) : this.journal.sync(this.journal.position());
+	}
+
+	// told about every move, resignation and draw of every game; null for none
+	public void setGameListener(final GameListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void close() {
+		this.pool.shutdown();
+		this.clocks.close();
+		if (this.journal != null) {
+			// the commands already accepted are journaled before the journal closes
+			try {
+				this.pool.awaitTermination(10, TimeUnit.SECONDS);
+				this.journal.close();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	// every game writes a snapshot into the journal; the segments before the given one are deleted once all are on disk
+	private void snapshotAll(final long firstKeptSegment) {
+		if (this.pool.isShutdown()) {
+			return;
+		}
+		final List<Session> all = new ArrayList<>(this.sessions.values());
+		final AtomicInteger left = new AtomicInteger(all.size() + 1);
+		final Runnable done = () -> {
+			if (left.decrementAndGet() == 0) {
+				this.journal.retire(firstKeptSegment);
+			}
+		};
+		for (final Session session : all) {
+			session.tell(() -> {
+				try {
+					session.snapshot();
+				} finally {
+					done.run();
+				}
+			});
+		}
+		done.run();
+	}
+
+	private Session session(final long gameId) {
+		final Session session = this.sessions.get(gameId);
+		if (session == null) {
+			throw new IllegalArgumentException("No such game: " + gameId);
+		}
+		return session;
+	}
+
+	// what a game looks like after a command; never changes, so it can be read from any thread
+	public static final class GameState {
+		private final long gameId;
+		private final Board board;
+		private final Status status;
+		private final int plyCount;
+		// checkmate, stalemate, resignation, agreement, time forfeit or null while the game goes on
+		private final String termination;
+		// the move that led to this state in UCI notation, null for a new game, a resignation or a draw
+		private final String lastMove;
+		// the side whose draw offer stands, null for none
+		private final PieceColor drawOffer;
+		// milliseconds left on the clocks when the state was made, -1 in a game without clock
+		private final long whiteTime;
+		private final long blackTime;
+
+		GameState(final long gameId, final Board board, final Status status, final int plyCount,
+				final String termination, final String lastMove, final PieceColor drawOffer, final ChessClock clock) {
+			this.gameId = gameId;
+			this.board = board;
+			this.status = status;
+			this.plyCount = plyCount;
+			this.termination = termination;
+			this.lastMove = lastMove;
+			this.drawOffer = drawOffer;
+			this.whiteTime = clock != null ? clock.getTime(PieceColor.WHITE) : -1;
+			this.blackTime = clock != null ? clock.getTime(PieceColor.BLACK) : -1;
+		}
+
+		public long getGameId() {
+			return this.gameId;
+		}
+
+		public Board getBoard() {
+			return this.board;
+		}
+
+		public Status getStatus() {
+			return this.status;
+		}
+
+		public int getPlyCount() {
+			return this.plyCount;
+		}
+
+		public String getTermination() {
+			return this.termination;
+		}
+
+		public String getLastMove() {
+			return this.lastMove;
+		}
+
+		public PieceColor getDrawOffer() {
+			return this.drawOffer;
+		}
+
+		public boolean isTimed() {
+			return this.whiteTime >= 0;
+		}
+
+		public long getTime(final PieceColor color) {
+			return color.white() ? this.whiteTime : this.blackTime;
+		}
+
+		@Override
+		public String toString() {
+			return "game " + this.gameId + ", " + this.plyCount + " plies, " + this.status.getResult()
+					+ (this.termination != null ? " (" + this.termination + ")" : "");
+		}
+	}
+
+	// one game: the fields below the mailbox are only touched by the command that is running
+	private final class Session {
+		private final long gameId;
+		private final Queue<Runnable> mailbox;
+		private final AtomicInteger pending;
+		// true while the game is queued on or running on the pool
+		private final AtomicBoolean scheduled;
+		// null in a game without clock
+		private final ChessClock clock;
+		private volatile GameState state;
+		private Board board;
+		// source * 64 + destination of every move, plus PROMOTION
+		private short[] moves;
+		private int plyCount;
+		// the side whose draw offer stands, null for none; not journaled, a restart withdraws it
+		private PieceColor drawOffer;
+		// closed games journal nothing more
+		private boolean closed;
+
+		Session(final long gameId, final Board board, final TimeControl timeControl) {
+			this(gameId, board, timeControl, Status.ACTIVE, null, new short[16], 0,
+					timeControl == null ? -1 : timeControl.getInitialTime(),
+					timeControl == null ? -1 : timeControl.getInitialTime());
+		}
+
+		// a game as the journal left it
+		Session(final MoveJournal.RecoveredGame game) {
+			this(game.getGameId(), game.getBoard(), game.getTimeControl(), game.getStatus(), game.getTermination(),
+					Arrays.copyOf(game.getMoves(), Math.max(16, game.getPlyCount())), game.getPlyCount(),
+					game.getTime(PieceColor.WHITE), game.getTime(PieceColor.BLACK));
+		}
+
+		private Session(final long gameId, final Board board, final TimeControl timeControl, final Status status,
+				final String termination, final short[] moves, final int plyCount, final long whiteTime,
+				final long blackTime) {
+			this.gameId = gameId;
+			this.mailbox = new ConcurrentLinkedQueue<>();
+			this.pending = new AtomicInteger();
+			this.scheduled = new AtomicBoolean();
+			this.clock = timeControl == null ? null : new ChessClock(GameSessionManager.this.clocks, timeControl,
+					(clock, color) -> tell(() -> timeForfeit(color)), whiteTime, blackTime);
+			this.board = board;
+			this.moves = moves;
+			this.plyCount = plyCount;
+			this.state = new GameState(gameId, board, status, plyCount, termination, null, null, this.clock);
+		}
+
+		<T> CompletableFuture<T> ask(final Supplier<T> command) {
+			final CompletableFuture<T> result = new CompletableFuture<>();
+			if (this.pending.incrementAndGet() > MAX_PENDING_COMMANDS) {
+				this.pending.decrementAndGet();
+				result.completeExceptionally(new IllegalStateException("Too many commands waiting for game " + this.gameId));
+				return result;
+			}
+			this.mailbox.add(() -> {
+				try {
+					result.complete(command.get());
+				} catch (final RuntimeException e) {
+					result.completeExceptionally(e);
+				}
+			});
+			schedule();
+			return result;
+		}
+
+		// a command from the game itself, e.g. a flag fall: never refused for a full mailbox
+		private void tell(final Runnable command) {
+			this.pending.incrementAndGet();
+			this.mailbox.add(command);
+			schedule();
+		}
+
+		private void schedule() {
+			if (this.scheduled.compareAndSet(false, true)) {
+				GameSessionManager.this.pool.execute(this::drain);
+			}
+		}
+
+		// runs on the pool, never on two threads at once
+		private void drain() {
+			for (int i = 0; i < COMMANDS_PER_TURN; i++) {
+				final Runnable command = this.mailbox.poll();
+				if (command == null) {
+					break;
+				}
+				this.pending.decrementAndGet();
+				try {
+					command.run();
+				} catch (final RuntimeException e) {
+					// a command from tell(), e.g. a snapshot the journal refused: the game goes on with the next one
+					e.printStackTrace();
+				}
+			}
+			this.scheduled.set(false);
+			// a command added after the last poll, or the commands left for the next turn
+			if (!this.mailbox.isEmpty()) {
+				schedule();
+			}
+		}
+
+		GameState play(final String text) {
+			if (this.state.getStatus() != Status.ACTIVE) {
+				throw new IllegalStateException("Game " + this.gameId + " is over: " + this.state);
+			}
+			if (this.plyCount >= MAX_PLIES) {
+				throw new IllegalStateException("Game " + this.gameId + " reached " + MAX_PLIES + " plies");
+			}
+			Move move = NotationCodec.parseUci(this.board, text);
+			if (move == Move.NULL_MOVE) {
+				move = NotationCodec.parseSan(this.board, text);
+			}
+			final MoveTransition transition = move == Move.NULL_MOVE ? null : this.board.currentPlayer().makeMove(move);
+			if (transition == null || !transition.getMoveStatus().done()) {
+				throw new IllegalArgumentException("Illegal move in game " + this.gameId + ": " + text);
+			}
+			final PieceColor mover = this.board.currentPlayer().getColor();
+			// the turn passes to the current player of the next board; a move made after the flag fell loses
+			if (this.clock != null && !this.clock.press(transition.getNextBoard())) {
+				timeForfeit(mover);
+				throw new IllegalStateException("Game " + this.gameId + " is over: " + this.state);
+			}
+			final Board next = transition.getNextBoard();
+			Status status = Status.ACTIVE;
+			String termination = null;
+			if (next.currentPlayer().inCheckMate()) {
+				status = next.currentPlayer().getColor().white() ? Status.BLACK_WON : Status.WHITE_WON;
+				termination = "checkmate";
+			} else if (next.currentPlayer().inStaleMate()) {
+				status = Status.DRAWN;
+				termination = "stalemate";
+			}
+			final short stored = (short) (move.getCurrentCoordinate() * 64 + move.getDestination()
+					+ (move instanceof Move.PawnPromotion ? PROMOTION : 0));
+			// journaled before anything of the game changes: a move the journal refuses is not made
+			if (journaled()) {
+				try {
+					GameSessionManager.this.journal.moved(this.gameId, this.plyCount + 1, stored,
+							this.clock != null ? this.clock.getTime(mover) : -1);
+					if (status != Status.ACTIVE) {
+						GameSessionManager.this.journal.ended(this.gameId, status, termination);
+					}
+				} catch (final RuntimeException e) {
+					if (this.clock != null) {
+						this.clock.undoPress(mover);
+					}
+					throw e;
+				}
+			}
+			if (this.plyCount == this.moves.length) {
+				this.moves = Arrays.copyOf(this.moves, Math.min(MAX_PLIES, this.moves.length * 2));
+			}
+			this.moves[this.plyCount++] = stored;
+			// moving withdraws the mover's own offer; an offer of the opponent still stands
+			if (this.drawOffer == mover) {
+				this.drawOffer = null;
+			}
+			this.board = next;
+			return announce(status, termination, NotationCodec.toUci(move));
+		}
+
+		GameState resign(final PieceColor color) {
+			if (this.state.getStatus() != Status.ACTIVE) {
+				throw new IllegalStateException("Game " + this.gameId + " is over: " + this.state);
+			}
+			return publish(color.white() ? Status.BLACK_WON : Status.WHITE_WON, "resignation", null);
+		}
+
+		private void timeForfeit(final PieceColor color) {
+			if (this.state.getStatus() == Status.ACTIVE) {
+				publish(color.white() ? Status.BLACK_WON : Status.WHITE_WON, "time forfeit", null);
+			}
+		}
+
+		GameState offerDraw(final PieceColor color) {
+			if (this.state.getStatus() != Status.ACTIVE) {
+				throw new IllegalStateException("Game " + this.gameId + " is over: " + this.state);
+			}
+			if (this.drawOffer == color) {
+				return this.state;
+			}
+			if (this.drawOffer != null) {
+				// the opponent offered first: accepted
+				this.drawOffer = null;
+				return publish(Status.DRAWN, "agreement", null);
+			}
+			this.drawOffer = color;
+			return publish(Status.ACTIVE, null, null);
+		}
+
+		void snapshot() {
+			if (journaled()) {
+				GameSessionManager.this.journal.snapshot(this.gameId, this.board, this.clock != null
+						? this.clock.getTimeControl() : null, this.state.getStatus(), this.state.getTermination(),
+						this.state.getTime(PieceColor.WHITE), this.state.getTime(PieceColor.BLACK), this.moves,
+						this.plyCount);
+			}
+		}
+
+		void close() {
+			try {
+				if (journaled()) {
+					GameSessionManager.this.journal.closed(this.gameId);
+				}
+			} finally {
+				this.closed = true;
+			}
+		}
+
+		private boolean journaled() {
+			return GameSessionManager.this.journal != null && !this.closed;
+		}
+
+		List<String> moveList() {
+			final List<String> uci = new ArrayList<>(this.plyCount);
+			final StringBuilder builder = new StringBuilder(5);
+			for (int i = 0; i < this.plyCount; i++) {
+				builder.setLength(0);
+				final int move = this.moves[i];
+				NotationCodec.appendSquare((move & ~PROMOTION) / 64, builder);
+				NotationCodec.appendSquare(move % 64, builder);
+				if ((move & PROMOTION) != 0) {
+					builder.append('q');
+				}
+				uci.add(builder.toString());
+			}
+			return uci;
+		}
+
+		// journals the end of the game first, so a change the journal refuses is not made
+		private GameState publish(final Status status, final String termination, final String lastMove) {
+			if (status != Status.ACTIVE && journaled()) {
+				GameSessionManager.this.journal.ended(this.gameId, status, termination);
+			}
+			return announce(status, termination, lastMove);
+		}
+
+		// the change is journaled: the new state for the callers and the listener
+		private GameState announce(final Status status, final String termination, final String lastMove) {
+			if (status != Status.ACTIVE && this.clock != null) {
+				this.clock.stop();
+			}
+			if (status != Status.ACTIVE) {
+				this.drawOffer = null;
+			}
+			this.state = new GameState(this.gameId, this.board, status, this.plyCount, termination, lastMove,
+					this.drawOffer, this.clock);
+			final GameListener listener = GameSessionManager.this.listener;
+			if (listener != null) {
+				listener.gameChanged(this.state);
+			}
+			return this.state;
+		}
+	}
+}
@@ -1,8 +1,12 @@
 public class Main {
 	public static void main(String[] args) {
+		// headless engine mode for GUIs and match tools: no board printout and no window
+		if (args.length > 0 && args[0].equals("uci")) {
+			new UciEngine(System.in, System.out).run();
+			return;
+		}
 		Board board=Board.createStandardBoard();
 		System.out.println(board);
 		Table table=new Table();
 	}
 }
-
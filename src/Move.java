@@ -1,7 +1,3 @@
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-
 public abstract class Move {
 
 	protected final Board board;
@@ -103,26 +99,10 @@ public abstract class Move {
 		return builder.build();
 	}
 
-	private static List<String> initializeAlgebraicNotation() {
-		return Collections.unmodifiableList(Arrays.asList(
-				"a8", "b8", "c8", "d8", "e8", "f8", "g8", "h8", 
-				"a7", "b7", "c7", "d7", "e7", "f7", "g7", "h7",
-				"a6", "b6", "c6", "d6", "e6", "f6", "g6", "h6",
-				"a5", "b5", "c5", "d5", "e5", "f5", "g5", "h5", 
-				"a4", "b4", "c4", "d4", "e4", "f4", "g4", "h4", 
-				"a3", "b3", "c3", "d3", "e3", "f3", "g3", "h3",
-				"a2", "b2", "c2", "d2", "e2", "f2", "g2", "h2", 
-				"a1", "b1", "c1", "d1", "e1", "f1", "g1", "h1"));
-	}
-
-	String disambiguationFile() {
-		for (final Move move : this.board.currentPlayer().getLegalMoves()) {
-			if (move.getDestination() == this.destination && !this.equals(move)
-					&& this.p.getType().equals(move.getMovedPiece().getType())) {
-				return initializeAlgebraicNotation().get(this.p.getPosition()).substring(0, 1);
-			}
-		}
-		return "";
+	// Standard Algebraic Notation without check suffix, e.g. Nbd7, exd5, e8=Q, O-O
+	@Override
+	public String toString() {
+		return NotationCodec.toSan(this);
 	}
 
 	public static class MajorAttackMove extends AttackingMove {
@@ -135,10 +115,6 @@ public abstract class Move {
 			return this == other || other instanceof MajorAttackMove && super.equals(other);
 		}
 
-		@Override
-		public String toString() {
-			return p.getType() + initializeAlgebraicNotation().get(this.destination);
-		}
 	}
 
 	// move to an empty tile
@@ -152,11 +128,6 @@ public abstract class Move {
 			return this == other || other instanceof NonAttackingMove && super.equals(other);
 		}
 
-		@Override
-		public String toString() {
-			return p.getType().toString() + // disambiguationFile() +
-					initializeAlgebraicNotation().get(this.destination);
-		}
 	}
 
 	// move to a tile that has an opponent's piece
@@ -204,10 +175,6 @@ public abstract class Move {
 			return this == other || other instanceof PawnMove && super.equals(other);
 		}
 
-		@Override
-		public String toString() {
-			return initializeAlgebraicNotation().get(this.destination);
-		}
 
 	}
 
@@ -221,11 +188,6 @@ public abstract class Move {
 			return this == other || other instanceof PawnAttackMove && super.equals(other);
 		}
 
-		@Override
-		public String toString() {
-			return initializeAlgebraicNotation().get(this.p.getPosition()).substring(0, 1) + "x"
-					+ initializeAlgebraicNotation().get(this.destination);
-		}
 
 	}
 
@@ -284,7 +246,6 @@ public abstract class Move {
 
 		@Override
 		public Board execute() {
-			System.out.println("Pawn promotion executed");
 			final Board pawnMovedBoard = this.decoratedMove.execute();
 			final Board.Builder builder = new Board.Builder();
 			for (final Piece piece : pawnMovedBoard.currentPlayer().getOpponent().getActivePieces()) {
@@ -313,11 +274,6 @@ public abstract class Move {
 			return this.decoratedMove.getAttackedPiece();
 		}
 
-		@Override
-		public String toString() {
-			return initializeAlgebraicNotation().get(this.p.getPosition()) + "-"
-					+ initializeAlgebraicNotation().get(this.destination); // + "=" + this.promotionPiece.getType();
-		}
 	}
 
 	public static final class PawnEnPassantAttack extends PawnAttackMove {
@@ -382,10 +338,6 @@ public abstract class Move {
 			return builder.build();
 		}
 
-		@Override
-		public String toString() {
-			return initializeAlgebraicNotation().get(this.destination);
-		}
 	}
 
 	static abstract class CastleMove extends Move {
@@ -473,11 +425,6 @@ public abstract class Move {
 					&& this.castleRook.equals(otherKingSideCastleMove.getCastleRook());
 		}
 
-		@Override
-		// PGN convention
-		public String toString() {
-			return "O-O";
-		}
 	}
 
 	public static final class QueenSideCastleMove extends CastleMove {
@@ -499,11 +446,6 @@ public abstract class Move {
 					&& this.castleRook.equals(otherQueenSideCastleMove.getCastleRook());
 		}
 
-		@Override
-		// PGN convention
-		public String toString() {
-			return "O-O-O";
-		}
 	}
 
 	public static final class NullMove extends Move {
@@ -511,14 +453,40 @@ public abstract class Move {
 			super(null, 65);
 		}
 
+		// a null move bound to a board: the current player passes the turn
+		public NullMove(final Board board) {
+			super(board, 65);
+		}
+
 		@Override
 		public int getCurrentCoordinate() {
 			return -1;
 		}
 
+		@Override
+		public int hashCode() {
+			return 65;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			return this == other || other instanceof NullMove;
+		}
+
 		@Override
 		public Board execute() {
-			throw new RuntimeException();
+			// the shared NULL_MOVE is not bound to any board
+			if (this.board == null) {
+				throw new RuntimeException();
+			}
+			// same pieces, the opponent moves next and no en passant pawn is carried over
+			final Board.Builder builder = new Board.Builder();
+			for (final Piece piece : this.board.getAllPieces()) {
+				builder.setPiece(piece);
+			}
+			builder.setTurn(this.board.currentPlayer().getOpponent().getColor());
+			builder.setMoveTransition(this);
+			return builder.build();
 		}
 	}
 
@@ -532,6 +500,11 @@ public abstract class Move {
 			return NULL_MOVE;
 		}
 
+		// pass move used by the search for null move pruning
+		public static Move createNullMove(final Board board) {
+			return new NullMove(board);
+		}
+
 		public static Move createMove(final Board board, final int currentCoordinate, final int destination) {
 			for (final Move move : board.getAllLegalMoves()) {
 				if (move.getCurrentCoordinate() == currentCoordinate && move.getDestination() == destination)
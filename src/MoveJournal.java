@@ -0,0 +1,593 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32C;
+
+// append-only journal of the games of a GameSessionManager, so a restarted server continues them
+// one directory of segment files, journal-<segment>.log; the writer starts a new segment when segmentSize bytes
+// followed the snapshots of the current one and tells the manager, which writes a snapshot of every game into the
+// new segment; once those are on disk the older segments are deleted, so recovery reads the snapshots and at most
+// about segmentSize bytes of records
+//
+// record: int payload length, int CRC32C of the payload, payload: byte type, long game id, then
+//   CREATE   FEN, time control or ""
+//   MOVE     int ply, short move (source * 64 + destination, plus GameSessionManager.PROMOTION),
+//            int milliseconds left on the mover's clock or -1
+//   END      byte status, termination
+//   CLOSE    nothing
+//   SNAPSHOT FEN, time control or "", byte status, termination or "", int white time, int black time,
+//            int ply count, one short per move
+// strings are a short length and UTF-8 bytes; a record cut short by a crash fails its length or CRC check
+// and ends the segment
+//
+// appending copies a record into a memory buffer under a short lock and returns its end position, a few
+// microseconds on the game's thread; one writer thread writes what accumulated meanwhile and forces it to disk
+// with one fsync for the whole batch (group commit). sync(position) completes once a position is on disk
+public final class MoveJournal implements Closeable {
+
+	private static final byte CREATE = 1;
+	private static final byte MOVE = 2;
+	private static final byte END = 3;
+	private static final byte CLOSE = 4;
+	private static final byte SNAPSHOT = 5;
+	private static final int HEADER_SIZE = 8;
+	private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+	// appenders wait for the writer rather than let the buffer grow beyond this
+	private static final int MAX_BUFFER_SIZE = 1 << 24;
+	private static final String PREFIX = "journal-";
+	private static final String SUFFIX = ".log";
+
+	private final Path directory;
+	private final long segmentSize;
+	private final CRC32C crc;
+	// records appended since the writer took the last batch; guarded by this
+	private ByteBuffer pending;
+	// where the record being appended starts in pending
+	private int recordStart;
+	// the batch the writer is writing, swapped with pending
+	private ByteBuffer writing;
+	// positions count every byte ever appended since the journal was opened
+	private long appended;
+	private long durable;
+	private IOException failure;
+	private boolean closed;
+	private final List<Waiter> waiters;
+	// segments to delete once the position is durable: {first segment kept, position}
+	private final List<long[]> retirements;
+	private FileChannel channel;
+	private long segment;
+	// the position the snapshots of the current segment end at, -1 while they are written
+	private long snapshotEnd;
+	private LongConsumer rollListener;
+	private Thread writer;
+
+	public MoveJournal(final Path directory, final long segmentSize) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+		this.crc = new CRC32C();
+		this.pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		this.writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		this.waiters = new ArrayList<>();
+		this.retirements = new ArrayList<>();
+		final long[] segments = segments();
+		this.segment = segments.length == 0 ? 0 : segments[segments.length - 1];
+	}
+
+	// the games in the journal, by id in the order they were created; read before start()
+	public List<RecoveredGame> recover() throws IOException {
+		final Map<Long, RecoveredGame> games = new LinkedHashMap<>();
+		for (final long number : segments()) {
+			try (FileChannel file = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+				final MappedByteBuffer data = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+				while (data.remaining() >= HEADER_SIZE) {
+					final int length = data.getInt();
+					final int checksum = data.getInt();
+					if (length <= 0 || length > data.remaining()) {
+						break;
+					}
+					final ByteBuffer payload = data.slice().limit(length);
+					final CRC32C crc = new CRC32C();
+					crc.update(payload.duplicate());
+					if ((int) crc.getValue() != checksum) {
+						break;
+					}
+					data.position(data.position() + length);
+					try {
+						replay(payload, games);
+					} catch (final BufferUnderflowException | IllegalArgumentException e) {
+						throw new IOException("Corrupt journal record in " + segmentPath(number), e);
+					}
+				}
+			}
+		}
+		// building a board is the slow part of recovery: each game's once, and the games in parallel
+		try {
+			games.values().parallelStream().forEach(RecoveredGame::build);
+		} catch (final IllegalArgumentException e) {
+			throw new IOException("Corrupt journal in " + this.directory, e);
+		}
+		return new ArrayList<>(games.values());
+	}
+
+	// starts a new segment and the writer; the listener is called with the number of every new segment
+	public synchronized void start(final LongConsumer rollListener) throws IOException {
+		if (this.writer != null) {
+			throw new IllegalStateException("Journal already started");
+		}
+		this.rollListener = rollListener;
+		openSegment(this.segment + 1);
+		this.snapshotEnd = this.appended;
+		this.writer = new Thread(this::write, "move-journal");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	public synchronized long getSegment() {
+		return this.segment;
+	}
+
+	public long created(final long gameId, final String fen, final TimeControl timeControl) {
+		final byte[] fenBytes = fen.getBytes(StandardCharsets.UTF_8);
+		final byte[] control = timeControl == null ? new byte[0] : timeControl.toString().getBytes(StandardCharsets.UTF_8);
+		synchronized (this) {
+			final ByteBuffer buffer = begin(1 + 8 + 2 + fenBytes.length + 2 + control.length);
+			buffer.put(CREATE).putLong(gameId);
+			putString(buffer, fenBytes);
+			putString(buffer, control);
+			return end();
+		}
+	}
+
+	public synchronized long moved(final long gameId, final int ply, final short move, final long timeLeft) {
+		final ByteBuffer buffer = begin(1 + 8 + 4 + 2 + 4);
+		buffer.put(MOVE).putLong(gameId).putInt(ply).putShort(move).putInt((int) Math.min(Integer.MAX_VALUE, timeLeft));
+		return end();
+	}
+
+	public long ended(final long gameId, final GameSessionManager.Status status, final String termination) {
+		final byte[] text = termination == null ? new byte[0] : termination.getBytes(StandardCharsets.UTF_8);
+		synchronized (this) {
+			final ByteBuffer buffer = begin(1 + 8 + 1 + 2 + text.length);
+			buffer.put(END).putLong(gameId).put((byte) status.ordinal());
+			putString(buffer, text);
+			return end();
+		}
+	}
+
+	public synchronized long closed(final long gameId) {
+		begin(1 + 8).put(CLOSE).putLong(gameId);
+		return end();
+	}
+
+	public long snapshot(final long gameId, final Board board, final TimeControl timeControl,
+			final GameSessionManager.Status status, final String termination, final long whiteTime,
+			final long blackTime, final short[] moves, final int plyCount) {
+		final byte[] fenBytes = FenUtilities.createFENFromGame(board).getBytes(StandardCharsets.UTF_8);
+		final byte[] control = timeControl == null ? new byte[0] : timeControl.toString().getBytes(StandardCharsets.UTF_8);
+		final byte[] text = termination == null ? new byte[0] : termination.getBytes(StandardCharsets.UTF_8);
+		synchronized (this) {
+			final ByteBuffer buffer = begin(1 + 8 + 2 + fenBytes.length + 2 + control.length + 1 + 2 + text.length
+					+ 4 + 4 + 4 + 2 * plyCount);
+			buffer.put(SNAPSHOT).putLong(gameId);
+			putString(buffer, fenBytes);
+			putString(buffer, control);
+			buffer.put((byte) status.ordinal());
+			putString(buffer, text);
+			buffer.putInt((int) whiteTime).putInt((int) blackTime).putInt(plyCount);
+			for (int i = 0; i < plyCount; i++) {
+				buffer.putShort(moves[i]);
+			}
+			return end();
+		}
+	}
+
+	// the end of the last record appended
+	public synchronized long position() {
+		return this.appended;
+	}
+
+	// completes when everything up to the position is on disk, exceptionally when the journal cannot be written
+	public synchronized CompletableFuture<Void> sync(final long position) {
+		if (this.failure != null) {
+			return CompletableFuture.failedFuture(this.failure);
+		}
+		if (this.durable >= position) {
+			return CompletableFuture.completedFuture(null);
+		}
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		this.waiters.add(new Waiter(position, future));
+		return future;
+	}
+
+	// deletes the segments before the given one once everything appended so far is on disk
+	public synchronized void retire(final long firstKeptSegment) {
+		this.retirements.add(new long[] { firstKeptSegment, this.appended });
+		if (firstKeptSegment == this.segment) {
+			this.snapshotEnd = this.appended;
+		}
+		notifyAll();
+	}
+
+	// writes what is left and stops the writer
+	@Override
+	public void close() throws IOException {
+		final Thread thread;
+		synchronized (this) {
+			this.closed = true;
+			notifyAll();
+			thread = this.writer;
+		}
+		if (thread != null) {
+			try {
+				thread.join();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (this) {
+			if (this.channel != null) {
+				this.channel.close();
+			}
+		}
+	}
+
+	// room for a record of the given payload length; the caller holds the lock and calls end() after the payload
+	private ByteBuffer begin(final int length) {
+		checkWritable();
+		while (this.pending.remaining() < HEADER_SIZE + length) {
+			final int needed = this.pending.position() + HEADER_SIZE + length;
+			if (needed <= MAX_BUFFER_SIZE || this.pending.position() == 0) {
+				final ByteBuffer larger = ByteBuffer.allocate(Math.max(needed, this.pending.capacity() * 2));
+				this.pending.flip();
+				this.pending = larger.put(this.pending);
+			} else {
+				// the writer is behind by a full buffer: wait for it to take the batch
+				try {
+					wait();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for the journal", e);
+				}
+				checkWritable();
+			}
+		}
+		this.recordStart = this.pending.position();
+		this.pending.putInt(length).putInt(0);
+		return this.pending;
+	}
+
+	// once the writer has stopped nothing appended would reach the disk, and nobody would make room in the buffer
+	private void checkWritable() {
+		if (this.closed) {
+			throw new IllegalStateException("Journal closed");
+		}
+		if (this.failure != null) {
+			throw new IllegalStateException("Journal cannot be written: " + this.failure, this.failure);
+		}
+	}
+
+	// fills in the checksum of the record just written
+	private long end() {
+		final int length = this.pending.getInt(this.recordStart);
+		this.crc.reset();
+		this.crc.update(this.pending.array(), this.recordStart + HEADER_SIZE, length);
+		this.pending.putInt(this.recordStart + 4, (int) this.crc.getValue());
+		this.appended += HEADER_SIZE + length;
+		if (this.recordStart == 0) {
+			// the first record of a batch wakes the writer
+			notifyAll();
+		}
+		return this.appended;
+	}
+
+	private static void putString(final ByteBuffer buffer, final byte[] bytes) {
+		buffer.putShort((short) bytes.length).put(bytes);
+	}
+
+	private static String getString(final ByteBuffer buffer) {
+		final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// the writer thread: one write and one fsync for everything appended while the last batch was written
+	private void write() {
+		while (true) {
+			final ByteBuffer batch;
+			final long batchEnd;
+			final boolean finished;
+			synchronized (this) {
+				while (this.pending.position() == 0 && this.retirements.isEmpty() && !this.closed) {
+					try {
+						wait();
+					} catch (final InterruptedException e) {
+						return;
+					}
+				}
+				batch = this.pending;
+				this.pending = this.writing;
+				this.writing = batch;
+				batchEnd = this.appended;
+				finished = this.closed;
+				// appenders waiting for room
+				notifyAll();
+			}
+			List<Waiter> done = Collections.emptyList();
+			long roll = -1;
+			try {
+				batch.flip();
+				final boolean empty = !batch.hasRemaining();
+				while (batch.hasRemaining()) {
+					this.channel.write(batch);
+				}
+				batch.clear();
+				if (!empty) {
+					this.channel.force(false);
+				}
+				synchronized (this) {
+					this.durable = batchEnd;
+					done = completedWaiters();
+					retireSegments();
+					if (this.snapshotEnd >= 0 && batchEnd - this.snapshotEnd >= this.segmentSize && !this.closed) {
+						openSegment(this.segment + 1);
+						this.snapshotEnd = -1;
+						roll = this.segment;
+					}
+				}
+			} catch (final IOException e) {
+				synchronized (this) {
+					this.failure = e;
+					done = new ArrayList<>(this.waiters);
+					this.waiters.clear();
+					// appenders waiting for room, which will never come
+					notifyAll();
+				}
+				e.printStackTrace();
+			}
+			for (final Waiter waiter : done) {
+				if (this.failure != null) {
+					waiter.future.completeExceptionally(this.failure);
+				} else {
+					waiter.future.complete(null);
+				}
+			}
+			if (roll >= 0 && this.rollListener != null) {
+				try {
+					this.rollListener.accept(roll);
+				} catch (final RuntimeException e) {
+					// e.g. the manager is closing; the old segments are kept until the next start
+					e.printStackTrace();
+				}
+			}
+			if (finished || this.failure != null) {
+				return;
+			}
+		}
+	}
+
+	private List<Waiter> completedWaiters() {
+		final List<Waiter> done = new ArrayList<>();
+		this.waiters.removeIf(waiter -> {
+			if (waiter.position <= this.durable) {
+				done.add(waiter);
+				return true;
+			}
+			return false;
+		});
+		return done;
+	}
+
+	private void retireSegments() throws IOException {
+		for (int i = this.retirements.size() - 1; i >= 0; i--) {
+			final long[] retirement = this.retirements.get(i);
+			if (retirement[1] <= this.durable) {
+				this.retirements.remove(i);
+				for (final long number : segments()) {
+					if (number < retirement[0]) {
+						Files.deleteIfExists(segmentPath(number));
+					}
+				}
+			}
+		}
+	}
+
+	private void openSegment(final long number) throws IOException {
+		if (this.channel != null) {
+			this.channel.close();
+		}
+		this.channel = FileChannel.open(segmentPath(number), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.segment = number;
+	}
+
+	private Path segmentPath(final long number) {
+		return this.directory.resolve(PREFIX + String.format("%016d", number) + SUFFIX);
+	}
+
+	private long[] segments() throws IOException {
+		final List<Long> numbers = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, PREFIX + "*" + SUFFIX)) {
+			for (final Path file : files) {
+				final String name = file.getFileName().toString();
+				try {
+					numbers.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+				} catch (final NumberFormatException e) {
+					// not a segment
+				}
+			}
+		}
+		final long[] sorted = numbers.stream().mapToLong(Long::longValue).toArray();
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	private static void replay(final ByteBuffer payload, final Map<Long, RecoveredGame> games) {
+		final byte type = payload.get();
+		final long gameId = payload.getLong();
+		final RecoveredGame game = games.get(gameId);
+		switch (type) {
+		case CREATE:
+			final String fen = getString(payload);
+			final String control = getString(payload);
+			games.put(gameId, new RecoveredGame(gameId, fen, control.isEmpty() ? null : TimeControl.parse(control)));
+			break;
+		case MOVE:
+			final int ply = payload.getInt();
+			final short move = payload.getShort();
+			final int timeLeft = payload.getInt();
+			// a move of a game snapshotted later in the segment, or one already in the snapshot
+			if (game != null && ply == game.plyCount + 1) {
+				game.play(move, timeLeft);
+			}
+			break;
+		case END:
+			if (game != null) {
+				game.status = GameSessionManager.Status.values()[payload.get()];
+				final String text = getString(payload);
+				game.termination = text.isEmpty() ? null : text;
+			}
+			break;
+		case CLOSE:
+			games.remove(gameId);
+			break;
+		case SNAPSHOT:
+			final String position = getString(payload);
+			final String timeControl = getString(payload);
+			final RecoveredGame snapshot = new RecoveredGame(gameId, position,
+					timeControl.isEmpty() ? null : TimeControl.parse(timeControl));
+			snapshot.status = GameSessionManager.Status.values()[payload.get()];
+			final String termination = getString(payload);
+			snapshot.termination = termination.isEmpty() ? null : termination;
+			snapshot.whiteTime = payload.getInt();
+			snapshot.blackTime = payload.getInt();
+			snapshot.plyCount = payload.getInt();
+			// the position is the one after these moves
+			snapshot.positionPly = snapshot.plyCount;
+			snapshot.moves = new short[Math.max(16, snapshot.plyCount)];
+			for (int i = 0; i < snapshot.plyCount; i++) {
+				snapshot.moves[i] = payload.getShort();
+			}
+			// a game created again after it was closed keeps its place
+			games.remove(gameId);
+			games.put(gameId, snapshot);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown journal record type " + type);
+		}
+	}
+
+	private static final class Waiter {
+		final long position;
+		final CompletableFuture<Void> future;
+
+		Waiter(final long position, final CompletableFuture<Void> future) {
+			this.position = position;
+			this.future = future;
+		}
+	}
+
+	// a game as the journal left it
+	public static final class RecoveredGame {
+		private final long gameId;
+		// the position after positionPly moves, the board is built from it and the moves after it by build()
+		private final String position;
+		private final boolean whiteToMove;
+		private int positionPly;
+		private Board board;
+		private final TimeControl timeControl;
+		private GameSessionManager.Status status;
+		private String termination;
+		private long whiteTime;
+		private long blackTime;
+		private short[] moves;
+		private int plyCount;
+
+		RecoveredGame(final long gameId, final String position, final TimeControl timeControl) {
+			this.gameId = gameId;
+			this.position = position;
+			this.whiteToMove = position.contains(" w ");
+			this.timeControl = timeControl;
+			this.status = GameSessionManager.Status.ACTIVE;
+			this.whiteTime = timeControl == null ? -1 : timeControl.getInitialTime();
+			this.blackTime = this.whiteTime;
+			this.moves = new short[16];
+		}
+
+		private void play(final short move, final int timeLeft) {
+			if (((this.plyCount - this.positionPly) % 2 == 0) == this.whiteToMove) {
+				this.whiteTime = timeLeft;
+			} else {
+				this.blackTime = timeLeft;
+			}
+			if (this.plyCount == this.moves.length) {
+				this.moves = Arrays.copyOf(this.moves, this.moves.length * 2);
+			}
+			this.moves[this.plyCount++] = move;
+		}
+
+		// the journal was written by the game, so the moves are not checked again
+		private void build() {
+			Board current = FenUtilities.createGameFromFEN(this.position);
+			for (int i = this.positionPly; i < this.plyCount; i++) {
+				final int source = (this.moves[i] & ~GameSessionManager.PROMOTION) / 64;
+				final int destination = this.moves[i] % 64;
+				final Move move = AlphaBeta.findMove(current, source, destination);
+				if (move == Move.NULL_MOVE) {
+					throw new IllegalArgumentException("Move " + source + "-" + destination + " not found in game "
+							+ this.gameId);
+				}
+				current = move.execute();
+			}
+			this.board = current;
+		}
+
+		public long getGameId() {
+			return this.gameId;
+		}
+
+		public Board getBoard() {
+			return this.board;
+		}
+
+		public TimeControl getTimeControl() {
+			return this.timeControl;
+		}
+
+		public GameSessionManager.Status getStatus() {
+			return this.status;
+		}
+
+		public String getTermination() {
+			return this.termination;
+		}
+
+		// milliseconds left after the side's last move, -1 in a game without clock
+		public long getTime(final PieceColor color) {
+			return color.white() ? this.whiteTime : this.blackTime;
+		}
+
+		public short[] getMoves() {
+			return this.moves;
+		}
+
+		public int getPlyCount() {
+			return this.plyCount;
+		}
+	}
+}
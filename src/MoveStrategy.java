@@ -0,0 +1,5 @@
+public interface MoveStrategy {
+
+	// choose a move for the current player of the board
+	Move execute(Board board);
+}
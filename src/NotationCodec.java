@@ -0,0 +1,295 @@
+import java.nio.ByteBuffer;
+
+// square names, UCI long algebraic notation and Standard Algebraic Notation
+// every encoder appends to a StringBuilder or a ByteBuffer supplied by the caller and the decoders read
+// straight from a CharSequence, so the text makes no garbage; boards are immutable, though, so SAN still builds
+// a board for each rival move in an ambiguous position and the mate test after a check builds the replies
+public final class NotationCodec {
+
+	// tile 0 is a8, tile 63 is h1
+	private static final String[] SQUARE_NAMES = new String[64];
+	private static final char[] FILES = new char[64];
+	private static final char[] RANKS = new char[64];
+	private static final String[] PIECE_LETTERS = { "", "N", "B", "R", "Q", "K" };
+	// SAN longer than this does not exist: Qa1xb2+ or exd8=Q#
+	private static final int MAX_SAN_LENGTH = 8;
+	private static final ThreadLocal<StringBuilder> SCRATCH = ThreadLocal
+			.withInitial(() -> new StringBuilder(MAX_SAN_LENGTH));
+
+	static {
+		for (int i = 0; i < 64; i++) {
+			FILES[i] = (char) ('a' + i % 8);
+			RANKS[i] = (char) ('8' - i / 8);
+			SQUARE_NAMES[i] = new String(new char[] { FILES[i], RANKS[i] });
+		}
+	}
+
+	private NotationCodec() {
+		throw new RuntimeException();
+	}
+
+	public static String squareName(final int coordinate) {
+		return SQUARE_NAMES[coordinate];
+	}
+
+	public static char fileName(final int coordinate) {
+		return FILES[coordinate];
+	}
+
+	public static char rankName(final int coordinate) {
+		return RANKS[coordinate];
+	}
+
+	public static StringBuilder appendSquare(final int coordinate, final StringBuilder builder) {
+		return builder.append(FILES[coordinate]).append(RANKS[coordinate]);
+	}
+
+	// the tile named by a file and a rank character, or -1
+	public static int parseSquare(final char file, final char rank) {
+		if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+			return -1;
+		}
+		return ('8' - rank) * 8 + (file - 'a');
+	}
+
+	// UCI long algebraic notation: e2e4, e7e8q; 0000 for no move
+	public static StringBuilder appendUci(final Move move, final StringBuilder builder) {
+		if (move == null || move.getCurrentCoordinate() < 0) {
+			return builder.append("0000");
+		}
+		appendSquare(move.getCurrentCoordinate(), builder);
+		appendSquare(move.getDestination(), builder);
+		return move instanceof Move.PawnPromotion ? builder.append('q') : builder;
+	}
+
+	public static ByteBuffer putUci(final Move move, final ByteBuffer buffer) {
+		if (move == null || move.getCurrentCoordinate() < 0) {
+			return buffer.put((byte) '0').put((byte) '0').put((byte) '0').put((byte) '0');
+		}
+		final int source = move.getCurrentCoordinate();
+		final int destination = move.getDestination();
+		buffer.put((byte) FILES[source]).put((byte) RANKS[source]);
+		buffer.put((byte) FILES[destination]).put((byte) RANKS[destination]);
+		return move instanceof Move.PawnPromotion ? buffer.put((byte) 'q') : buffer;
+	}
+
+	public static String toUci(final Move move) {
+		return appendUci(move, new StringBuilder(5)).toString();
+	}
+
+	// the legal move written in UCI notation at text[start..], or the null move
+	// pawns always promote to a queen in this game, so the promotion letter is not checked
+	public static Move parseUci(final Board board, final CharSequence text, final int start) {
+		if (text.length() - start < 4) {
+			return Move.NULL_MOVE;
+		}
+		final int source = parseSquare(text.charAt(start), text.charAt(start + 1));
+		final int destination = parseSquare(text.charAt(start + 2), text.charAt(start + 3));
+		if (source < 0 || destination < 0) {
+			return Move.NULL_MOVE;
+		}
+		return AlphaBeta.findMove(board, source, destination);
+	}
+
+	public static Move parseUci(final Board board, final CharSequence text) {
+		return parseUci(board, text, 0);
+	}
+
+	// SAN of a move played on move.getBoard(); nextBoard gives the check or mate suffix, null leaves it out
+	// the disambiguation is found with one pass over the moves of the position
+	public static StringBuilder appendSan(final Move move, final Board nextBoard, final StringBuilder builder) {
+		long others = 0;
+		final Piece piece = move.getMovedPiece();
+		if (piece != null && piece.getType() != Piece.Type.PAWN && !move.isCastlingMove()) {
+			for (final Move other : move.getBoard().currentPlayer().getLegalMoves()) {
+				if (other.getDestination() == move.getDestination() && other.getMovedPiece().getType() == piece.getType()
+						&& other.getCurrentCoordinate() != move.getCurrentCoordinate() && !other.isCastlingMove()) {
+					others |= 1L << other.getCurrentCoordinate();
+				}
+			}
+		}
+		return appendSan(move, others, nextBoard, builder);
+	}
+
+	// SAN of a move when the caller already knows which other tiles hold a piece of the same type
+	// that reaches the same destination (a bit per tile); pinned pieces among them are ruled out here
+	public static StringBuilder appendSan(final Move move, final long otherSources, final Board nextBoard,
+			final StringBuilder builder) {
+		final Piece piece = move.getMovedPiece();
+		if (move instanceof Move.KingSideCastleMove) {
+			builder.append("O-O");
+		} else if (move instanceof Move.QueenSideCastleMove) {
+			builder.append("O-O-O");
+		} else if (piece == null) {
+			// null move
+			builder.append("--");
+		} else if (piece.getType() == Piece.Type.PAWN) {
+			if (move.isAttack()) {
+				builder.append(FILES[move.getCurrentCoordinate()]).append('x');
+			}
+			appendSquare(move.getDestination(), builder);
+			if (move instanceof Move.PawnPromotion) {
+				builder.append("=Q");
+			}
+		} else {
+			builder.append(PIECE_LETTERS[piece.getType().ordinal()]);
+			if (otherSources != 0) {
+				appendDisambiguation(move, otherSources, builder);
+			}
+			if (move.isAttack()) {
+				builder.append('x');
+			}
+			appendSquare(move.getDestination(), builder);
+		}
+		if (nextBoard != null && nextBoard.currentPlayer().inCheck()) {
+			builder.append(nextBoard.currentPlayer().inCheckMate() ? '#' : '+');
+		}
+		return builder;
+	}
+
+	public static ByteBuffer putSan(final Move move, final Board nextBoard, final ByteBuffer buffer) {
+		final StringBuilder scratch = SCRATCH.get();
+		scratch.setLength(0);
+		appendSan(move, nextBoard, scratch);
+		for (int i = 0; i < scratch.length(); i++) {
+			buffer.put((byte) scratch.charAt(i));
+		}
+		return buffer;
+	}
+
+	public static String toSan(final Move move) {
+		return appendSan(move, null, new StringBuilder(MAX_SAN_LENGTH)).toString();
+	}
+
+	// file, rank or both of the source tile; a board is built for every rival move to rule out pinned pieces
+	private static void appendDisambiguation(final Move move, final long otherSources, final StringBuilder builder) {
+		final Board board = move.getBoard();
+		final int source = move.getCurrentCoordinate();
+		boolean ambiguous = false;
+		boolean sameFile = false;
+		boolean sameRank = false;
+		// the moves list also has moves of pinned pieces; they do not make a move ambiguous
+		for (final Move other : board.currentPlayer().getLegalMoves()) {
+			final int otherSource = other.getCurrentCoordinate();
+			if ((otherSources & (1L << otherSource)) == 0 || other.getDestination() != move.getDestination()
+					|| other.getMovedPiece().getType() != move.getMovedPiece().getType() || other.isCastlingMove()
+					|| !board.currentPlayer().makeMove(other).getMoveStatus().done()) {
+				continue;
+			}
+			ambiguous = true;
+			sameFile |= otherSource % 8 == source % 8;
+			sameRank |= otherSource / 8 == source / 8;
+		}
+		if (!ambiguous) {
+			return;
+		}
+		if (!sameFile) {
+			builder.append(FILES[source]);
+		} else if (!sameRank) {
+			builder.append(RANKS[source]);
+		} else {
+			appendSquare(source, builder);
+		}
+	}
+
+	// the legal move written in Standard Algebraic Notation, or the null move
+	// pawns only promote to a queen in this game, so underpromotions are not resolved
+	public static Move parseSan(final Board board, final CharSequence san) {
+		int end = san.length();
+		// check, mate and annotation suffixes
+		while (end > 0 && isSuffix(san.charAt(end - 1))) {
+			end--;
+		}
+		if (end < 2) {
+			return Move.NULL_MOVE;
+		}
+		final char first = san.charAt(0);
+		if (first == 'O' || first == '0') {
+			return parseCastleMove(board, end == 5);
+		}
+		Piece.Type type = Piece.Type.PAWN;
+		int start = 0;
+		switch (first) {
+		case 'N':
+			type = Piece.Type.KNIGHT;
+			break;
+		case 'B':
+			type = Piece.Type.BISHOP;
+			break;
+		case 'R':
+			type = Piece.Type.ROOK;
+			break;
+		case 'Q':
+			type = Piece.Type.QUEEN;
+			break;
+		case 'K':
+			type = Piece.Type.KING;
+			break;
+		default:
+			break;
+		}
+		if (type != Piece.Type.PAWN) {
+			start = 1;
+		}
+		boolean promotion = false;
+		final char last = san.charAt(end - 1);
+		if (type == Piece.Type.PAWN && (last == 'Q' || last == 'R' || last == 'B' || last == 'N')) {
+			if (last != 'Q') {
+				return Move.NULL_MOVE;
+			}
+			promotion = true;
+			end--;
+			if (end > 0 && san.charAt(end - 1) == '=') {
+				end--;
+			}
+		}
+		if (end - start < 2) {
+			return Move.NULL_MOVE;
+		}
+		final int destination = parseSquare(san.charAt(end - 2), san.charAt(end - 1));
+		if (destination < 0) {
+			return Move.NULL_MOVE;
+		}
+		// disambiguation: the file and/or the rank of the moving piece
+		int sourceFile = -1;
+		int sourceRow = -1;
+		for (int i = start; i < end - 2; i++) {
+			final char c = san.charAt(i);
+			if (c >= 'a' && c <= 'h') {
+				sourceFile = c - 'a';
+			} else if (c >= '1' && c <= '8') {
+				sourceRow = '8' - c;
+			} else if (c != 'x' && c != ':' && c != '-') {
+				return Move.NULL_MOVE;
+			}
+		}
+		Move found = Move.NULL_MOVE;
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			final int source = move.getCurrentCoordinate();
+			if (move.getDestination() != destination || move.getMovedPiece().getType() != type
+					|| move.isCastlingMove() || (move instanceof Move.PawnPromotion) != promotion
+					|| (sourceFile >= 0 && source % 8 != sourceFile) || (sourceRow >= 0 && source / 8 != sourceRow)) {
+				continue;
+			}
+			if (found != Move.NULL_MOVE) {
+				// two candidates: SAN leaves out what is needed to rule out pinned pieces
+				return board.currentPlayer().makeMove(found).getMoveStatus().done() ? found : move;
+			}
+			found = move;
+		}
+		return found;
+	}
+
+	private static Move parseCastleMove(final Board board, final boolean queenSide) {
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			if (queenSide ? move instanceof Move.QueenSideCastleMove : move instanceof Move.KingSideCastleMove) {
+				return move;
+			}
+		}
+		return Move.NULL_MOVE;
+	}
+
+	private static boolean isSuffix(final char c) {
+		return c == '+' || c == '#' || c == '!' || c == '?';
+	}
+}
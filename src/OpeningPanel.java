@@ -0,0 +1,77 @@
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+
+// moves played from the current position in the games of the opening tree
+public class OpeningPanel extends JPanel {
+
+	private static final long serialVersionUID = 1L;
+	private static final Dimension OPENING_PANEL_DIMENSION = new Dimension(400, 110);
+	private final StatisticsModel model;
+
+	OpeningPanel() {
+		super(new BorderLayout());
+		this.model = new StatisticsModel();
+		final JTable table = new JTable(this.model);
+		table.setRowHeight(15);
+		final JScrollPane scrollPane = new JScrollPane(table);
+		scrollPane.setPreferredSize(OPENING_PANEL_DIMENSION);
+		this.add(scrollPane, BorderLayout.CENTER);
+	}
+
+	public void redo(final Board board, final OpeningTree tree) {
+		this.model.setStatistics(tree != null ? tree.query(board) : new ArrayList<>());
+	}
+
+	private static class StatisticsModel extends AbstractTableModel {
+
+		private static final long serialVersionUID = 1L;
+		private static final String[] NAMES = { "Move", "Games", "Score", "Rating" };
+		private List<OpeningTree.MoveStatistics> statistics;
+
+		StatisticsModel() {
+			this.statistics = new ArrayList<>();
+		}
+
+		void setStatistics(final List<OpeningTree.MoveStatistics> statistics) {
+			this.statistics = statistics;
+			fireTableDataChanged();
+		}
+
+		@Override
+		public int getRowCount() {
+			return this.statistics.size();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return NAMES.length;
+		}
+
+		@Override
+		public String getColumnName(final int col) {
+			return NAMES[col];
+		}
+
+		@Override
+		public Object getValueAt(final int row, final int col) {
+			final OpeningTree.MoveStatistics moveStatistics = this.statistics.get(row);
+			switch (col) {
+			case 0:
+				return moveStatistics.getMove().toString();
+			case 1:
+				return moveStatistics.getGames();
+			case 2:
+				return String.format("%.1f%%", moveStatistics.getScore());
+			default:
+				return moveStatistics.getAverageRating() > 0 ? moveStatistics.getAverageRating() : "";
+			}
+		}
+	}
+}
@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// statistics of the moves played from each position of a collection of games, up to a number of plies
+// positions are found by their Zobrist hash in an open addressing table; the moves of a position are
+// a linked list of edges held in parallel primitive arrays, so there is no boxed key and no Move object stored
+// games may be added from several threads
+public class OpeningTree {
+
+	public static final int DEFAULT_MAX_PLY = 20;
+	private static final int INITIAL_POSITIONS = 1 << 16;
+	private static final int INITIAL_EDGES = 1 << 16;
+
+	private final int maxPly;
+	// positions: hash and first edge + 1, 0 marks a free slot
+	private long[] positionHashes;
+	private int[] firstEdges;
+	private int positionCount;
+	// edges: move as source * 64 + destination, next edge of the same position + 1, statistics
+	private short[] edgeMoves;
+	private int[] nextEdges;
+	private int[] whiteWins;
+	private int[] draws;
+	private int[] blackWins;
+	private int[] unfinished;
+	private long[] ratingSums;
+	private int[] ratingCounts;
+	private int edgeCount;
+	private long gameCount;
+
+	public OpeningTree(final int maxPly) {
+		this.maxPly = maxPly;
+		this.positionHashes = new long[INITIAL_POSITIONS];
+		this.firstEdges = new int[INITIAL_POSITIONS];
+		this.edgeMoves = new short[INITIAL_EDGES];
+		this.nextEdges = new int[INITIAL_EDGES];
+		this.whiteWins = new int[INITIAL_EDGES];
+		this.draws = new int[INITIAL_EDGES];
+		this.blackWins = new int[INITIAL_EDGES];
+		this.unfinished = new int[INITIAL_EDGES];
+		this.ratingSums = new long[INITIAL_EDGES];
+		this.ratingCounts = new int[INITIAL_EDGES];
+	}
+
+	// every game of a PGN file or of a binary game archive (.cga)
+	public static OpeningTree load(final Path path, final int maxPly) throws IOException {
+		final OpeningTree tree = new OpeningTree(maxPly);
+		if (path.toString().endsWith(".cga")) {
+			try (ArchiveReader reader = new ArchiveReader(path)) {
+				ArchivedGame game;
+				while ((game = reader.nextGame()) != null) {
+					tree.addGame(game);
+				}
+			}
+		} else {
+			try (PgnReader reader = new PgnReader(path)) {
+				PgnGame game;
+				while ((game = reader.nextGame()) != null) {
+					tree.addGame(game);
+				}
+			}
+		}
+		return tree;
+	}
+
+	public void addGame(final PgnGame game) {
+		final Board start;
+		try {
+			start = PgnUtilities.createStartingBoard(game);
+		} catch (final IllegalArgumentException e) {
+			return;
+		}
+		final int plies = Math.min(this.maxPly, game.getMoves().size());
+		final long[] hashes = new long[plies];
+		final short[] moves = new short[plies];
+		Board board = start;
+		int played = 0;
+		while (played < plies) {
+			final Move move = NotationCodec.parseSan(board, game.getMoves().get(played));
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().done()) {
+				break;
+			}
+			hashes[played] = board.getZobristHash();
+			moves[played++] = moveKey(move);
+			board = transition.getNextBoard();
+		}
+		final String result = game.getHeader("Result").isEmpty() ? game.getResult() : game.getHeader("Result");
+		add(hashes, moves, played, start.currentPlayer().getColor().white(), GameArchive.resultCode(result),
+				rating(game.getHeader("WhiteElo")), rating(game.getHeader("BlackElo")));
+	}
+
+	public void addGame(final ArchivedGame game) {
+		final int plies = Math.min(this.maxPly, game.getPlyCount());
+		final long[] hashes = new long[plies];
+		final short[] moves = new short[plies];
+		final int[] keys = new int[256];
+		final byte[] indexes = game.getPlies();
+		final Board start = game.createStartingBoard();
+		Board board = start;
+		int played = 0;
+		while (played < plies) {
+			final Move move = GameArchive.moveAt(board, indexes[played] & 0xFF, keys);
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().done()) {
+				break;
+			}
+			hashes[played] = board.getZobristHash();
+			moves[played++] = moveKey(move);
+			board = transition.getNextBoard();
+		}
+		add(hashes, moves, played, start.currentPlayer().getColor().white(), GameArchive.resultCode(game.getResult()),
+				rating(game.getTag("WhiteElo")), rating(game.getTag("BlackElo")));
+	}
+
+	// the moves played from the position, most played first
+	public synchronized List<MoveStatistics> query(final Board board) {
+		final List<MoveStatistics> statistics = new ArrayList<>();
+		final int slot = find(board.getZobristHash());
+		if (this.firstEdges[slot] == 0) {
+			return statistics;
+		}
+		final boolean white = board.currentPlayer().getColor().white();
+		for (int edge = this.firstEdges[slot] - 1; edge >= 0; edge = this.nextEdges[edge] - 1) {
+			final Move move = AlphaBeta.findMove(board, this.edgeMoves[edge] / 64, this.edgeMoves[edge] % 64);
+			if (move == Move.NULL_MOVE) {
+				// another position with the same hash
+				continue;
+			}
+			final int decided = this.whiteWins[edge] + this.draws[edge] + this.blackWins[edge];
+			final int wins = white ? this.whiteWins[edge] : this.blackWins[edge];
+			statistics.add(new MoveStatistics(move, decided + this.unfinished[edge],
+					decided == 0 ? 0 : (wins + this.draws[edge] / 2.0) * 100 / decided,
+					this.ratingCounts[edge] == 0 ? 0 : (int) (this.ratingSums[edge] / this.ratingCounts[edge])));
+		}
+		statistics.sort((first, second) -> Integer.compare(second.getGames(), first.getGames()));
+		return statistics;
+	}
+
+	public synchronized long getGameCount() {
+		return this.gameCount;
+	}
+
+	public synchronized int getPositionCount() {
+		return this.positionCount;
+	}
+
+	private synchronized void add(final long[] hashes, final short[] moves, final int plies, final boolean whiteFirst,
+			final int result, final int whiteRating, final int blackRating) {
+		this.gameCount++;
+		for (int ply = 0; ply < plies; ply++) {
+			final int edge = edge(hashes[ply], moves[ply]);
+			switch (result) {
+			case 1:
+				this.whiteWins[edge]++;
+				break;
+			case 2:
+				this.blackWins[edge]++;
+				break;
+			case 3:
+				this.draws[edge]++;
+				break;
+			default:
+				this.unfinished[edge]++;
+				break;
+			}
+			// the rating of the player making the move
+			final int rating = (ply % 2 == 0) == whiteFirst ? whiteRating : blackRating;
+			if (rating > 0) {
+				this.ratingSums[edge] += rating;
+				this.ratingCounts[edge]++;
+			}
+		}
+	}
+
+	// the edge of the move from the position, created when it is played for the first time
+	private int edge(final long hash, final short move) {
+		int slot = find(hash);
+		if (this.firstEdges[slot] == 0) {
+			if (2 * (this.positionCount + 1) > this.positionHashes.length) {
+				growPositions();
+				slot = find(hash);
+			}
+			this.positionHashes[slot] = hash;
+			this.positionCount++;
+		} else {
+			for (int edge = this.firstEdges[slot] - 1; edge >= 0; edge = this.nextEdges[edge] - 1) {
+				if (this.edgeMoves[edge] == move) {
+					return edge;
+				}
+			}
+		}
+		if (this.edgeCount == this.edgeMoves.length) {
+			growEdges();
+		}
+		final int edge = this.edgeCount++;
+		this.edgeMoves[edge] = move;
+		this.nextEdges[edge] = this.firstEdges[slot];
+		this.firstEdges[slot] = edge + 1;
+		return edge;
+	}
+
+	// the slot holding the hash, or the free slot where it belongs
+	private int find(final long hash) {
+		final int mask = this.positionHashes.length - 1;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while (this.firstEdges[slot] != 0 && this.positionHashes[slot] != hash) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void growPositions() {
+		final long[] oldHashes = this.positionHashes;
+		final int[] oldFirstEdges = this.firstEdges;
+		this.positionHashes = new long[oldHashes.length * 2];
+		this.firstEdges = new int[oldFirstEdges.length * 2];
+		for (int i = 0; i < oldHashes.length; i++) {
+			if (oldFirstEdges[i] != 0) {
+				final int slot = find(oldHashes[i]);
+				this.positionHashes[slot] = oldHashes[i];
+				this.firstEdges[slot] = oldFirstEdges[i];
+			}
+		}
+	}
+
+	private void growEdges() {
+		final int capacity = this.edgeMoves.length * 2;
+		this.edgeMoves = Arrays.copyOf(this.edgeMoves, capacity);
+		this.nextEdges = Arrays.copyOf(this.nextEdges, capacity);
+		this.whiteWins = Arrays.copyOf(this.whiteWins, capacity);
+		this.draws = Arrays.copyOf(this.draws, capacity);
+		this.blackWins = Arrays.copyOf(this.blackWins, capacity);
+		this.unfinished = Arrays.copyOf(this.unfinished, capacity);
+		this.ratingSums = Arrays.copyOf(this.ratingSums, capacity);
+		this.ratingCounts = Arrays.copyOf(this.ratingCounts, capacity);
+	}
+
+	private static short moveKey(final Move move) {
+		return (short) (move.getCurrentCoordinate() * 64 + move.getDestination());
+	}
+
+	private static int rating(final String value) {
+		int rating = 0;
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				return 0;
+			}
+			rating = rating * 10 + (c - '0');
+		}
+		return rating;
+	}
+
+	// a move of a position with the games it was played in
+	public static final class MoveStatistics {
+		private final Move move;
+		private final int games;
+		private final double score;
+		private final int averageRating;
+
+		MoveStatistics(final Move move, final int games, final double score, final int averageRating) {
+			this.move = move;
+			this.games = games;
+			this.score = score;
+			this.averageRating = averageRating;
+		}
+
+		public Move getMove() {
+			return this.move;
+		}
+
+		public int getGames() {
+			return this.games;
+		}
+
+		// percentage of the points won by the side making the move, over the finished games
+		public double getScore() {
+			return this.score;
+		}
+
+		// average rating of the players making the move, 0 when no game has ratings
+		public int getAverageRating() {
+			return this.averageRating;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s  %d games  %.1f%%  %d", this.move, this.games, this.score, this.averageRating);
+		}
+	}
+}
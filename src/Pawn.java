@@ -32,7 +32,6 @@ public class Pawn extends Piece {
 				continue;
 			}
 			if (currentCandidateOffset == 8 && !board.getTile(candidateCoordinate).occupied()) {
-				legalMoves.add(new Move.PawnMove(board, this, candidateCoordinate));
 				if (this.color.isPawnPromotionSquare(candidateCoordinate)) {
 					legalMoves.add(new Move.PawnPromotion(new Move.PawnMove(board, this, candidateCoordinate)));
 				} else {
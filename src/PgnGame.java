@@ -0,0 +1,63 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// one game of a PGN file: its tag pairs and the SAN moves of the main line
+public final class PgnGame {
+
+	// byte offset of the game in its file
+	private final long offset;
+	private final Map<String, String> headers;
+	private final List<String> moves;
+	private final String result;
+
+	public PgnGame(final long offset, final Map<String, String> headers, final List<String> moves,
+			final String result) {
+		this.offset = offset;
+		this.headers = Collections.unmodifiableMap(headers);
+		this.moves = Collections.unmodifiableList(moves);
+		this.result = result;
+	}
+
+	public long getOffset() {
+		return this.offset;
+	}
+
+	public Map<String, String> getHeaders() {
+		return this.headers;
+	}
+
+	// value of a tag pair, or an empty string when the game does not have it
+	public String getHeader(final String name) {
+		final String value = this.headers.get(name);
+		return value != null ? value : "";
+	}
+
+	public List<String> getMoves() {
+		return this.moves;
+	}
+
+	// game termination marker: 1-0, 0-1, 1/2-1/2 or *
+	public String getResult() {
+		return this.result;
+	}
+
+	// one line describing the game, used in the game list
+	public String getSummary() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append(getHeader("White")).append(" - ").append(getHeader("Black"));
+		builder.append("  ").append(this.result);
+		if (!getHeader("Event").isEmpty()) {
+			builder.append("  ").append(getHeader("Event"));
+		}
+		if (!getHeader("Date").isEmpty()) {
+			builder.append("  ").append(getHeader("Date"));
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getSummary();
+	}
+}
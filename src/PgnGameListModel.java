@@ -0,0 +1,80 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+
+// games of a PGN file, listed lazily: the file is only read as far as the user has scrolled
+public class PgnGameListModel extends AbstractListModel<String> implements Closeable {
+
+	private static final long serialVersionUID = 1L;
+	// games read each time the user scrolls near the end of the list
+	private static final int CHUNK_SIZE = 100;
+
+	private final PgnReader reader;
+	private long[] offsets;
+	private final List<String> summaries;
+	// where the next chunk starts; games picked by the user move the reader around
+	private long nextOffset;
+	private boolean complete;
+
+	public PgnGameListModel(final Path path) throws IOException {
+		this.reader = new PgnReader(path);
+		this.offsets = new long[CHUNK_SIZE];
+		this.summaries = new ArrayList<>();
+	}
+
+	@Override
+	public int getSize() {
+		return this.summaries.size();
+	}
+
+	@Override
+	public String getElementAt(final int index) {
+		return this.summaries.get(index);
+	}
+
+	// true when the whole file has been listed
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	// list the next chunk of games
+	public void loadMore() throws IOException {
+		if (this.complete) {
+			return;
+		}
+		final int first = this.summaries.size();
+		this.reader.seek(this.nextOffset);
+		for (int i = 0; i < CHUNK_SIZE; i++) {
+			final PgnGame game = this.reader.nextGame();
+			if (game == null) {
+				this.complete = true;
+				break;
+			}
+			if (this.summaries.size() == this.offsets.length) {
+				this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+			}
+			this.offsets[this.summaries.size()] = game.getOffset();
+			this.summaries.add((this.summaries.size() + 1) + ". " + game.getSummary());
+		}
+		this.nextOffset = this.reader.position();
+		if (this.summaries.size() > first) {
+			fireIntervalAdded(this, first, this.summaries.size() - 1);
+		}
+	}
+
+	// read a listed game again, with its moves
+	public PgnGame getGame(final int index) throws IOException {
+		this.reader.seek(this.offsets[index]);
+		return this.reader.nextGame();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.reader.close();
+	}
+}
@@ -0,0 +1,243 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// streaming PGN reader: one game at a time through a fixed size NIO buffer,
+// so files of any size are read without loading them into memory
+// comments, variations, NAGs and escape lines are skipped; only the main line is kept
+public class PgnReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	// file offset of the first byte in the buffer
+	private long bufferStart;
+	private byte[] text;
+	private int textLength;
+
+	public PgnReader(final Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.buffer.limit(0);
+		this.text = new byte[256];
+	}
+
+	// file offset of the next byte to read
+	public long position() {
+		return this.bufferStart + this.buffer.position();
+	}
+
+	// continue reading at a file offset, e.g. the offset of a game listed before
+	public void seek(final long offset) throws IOException {
+		this.channel.position(offset);
+		this.buffer.clear().limit(0);
+		this.bufferStart = offset;
+	}
+
+	public long size() throws IOException {
+		return this.channel.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	// the next game, or null at the end of the file
+	public PgnGame nextGame() throws IOException {
+		int c = skipWhitespace();
+		if (c < 0) {
+			return null;
+		}
+		final long offset = position();
+		final Map<String, String> headers = new LinkedHashMap<>();
+		final List<String> moves = new ArrayList<>();
+		String result = "*";
+		boolean inMovetext = false;
+		while ((c = skipWhitespace()) >= 0) {
+			if (c == '[') {
+				// tag pairs after the movetext belong to the next game
+				if (inMovetext) {
+					break;
+				}
+				read();
+				readTag(headers);
+			} else if (c == '{') {
+				skipUntil('}');
+			} else if (c == ';' || c == '%') {
+				skipUntil('\n');
+			} else if (c == '(') {
+				skipVariation();
+			} else if (c == '$') {
+				read();
+				readToken();
+			} else {
+				inMovetext = true;
+				readToken();
+				if (isResult()) {
+					result = new String(this.text, 0, this.textLength, StandardCharsets.US_ASCII);
+					break;
+				}
+				final String move = moveText();
+				if (move != null) {
+					moves.add(move);
+				}
+			}
+		}
+		return new PgnGame(offset, headers, moves, result);
+	}
+
+	// [Name "Value"]
+	private void readTag(final Map<String, String> headers) throws IOException {
+		skipWhitespace();
+		this.textLength = 0;
+		int c;
+		while ((c = peek()) >= 0 && c != ' ' && c != '"' && c != ']') {
+			append(read());
+		}
+		final String name = new String(this.text, 0, this.textLength, StandardCharsets.US_ASCII);
+		this.textLength = 0;
+		skipWhitespace();
+		if (peek() == '"') {
+			read();
+			while ((c = read()) >= 0 && c != '"') {
+				if (c == '\\') {
+					c = read();
+				}
+				append(c);
+			}
+		}
+		skipUntil(']');
+		headers.put(name, new String(this.text, 0, this.textLength, StandardCharsets.UTF_8));
+	}
+
+	// a token of the movetext into the text buffer
+	private void readToken() throws IOException {
+		this.textLength = 0;
+		int c;
+		while ((c = peek()) >= 0 && !isWhitespace(c) && c != '{' && c != '}' && c != '(' && c != ')' && c != ';'
+				&& c != '[' && c != '$') {
+			append(read());
+		}
+		// a stray delimiter would otherwise never be consumed
+		if (this.textLength == 0 && c >= 0) {
+			read();
+		}
+	}
+
+	private boolean isResult() {
+		return matches("1-0") || matches("0-1") || matches("1/2-1/2") || matches("*");
+	}
+
+	// the SAN part of a token, without a leading move number like "12." or "12..."
+	private String moveText() {
+		int start = 0;
+		while (start < this.textLength && this.text[start] >= '0' && this.text[start] <= '9') {
+			start++;
+		}
+		if (start == this.textLength) {
+			// a bare number
+			return null;
+		}
+		if (start > 0 && this.text[start] != '.') {
+			// not a move number, e.g. castling written with zeros: 0-0
+			start = 0;
+		}
+		while (start < this.textLength && this.text[start] == '.') {
+			start++;
+		}
+		if (start == this.textLength) {
+			return null;
+		}
+		return new String(this.text, start, this.textLength - start, StandardCharsets.US_ASCII);
+	}
+
+	private boolean matches(final String token) {
+		if (token.length() != this.textLength) {
+			return false;
+		}
+		for (int i = 0; i < this.textLength; i++) {
+			if (this.text[i] != token.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// variations may be nested and may contain comments
+	private void skipVariation() throws IOException {
+		int depth = 0;
+		int c;
+		while ((c = read()) >= 0) {
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				if (--depth == 0) {
+					return;
+				}
+			} else if (c == '{') {
+				skipUntil('}');
+			} else if (c == ';') {
+				skipUntil('\n');
+			}
+		}
+	}
+
+	private void skipUntil(final int end) throws IOException {
+		int c;
+		while ((c = read()) >= 0 && c != end) {
+		}
+	}
+
+	// the next byte that is no whitespace, without consuming it; -1 at the end of the file
+	private int skipWhitespace() throws IOException {
+		int c;
+		while ((c = peek()) >= 0 && isWhitespace(c)) {
+			read();
+		}
+		return c;
+	}
+
+	private static boolean isWhitespace(final int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+	}
+
+	private void append(final int c) {
+		if (this.textLength == this.text.length) {
+			this.text = Arrays.copyOf(this.text, this.text.length * 2);
+		}
+		this.text[this.textLength++] = (byte) c;
+	}
+
+	private int peek() throws IOException {
+		if (!this.buffer.hasRemaining() && !fill()) {
+			return -1;
+		}
+		return this.buffer.get(this.buffer.position()) & 0xFF;
+	}
+
+	private int read() throws IOException {
+		if (!this.buffer.hasRemaining() && !fill()) {
+			return -1;
+		}
+		return this.buffer.get() & 0xFF;
+	}
+
+	private boolean fill() throws IOException {
+		this.bufferStart += this.buffer.limit();
+		this.buffer.clear();
+		final int bytesRead = this.channel.read(this.buffer);
+		this.buffer.flip();
+		return bytesRead > 0;
+	}
+}
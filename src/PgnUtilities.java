@@ -0,0 +1,34 @@
+import java.util.List;
+
+// turns the SAN moves of a PgnGame back into moves on a Board
+public class PgnUtilities {
+
+	private PgnUtilities() {
+		throw new RuntimeException();
+	}
+
+	// the position the game starts from: the FEN tag when there is one, otherwise the standard position
+	public static Board createStartingBoard(final PgnGame game) {
+		final String fen = game.getHeader("FEN");
+		if (!fen.isEmpty()) {
+			return FenUtilities.createGameFromFEN(fen);
+		}
+		return Board.createStandardBoard();
+	}
+
+	// play the moves of the game, adding each one to playedMoves
+	// stops at the first move that cannot be resolved, so playedMoves may end up shorter than the game
+	public static Board replay(final PgnGame game, final List<Move> playedMoves) {
+		Board board = createStartingBoard(game);
+		for (final String san : game.getMoves()) {
+			final Move move = NotationCodec.parseSan(board, san);
+			final MoveTransition transition = board.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().done()) {
+				break;
+			}
+			playedMoves.add(move);
+			board = transition.getNextBoard();
+		}
+		return board;
+	}
+}
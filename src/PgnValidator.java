@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+// batch tool: replays every game of a PGN file and reports illegal moves
+// and checkmates or stalemates that disagree with the Result tag
+// usage: java PgnValidator <file.pgn> [threads]
+//
+// one thread splits the file into games, all cores replay them, and the calling thread prints
+// the reports in input order; the queue between them is bounded, so the reader waits when
+// the replay falls behind and memory stays the same for any file size
+public class PgnValidator {
+
+	// games waiting or being replayed per thread
+	private static final int GAMES_IN_FLIGHT_PER_THREAD = 64;
+	private static final int PROGRESS_INTERVAL = 100000;
+	// marks the end of the file in the queue
+	private static final Future<Report> END = CompletableFuture.completedFuture(null);
+
+	private final int threads;
+	private final PrintStream output;
+
+	public PgnValidator(final int threads, final PrintStream output) {
+		this.threads = threads;
+		this.output = output;
+	}
+
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.err.println("usage: java PgnValidator <file.pgn> [threads]");
+			System.exit(2);
+		}
+		final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		final Summary summary = new PgnValidator(threads, System.out).validate(Paths.get(args[0]));
+		System.out.println(summary);
+		System.exit(summary.problems == 0 ? 0 : 1);
+	}
+
+	public Summary validate(final Path pgnFile) throws IOException, InterruptedException {
+		final ExecutorService replayPool = Executors.newFixedThreadPool(this.threads);
+		final BlockingQueue<Future<Report>> pending = new ArrayBlockingQueue<>(
+				this.threads * GAMES_IN_FLIGHT_PER_THREAD);
+		final IOException[] readError = new IOException[1];
+		final Thread readerThread = new Thread(() -> {
+			try (PgnReader reader = new PgnReader(pgnFile)) {
+				PgnGame game;
+				long gameNumber = 0;
+				while ((game = reader.nextGame()) != null) {
+					final PgnGame replayedGame = game;
+					final long number = ++gameNumber;
+					// blocks while the queue is full: backpressure on the reader
+					pending.put(replayPool.submit(() -> replay(number, replayedGame)));
+				}
+			} catch (final IOException e) {
+				readError[0] = e;
+			} catch (final InterruptedException | RejectedExecutionException e) {
+				// validate() gave up on the file; the interrupt keeps the put below from waiting for room
+				Thread.currentThread().interrupt();
+			} finally {
+				try {
+					pending.put(END);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "pgn-reader");
+		final long start = System.nanoTime();
+		readerThread.start();
+		final Summary summary = new Summary();
+		try {
+			Future<Report> next;
+			while ((next = pending.take()) != END) {
+				final Report report = next.get();
+				summary.add(report);
+				if (report.problem != null) {
+					this.output.println("game " + report.gameNumber + " (offset " + report.offset + ", "
+							+ report.summary + "): " + report.problem);
+				}
+				if (summary.games % PROGRESS_INTERVAL == 0) {
+					this.output.println(summary.games + " games, " + summary.gamesPerSecond(start) + " games/s");
+				}
+			}
+		} catch (final ExecutionException e) {
+			throw new IOException("replay failed", e.getCause());
+		} finally {
+			// after a failure nobody takes from the queue: a reader waiting for room in it stops waiting
+			replayPool.shutdownNow();
+			readerThread.interrupt();
+			readerThread.join();
+		}
+		if (readError[0] != null) {
+			throw readError[0];
+		}
+		summary.elapsedNanos = System.nanoTime() - start;
+		return summary;
+	}
+
+	private static Report replay(final long gameNumber, final PgnGame game) {
+		final List<Move> playedMoves = new ArrayList<>();
+		final Board board;
+		try {
+			board = PgnUtilities.replay(game, playedMoves);
+		} catch (final IllegalArgumentException e) {
+			return new Report(gameNumber, game, 0, e.getMessage());
+		} catch (final RuntimeException e) {
+			// a position the board cannot hold is one broken game, not a failed run
+			return new Report(gameNumber, game, playedMoves.size(), "cannot replay: " + e);
+		}
+		final int plies = playedMoves.size();
+		if (plies < game.getMoves().size()) {
+			return new Report(gameNumber, game, plies,
+					"illegal move " + moveNumber(plies) + " " + game.getMoves().get(plies));
+		}
+		// the game ended on the board: the result tag has to agree
+		final String result = game.getHeader("Result").isEmpty() ? game.getResult() : game.getHeader("Result");
+		if (board.currentPlayer().inCheckMate()) {
+			final String expected = board.currentPlayer().getColor().white() ? "0-1" : "1-0";
+			if (!expected.equals(result)) {
+				return new Report(gameNumber, game, plies, "checkmate on the board but result is " + result);
+			}
+		} else if (board.currentPlayer().inStaleMate() && !"1/2-1/2".equals(result)) {
+			return new Report(gameNumber, game, plies, "stalemate on the board but result is " + result);
+		}
+		return new Report(gameNumber, game, plies, null);
+	}
+
+	// 12. for a white move, 12... for a black move, counted from the start of the game
+	private static String moveNumber(final int ply) {
+		return (ply / 2 + 1) + (ply % 2 == 0 ? "." : "...");
+	}
+
+	private static final class Report {
+		final long gameNumber;
+		final long offset;
+		final String summary;
+		final int plies;
+		// null when the game is fine
+		final String problem;
+
+		Report(final long gameNumber, final PgnGame game, final int plies, final String problem) {
+			this.gameNumber = gameNumber;
+			this.offset = game.getOffset();
+			this.summary = game.getSummary();
+			this.plies = plies;
+			this.problem = problem;
+		}
+	}
+
+	public static final class Summary {
+		long games;
+		long plies;
+		long problems;
+		long elapsedNanos;
+
+		void add(final Report report) {
+			this.games++;
+			this.plies += report.plies;
+			if (report.problem != null) {
+				this.problems++;
+			}
+		}
+
+		long gamesPerSecond(final long start) {
+			return this.games * 1000000000L / Math.max(1, System.nanoTime() - start);
+		}
+
+		public long getGames() {
+			return this.games;
+		}
+
+		public long getProblems() {
+			return this.problems;
+		}
+
+		@Override
+		public String toString() {
+			final double seconds = this.elapsedNanos / 1e9;
+			return this.games + " games, " + this.plies + " plies, " + this.problems + " with problems, "
+					+ String.format("%.1f s, %.0f games/s", seconds, this.games / Math.max(seconds, 1e-9));
+		}
+	}
+}
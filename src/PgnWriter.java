@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// writes moves in Standard Algebraic Notation and whole games as PGN
+// a writer keeps the index of the position it wrote last, so it is not thread safe:
+// batch exports use one writer per thread
+public class PgnWriter {
+
+	private static final String[] SEVEN_TAG_ROSTER = { "Event", "Site", "Date", "Round", "White", "Black", "Result" };
+	private static final String[] SEVEN_TAG_DEFAULTS = { "?", "?", "????.??.??", "?", "?", "?", "*" };
+	private static final int LINE_LENGTH = 79;
+
+	// per position index: for each piece type and destination, the tiles its pieces come from
+	// built with one pass over the legal moves, then every move of the position is disambiguated from it
+	private final long[] sources;
+	private Board indexedBoard;
+
+	public PgnWriter() {
+		this.sources = new long[Piece.Type.values().length * 64];
+	}
+
+	// appends the SAN of a move played on move.getBoard()
+	// nextBoard is the board after the move and gives the check or mate suffix; null leaves it out
+	public StringBuilder appendSan(final Move move, final Board nextBoard, final StringBuilder builder) {
+		final Piece piece = move.getMovedPiece();
+		long others = 0;
+		if (piece != null && piece.getType() != Piece.Type.PAWN && !move.isCastlingMove()) {
+			if (move.getBoard() != this.indexedBoard) {
+				index(move.getBoard());
+			}
+			others = this.sources[piece.getType().ordinal() * 64 + move.getDestination()]
+					& ~(1L << move.getCurrentCoordinate());
+		}
+		return NotationCodec.appendSan(move, others, nextBoard, builder);
+	}
+
+	// the movetext of a game: moves.get(i).getBoard() is the board before move i, finalBoard the board after the last
+	// the boards the moves were played on are reused, nothing is replayed
+	public StringBuilder appendMovetext(final List<Move> moves, final Board finalBoard, final String result,
+			final StringBuilder builder) {
+		int lineStart = builder.length();
+		int moveNumber = 1;
+		for (int i = 0; i < moves.size(); i++) {
+			final Move move = moves.get(i);
+			final Board nextBoard = i + 1 < moves.size() ? moves.get(i + 1).getBoard() : finalBoard;
+			final int tokenStart = builder.length();
+			final boolean white = move.getMovedPiece().getColor().white();
+			if (white) {
+				builder.append(moveNumber).append(". ");
+			} else if (i == 0) {
+				builder.append(moveNumber).append("... ");
+			}
+			appendSan(move, nextBoard, builder);
+			if (!white) {
+				moveNumber++;
+			}
+			lineStart = wrap(builder, tokenStart, lineStart);
+			builder.append(' ');
+		}
+		final int tokenStart = builder.length();
+		builder.append(result);
+		wrap(builder, tokenStart, lineStart);
+		return builder.append('\n');
+	}
+
+	// a whole game: the seven tag roster first, then the other tags, then the movetext
+	// startBoard is the position before the first move; a FEN tag is written when it is not the standard position
+	public StringBuilder appendGame(final Map<String, String> tags, final Board startBoard, final List<Move> moves,
+			final Board finalBoard, final StringBuilder builder) {
+		final String result = result(tags.get("Result"), finalBoard);
+		for (int i = 0; i < SEVEN_TAG_ROSTER.length; i++) {
+			final String value = i == SEVEN_TAG_ROSTER.length - 1 ? result : tags.get(SEVEN_TAG_ROSTER[i]);
+			appendTag(SEVEN_TAG_ROSTER[i], value != null ? value : SEVEN_TAG_DEFAULTS[i], builder);
+		}
+		final String fen = FenUtilities.createFENFromGame(startBoard);
+		final boolean setUp = !fen.equals(FenUtilities.STANDARD_FEN);
+		for (final Map.Entry<String, String> tag : tags.entrySet()) {
+			if (!isRosterTag(tag.getKey()) && !(setUp && (tag.getKey().equals("FEN") || tag.getKey().equals("SetUp")))) {
+				appendTag(tag.getKey(), tag.getValue(), builder);
+			}
+		}
+		if (setUp) {
+			appendTag("SetUp", "1", builder);
+			appendTag("FEN", fen, builder);
+		}
+		builder.append('\n');
+		appendMovetext(moves, finalBoard, result, builder);
+		return builder.append('\n');
+	}
+
+	public void writeGame(final Writer writer, final Map<String, String> tags, final Board startBoard,
+			final List<Move> moves, final Board finalBoard) throws IOException {
+		final StringBuilder builder = new StringBuilder(256 + 8 * moves.size());
+		appendGame(tags, startBoard, moves, finalBoard, builder);
+		writer.append(builder);
+	}
+
+	// a finished game decides its result; otherwise the given one is kept
+	private static String result(final String result, final Board finalBoard) {
+		if (finalBoard.currentPlayer().inCheckMate()) {
+			return finalBoard.currentPlayer().getColor().white() ? "0-1" : "1-0";
+		}
+		if (finalBoard.currentPlayer().inStaleMate()) {
+			return "1/2-1/2";
+		}
+		return result != null && !result.isEmpty() ? result : "*";
+	}
+
+	private void index(final Board board) {
+		Arrays.fill(this.sources, 0L);
+		for (final Move move : board.currentPlayer().getLegalMoves()) {
+			final Piece piece = move.getMovedPiece();
+			if (piece.getType() != Piece.Type.PAWN && !move.isCastlingMove()) {
+				this.sources[piece.getType().ordinal() * 64 + move.getDestination()] |= 1L << piece.getPosition();
+			}
+		}
+		this.indexedBoard = board;
+	}
+
+	private static boolean isRosterTag(final String name) {
+		for (final String rosterTag : SEVEN_TAG_ROSTER) {
+			if (rosterTag.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void appendTag(final String name, final String value, final StringBuilder builder) {
+		builder.append('[').append(name).append(" \"");
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\');
+			}
+			builder.append(c);
+		}
+		builder.append("\"]\n");
+	}
+
+	// breaks the line before the token that was just appended when it does not fit; returns the new line start
+	private static int wrap(final StringBuilder builder, final int tokenStart, final int lineStart) {
+		if (builder.length() - lineStart <= LINE_LENGTH || tokenStart == lineStart) {
+			return lineStart;
+		}
+		// the space before the token becomes the line break
+		builder.setCharAt(tokenStart - 1, '\n');
+		return tokenStart;
+	}
+}
@@ -0,0 +1,93 @@
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+// the twelve piece images, decoded once when the table opens and shared by every panel
+// icons scaled to another size are made the first time that size is asked for and kept,
+// so drawing a board reads no file and decodes no image
+public final class PieceSprites {
+
+	private static final int PIECE_TYPES = Piece.Type.values().length;
+
+	// by color and piece type, see slot(); null when the image could not be read
+	private final ImageIcon[] icons;
+	// scaled copies of the icons by size in pixels
+	private final Map<Integer, ImageIcon[]> scaledIcons;
+
+	private PieceSprites(final ImageIcon[] icons) {
+		this.icons = icons;
+		this.scaledIcons = new ConcurrentHashMap<>();
+	}
+
+	// reads <directory>WP.gif, <directory>BK.gif, ...; a missing image is reported and leaves its pieces blank
+	public static PieceSprites load(final String directory) {
+		final ImageIcon[] icons = new ImageIcon[PieceColor.values().length * PIECE_TYPES];
+		for (final PieceColor color : PieceColor.values()) {
+			for (final Piece.Type type : Piece.Type.values()) {
+				final File file = new File(directory + color.toString().substring(0, 1) + type + ".gif");
+				try {
+					final BufferedImage image = ImageIO.read(file);
+					if (image != null) {
+						icons[slot(color, type)] = new ImageIcon(image);
+					}
+				} catch (final IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return new PieceSprites(icons);
+	}
+
+	// the icon of a piece at the size of the image file
+	public ImageIcon getIcon(final Piece piece) {
+		return this.icons[slot(piece.getColor(), piece.getType())];
+	}
+
+	// the icon of a piece scaled to a square of the given size
+	public ImageIcon getIcon(final Piece piece, final int size) {
+		return getIcon(piece.getColor(), piece.getType(), size);
+	}
+
+	public ImageIcon getIcon(final PieceColor color, final Piece.Type type, final int size) {
+		final ImageIcon[] scaled = this.scaledIcons.computeIfAbsent(size, this::scale);
+		return scaled[slot(color, type)];
+	}
+
+	// the image files are squares; the icons keep the width they are scaled to
+	public int getWidth() {
+		for (final ImageIcon icon : this.icons) {
+			if (icon != null) {
+				return icon.getIconWidth();
+			}
+		}
+		return 0;
+	}
+
+	private ImageIcon[] scale(final int size) {
+		final ImageIcon[] scaled = new ImageIcon[this.icons.length];
+		for (int i = 0; i < this.icons.length; i++) {
+			if (this.icons[i] != null) {
+				// ImageIcon waits for the scaled image; copied into a BufferedImage it is not scaled again on paint
+				final Image smooth = new ImageIcon(
+						this.icons[i].getImage().getScaledInstance(size, size, Image.SCALE_SMOOTH)).getImage();
+				final BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+				final Graphics2D graphics = image.createGraphics();
+				graphics.drawImage(smooth, 0, 0, null);
+				graphics.dispose();
+				scaled[i] = new ImageIcon(image);
+			}
+		}
+		return scaled;
+	}
+
+	private static int slot(final PieceColor color, final Piece.Type type) {
+		return color.ordinal() * PIECE_TYPES + type.ordinal();
+	}
+}
@@ -0,0 +1,152 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// on-disk index from a position to the games of a game archive that reached it
+// the file is memory mapped, lookups read it in place and nothing is loaded into the heap
+//
+// file:  magic "CHPI", int version, long number of entries
+// entry: long Zobrist hash of the position, long occurrence (game id << 32 | ply), sorted by hash, then occurrence
+// the game id is the number of the game in its archive, counted from 0; ply 0 is the start position
+public class PositionIndex implements Closeable {
+
+	static final byte[] MAGIC = { 'C', 'H', 'P', 'I' };
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+	static final int ENTRY_SIZE = 16;
+	// a mapped buffer holds at most 2 GB, larger files are mapped in segments of 2^26 entries
+	private static final int SEGMENT_SHIFT = 26;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] segments;
+	private final long size;
+
+	public PositionIndex(final Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining() && this.channel.read(header, header.position()) > 0) {
+		}
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || !matchesMagic(header) || header.getInt() != VERSION) {
+			this.channel.close();
+			throw new IOException("Not a position index: " + path);
+		}
+		this.size = header.getLong();
+		if (HEADER_SIZE + this.size * ENTRY_SIZE > this.channel.size()) {
+			this.channel.close();
+			throw new IOException("Truncated position index: " + path);
+		}
+		final int segmentCount = (int) ((this.size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		this.segments = new MappedByteBuffer[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			final long first = (long) i << SEGMENT_SHIFT;
+			final long entries = Math.min(this.size - first, 1L << SEGMENT_SHIFT);
+			this.segments[i] = this.channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * ENTRY_SIZE,
+					entries * ENTRY_SIZE);
+		}
+	}
+
+	public long size() {
+		return this.size;
+	}
+
+	// the occurrences of a position, at most maxResults of them, in game order
+	public long[] find(final long hash, final int maxResults) {
+		long index = lowerBound(hash);
+		int count = 0;
+		long[] occurrences = new long[Math.min(maxResults, 16)];
+		while (index < this.size && count < maxResults && hashAt(index) == hash) {
+			if (count == occurrences.length) {
+				occurrences = Arrays.copyOf(occurrences, Math.min(maxResults, count * 2));
+			}
+			occurrences[count++] = occurrenceAt(index++);
+		}
+		return count == occurrences.length ? occurrences : Arrays.copyOf(occurrences, count);
+	}
+
+	public long[] find(final Board board, final int maxResults) {
+		return find(board.getZobristHash(), maxResults);
+	}
+
+	// number of times the position was reached
+	public long count(final long hash) {
+		final long first = lowerBound(hash);
+		long index = first;
+		while (index < this.size && hashAt(index) == hash) {
+			index++;
+		}
+		return index - first;
+	}
+
+	public static int getGameId(final long occurrence) {
+		return (int) (occurrence >>> 32);
+	}
+
+	public static int getPly(final long occurrence) {
+		return (int) occurrence;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	// index of the first entry whose hash is not below the given one
+	// Zobrist hashes are spread evenly, so interpolation narrows the range in a few probes;
+	// bisection takes over when the range is small or the guesses stop helping
+	private long lowerBound(final long hash) {
+		long low = 0;
+		long high = this.size;
+		int probes = 0;
+		while (high - low > 64 && probes++ < 8) {
+			final long lowHash = hashAt(low);
+			final long highHash = hashAt(high - 1);
+			if (Long.compare(hash, lowHash) <= 0) {
+				return low;
+			}
+			if (Long.compare(hash, highHash) > 0) {
+				return high;
+			}
+			// position of the hash between the first and the last hash of the range, as a fraction
+			final double fraction = ((double) hash - (double) lowHash) / ((double) highHash - (double) lowHash);
+			final long guess = Math.min(high - 1, Math.max(low + 1, low + (long) (fraction * (high - 1 - low))));
+			if (Long.compare(hashAt(guess), hash) < 0) {
+				low = guess + 1;
+			} else {
+				high = guess + 1;
+			}
+		}
+		while (low < high) {
+			final long middle = (low + high) >>> 1;
+			if (Long.compare(hashAt(middle), hash) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private long hashAt(final long index) {
+		return this.segments[(int) (index >>> SEGMENT_SHIFT)].getLong((int) (index & SEGMENT_MASK) * ENTRY_SIZE);
+	}
+
+	private long occurrenceAt(final long index) {
+		return this.segments[(int) (index >>> SEGMENT_SHIFT)].getLong((int) (index & SEGMENT_MASK) * ENTRY_SIZE + 8);
+	}
+
+	private static boolean matchesMagic(final ByteBuffer header) {
+		for (final byte b : MAGIC) {
+			if (header.get() != b) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
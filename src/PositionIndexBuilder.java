@@ -0,0 +1,333 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// builds a PositionIndex from a game archive
+// usage: java PositionIndexBuilder <games.cga> <positions.idx> [threads]
+//
+// workers replay games and collect (hash, occurrence) entries in a buffer of fixed size; a full buffer is
+// sorted and written as a run file, and the runs are merged into the index at the end
+// memory is bounded by the number of threads times the run size, whatever the size of the archive
+public class PositionIndexBuilder {
+
+	private static final int DEFAULT_RUN_ENTRIES = 1 << 20;
+	private static final int GAMES_IN_FLIGHT_PER_THREAD = 64;
+	private static final int BUFFER_SIZE = 1 << 16;
+	// marks the end of the archive in the queue
+	private static final Job END = new Job(-1, null);
+
+	private final int threads;
+	private final int runEntries;
+
+	public PositionIndexBuilder(final int threads, final int runEntries) {
+		this.threads = threads;
+		this.runEntries = runEntries;
+	}
+
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.err.println("usage: java PositionIndexBuilder <games.cga> <positions.idx> [threads]");
+			System.exit(2);
+		}
+		final int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		final long start = System.nanoTime();
+		final long entries = new PositionIndexBuilder(threads, DEFAULT_RUN_ENTRIES).build(Paths.get(args[0]),
+				Paths.get(args[1]));
+		System.out.println(entries + " positions indexed in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	// returns the number of entries of the index
+	public long build(final Path archive, final Path index) throws IOException, InterruptedException {
+		final BlockingQueue<Job> jobs = new ArrayBlockingQueue<>(this.threads * GAMES_IN_FLIGHT_PER_THREAD);
+		final List<Path> runs = new ArrayList<>();
+		final List<Worker> workers = new ArrayList<>();
+		for (int i = 0; i < this.threads; i++) {
+			final Worker worker = new Worker(i, jobs, index, runs);
+			workers.add(worker);
+			worker.thread.start();
+		}
+		try {
+			try (ArchiveReader reader = new ArchiveReader(archive)) {
+				ArchivedGame game;
+				int gameId = 0;
+				while ((game = reader.nextGame()) != null) {
+					// blocks while the workers are behind
+					jobs.put(new Job(gameId++, game));
+				}
+			} finally {
+				for (int i = 0; i < this.threads; i++) {
+					jobs.put(END);
+				}
+				for (final Worker worker : workers) {
+					worker.thread.join();
+				}
+			}
+			for (final Worker worker : workers) {
+				if (worker.error != null) {
+					throw worker.error;
+				}
+			}
+			return merge(runs, index);
+		} finally {
+			for (final Path run : runs) {
+				Files.deleteIfExists(run);
+			}
+		}
+	}
+
+	// k-way merge of the sorted runs into the index file
+	private static long merge(final List<Path> runs, final Path index) throws IOException {
+		final PriorityQueue<RunCursor> cursors = new PriorityQueue<>();
+		long size = 0;
+		try (FileChannel output = FileChannel.open(index, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (final Path run : runs) {
+				final RunCursor cursor = new RunCursor(run);
+				if (cursor.next()) {
+					cursors.add(cursor);
+				} else {
+					cursor.close();
+				}
+			}
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			buffer.put(PositionIndex.MAGIC).putInt(PositionIndex.VERSION).putLong(0);
+			while (!cursors.isEmpty()) {
+				final RunCursor cursor = cursors.poll();
+				if (buffer.remaining() < PositionIndex.ENTRY_SIZE) {
+					write(output, buffer);
+				}
+				buffer.putLong(cursor.hash).putLong(cursor.occurrence);
+				size++;
+				if (cursor.next()) {
+					cursors.add(cursor);
+				} else {
+					cursor.close();
+				}
+			}
+			write(output, buffer);
+			// the number of entries is known at the end
+			final ByteBuffer count = ByteBuffer.allocate(8).putLong(0, size);
+			output.write(count, PositionIndex.MAGIC.length + 4);
+		} finally {
+			for (final RunCursor cursor : cursors) {
+				cursor.close();
+			}
+		}
+		return size;
+	}
+
+	private static void write(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	// sorts hashes and occurrences together: by hash, then by occurrence
+	static void sort(final long[] hashes, final long[] occurrences, int low, int high) {
+		while (high - low > 16) {
+			final int middle = (low + high) >>> 1;
+			final long pivotHash = hashes[middle];
+			final long pivotOccurrence = occurrences[middle];
+			int i = low;
+			int j = high - 1;
+			while (i <= j) {
+				while (compare(hashes[i], occurrences[i], pivotHash, pivotOccurrence) < 0) {
+					i++;
+				}
+				while (compare(hashes[j], occurrences[j], pivotHash, pivotOccurrence) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(hashes, occurrences, i++, j--);
+				}
+			}
+			// recurse into the smaller part, loop on the larger one
+			if (j + 1 - low < high - i) {
+				sort(hashes, occurrences, low, j + 1);
+				low = i;
+			} else {
+				sort(hashes, occurrences, i, high);
+				high = j + 1;
+			}
+		}
+		for (int i = low + 1; i < high; i++) {
+			for (int j = i; j > low && compare(hashes[j - 1], occurrences[j - 1], hashes[j], occurrences[j]) > 0; j--) {
+				swap(hashes, occurrences, j - 1, j);
+			}
+		}
+	}
+
+	private static int compare(final long hash, final long occurrence, final long otherHash,
+			final long otherOccurrence) {
+		final int byHash = Long.compare(hash, otherHash);
+		return byHash != 0 ? byHash : Long.compare(occurrence, otherOccurrence);
+	}
+
+	private static void swap(final long[] hashes, final long[] occurrences, final int i, final int j) {
+		final long hash = hashes[i];
+		hashes[i] = hashes[j];
+		hashes[j] = hash;
+		final long occurrence = occurrences[i];
+		occurrences[i] = occurrences[j];
+		occurrences[j] = occurrence;
+	}
+
+	private static final class Job {
+		final int gameId;
+		final ArchivedGame game;
+
+		Job(final int gameId, final ArchivedGame game) {
+			this.gameId = gameId;
+			this.game = game;
+		}
+	}
+
+	// replays games and spills sorted runs of their positions
+	private final class Worker implements Runnable {
+		final Thread thread;
+		private final BlockingQueue<Job> jobs;
+		private final Path index;
+		private final List<Path> runs;
+		private final long[] hashes;
+		private final long[] occurrences;
+		private int count;
+		// the first error; the worker still drains the queue after it, and build() throws it
+		IOException error;
+
+		Worker(final int number, final BlockingQueue<Job> jobs, final Path index, final List<Path> runs) {
+			this.thread = new Thread(this, "position-index-" + number);
+			this.jobs = jobs;
+			this.index = index;
+			this.runs = runs;
+			this.hashes = new long[PositionIndexBuilder.this.runEntries];
+			this.occurrences = new long[PositionIndexBuilder.this.runEntries];
+		}
+
+		@Override
+		public void run() {
+			final int[] keys = new int[256];
+			try {
+				Job job;
+				while ((job = this.jobs.take()) != END) {
+					if (this.error != null) {
+						// keep taking jobs so the reader is not blocked forever
+						continue;
+					}
+					try {
+						replay(job, keys);
+					} catch (final IOException e) {
+						this.error = e;
+					} catch (final RuntimeException e) {
+						// the game's entries would be missing from the index
+						this.error = new IOException("Cannot index game " + job.gameId + ": " + job.game, e);
+					}
+				}
+				if (this.error == null) {
+					spill();
+				}
+			} catch (final IOException e) {
+				this.error = e;
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void replay(final Job job, final int[] keys) throws IOException {
+			Board board = job.game.createStartingBoard();
+			add(board.getZobristHash(), job.gameId, 0);
+			final byte[] plies = job.game.getPlies();
+			for (int ply = 0; ply < plies.length; ply++) {
+				final Move move = GameArchive.moveAt(board, plies[ply] & 0xFF, keys);
+				final MoveTransition transition = board.currentPlayer().makeMove(move);
+				if (!transition.getMoveStatus().done()) {
+					return;
+				}
+				board = transition.getNextBoard();
+				add(board.getZobristHash(), job.gameId, ply + 1);
+			}
+		}
+
+		private void add(final long hash, final int gameId, final int ply) throws IOException {
+			if (this.count == this.hashes.length) {
+				spill();
+			}
+			this.hashes[this.count] = hash;
+			this.occurrences[this.count++] = (long) gameId << 32 | ply;
+		}
+
+		private void spill() throws IOException {
+			if (this.count == 0) {
+				return;
+			}
+			sort(this.hashes, this.occurrences, 0, this.count);
+			final Path run;
+			synchronized (this.runs) {
+				run = Paths.get(this.index + ".run" + this.runs.size());
+				this.runs.add(run);
+			}
+			try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+				for (int i = 0; i < this.count; i++) {
+					if (buffer.remaining() < PositionIndex.ENTRY_SIZE) {
+						write(channel, buffer);
+					}
+					buffer.putLong(this.hashes[i]).putLong(this.occurrences[i]);
+				}
+				write(channel, buffer);
+			}
+			this.count = 0;
+		}
+	}
+
+	// reads a sorted run entry by entry
+	private static final class RunCursor implements Comparable<RunCursor>, Closeable {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		long hash;
+		long occurrence;
+
+		RunCursor(final Path run) throws IOException {
+			this.channel = FileChannel.open(run, StandardOpenOption.READ);
+			this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			this.buffer.limit(0);
+		}
+
+		boolean next() throws IOException {
+			if (this.buffer.remaining() < PositionIndex.ENTRY_SIZE) {
+				this.buffer.compact();
+				while (this.buffer.position() < PositionIndex.ENTRY_SIZE && this.channel.read(this.buffer) > 0) {
+				}
+				this.buffer.flip();
+				if (this.buffer.remaining() < PositionIndex.ENTRY_SIZE) {
+					return false;
+				}
+			}
+			this.hash = this.buffer.getLong();
+			this.occurrence = this.buffer.getLong();
+			return true;
+		}
+
+		@Override
+		public int compareTo(final RunCursor other) {
+			return compare(this.hash, this.occurrence, other.hash, other.occurrence);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+}
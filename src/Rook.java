@@ -59,7 +59,7 @@ public final class Rook extends Piece {
 	// rook in a new position
 	@Override
 	public Rook movePiece(final Move move) {
-		return new Rook(move.getDestination(), move.getMovedPiece().getColor());
+		return new Rook(move.getDestination(), move.getMovedPiece().getColor(), false);
 	}
 
 	@Override
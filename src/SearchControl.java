@@ -0,0 +1,49 @@
+// the stop and ponder signals of one search, made by whoever starts the search before the searching thread runs:
+// a stop or ponder hit sent before that thread reaches AlphaBeta.execute() still counts as soon as it starts
+public final class SearchControl {
+
+	private volatile boolean stopped;
+	// while pondering no limit applies; a ponder hit switches the limits on
+	private volatile boolean pondering;
+
+	public SearchControl() {
+		this(false);
+	}
+
+	public SearchControl(final boolean pondering) {
+		this.pondering = pondering;
+	}
+
+	// safe to call from any thread, before or during the search
+	public synchronized void stop() {
+		this.stopped = true;
+		notifyAll();
+	}
+
+	// the opponent played the expected move: keep searching, now under the normal limits
+	// the limits count from the start of pondering, so the time already spent is credited to this move
+	public synchronized void ponderHit() {
+		this.pondering = false;
+		notifyAll();
+	}
+
+	public boolean isStopped() {
+		return this.stopped;
+	}
+
+	public boolean isPondering() {
+		return this.pondering;
+	}
+
+	// a ponder search that ran out of work must not answer before the ponder hit or stop
+	synchronized void awaitPonderEnd() {
+		while (this.pondering && !this.stopped) {
+			try {
+				wait();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}
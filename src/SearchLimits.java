@@ -0,0 +1,170 @@
+// wall-clock and size limits of one search, all times in milliseconds
+// a value of 0 means the limit is not set
+public final class SearchLimits {
+
+	private final long whiteTime;
+	private final long blackTime;
+	private final long whiteIncrement;
+	private final long blackIncrement;
+	private final int movesToGo;
+	private final long moveTime;
+	private final long nodes;
+	private final int depth;
+	private final boolean infinite;
+	private final boolean ponder;
+
+	private SearchLimits(final Builder builder) {
+		this.whiteTime = builder.whiteTime;
+		this.blackTime = builder.blackTime;
+		this.whiteIncrement = builder.whiteIncrement;
+		this.blackIncrement = builder.blackIncrement;
+		this.movesToGo = builder.movesToGo;
+		this.moveTime = builder.moveTime;
+		this.nodes = builder.nodes;
+		this.depth = builder.depth;
+		this.infinite = builder.infinite;
+		this.ponder = builder.ponder;
+	}
+
+	public static SearchLimits fixedDepth(final int depth) {
+		return new Builder().setDepth(depth).build();
+	}
+
+	public static SearchLimits fixedMoveTime(final long moveTime) {
+		return new Builder().setMoveTime(moveTime).build();
+	}
+
+	public static SearchLimits fixedNodes(final long nodes) {
+		return new Builder().setNodes(nodes).build();
+	}
+
+	// time left on the clock of the given player
+	public long getTime(final PieceColor color) {
+		return color.white() ? this.whiteTime : this.blackTime;
+	}
+
+	// increment the given player receives after each move
+	public long getIncrement(final PieceColor color) {
+		return color.white() ? this.whiteIncrement : this.blackIncrement;
+	}
+
+	public int getMovesToGo() {
+		return this.movesToGo;
+	}
+
+	public long getMoveTime() {
+		return this.moveTime;
+	}
+
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	public int getDepth() {
+		return this.depth;
+	}
+
+	// search until stopped from outside
+	public boolean isInfinite() {
+		return this.infinite;
+	}
+
+	// search the expected reply of the opponent until a ponder hit turns on the other limits
+	public boolean isPonder() {
+		return this.ponder;
+	}
+
+	// the same limits in ponder mode
+	public SearchLimits toPonder() {
+		return new Builder(this).setPonder(true).build();
+	}
+
+	// true when the search has to watch the clock
+	public boolean isTimed() {
+		return !this.infinite && (this.moveTime > 0 || this.whiteTime > 0 || this.blackTime > 0);
+	}
+
+	public static class Builder {
+		long whiteTime;
+		long blackTime;
+		long whiteIncrement;
+		long blackIncrement;
+		int movesToGo;
+		long moveTime;
+		long nodes;
+		int depth;
+		boolean infinite;
+		boolean ponder;
+
+		public Builder() {
+		}
+
+		// start from a copy of existing limits
+		public Builder(final SearchLimits limits) {
+			this.whiteTime = limits.whiteTime;
+			this.blackTime = limits.blackTime;
+			this.whiteIncrement = limits.whiteIncrement;
+			this.blackIncrement = limits.blackIncrement;
+			this.movesToGo = limits.movesToGo;
+			this.moveTime = limits.moveTime;
+			this.nodes = limits.nodes;
+			this.depth = limits.depth;
+			this.infinite = limits.infinite;
+			this.ponder = limits.ponder;
+		}
+
+		public Builder setWhiteTime(final long whiteTime) {
+			this.whiteTime = whiteTime;
+			return this;
+		}
+
+		public Builder setBlackTime(final long blackTime) {
+			this.blackTime = blackTime;
+			return this;
+		}
+
+		public Builder setWhiteIncrement(final long whiteIncrement) {
+			this.whiteIncrement = whiteIncrement;
+			return this;
+		}
+
+		public Builder setBlackIncrement(final long blackIncrement) {
+			this.blackIncrement = blackIncrement;
+			return this;
+		}
+
+		public Builder setMovesToGo(final int movesToGo) {
+			this.movesToGo = movesToGo;
+			return this;
+		}
+
+		public Builder setMoveTime(final long moveTime) {
+			this.moveTime = moveTime;
+			return this;
+		}
+
+		public Builder setNodes(final long nodes) {
+			this.nodes = nodes;
+			return this;
+		}
+
+		public Builder setDepth(final int depth) {
+			this.depth = depth;
+			return this;
+		}
+
+		public Builder setInfinite(final boolean infinite) {
+			this.infinite = infinite;
+			return this;
+		}
+
+		public Builder setPonder(final boolean ponder) {
+			this.ponder = ponder;
+			return this;
+		}
+
+		public SearchLimits build() {
+			return new SearchLimits(this);
+		}
+	}
+}
@@ -0,0 +1,5 @@
+public interface SearchListener {
+
+	// called by the search after every completed iteration of iterative deepening
+	void iterationCompleted(int depth, int score, long nodes, long elapsedMillis, Move bestMove);
+}
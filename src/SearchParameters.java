@@ -0,0 +1,199 @@
+// switches and tuning values of the selective search techniques used by AlphaBeta
+// every technique can be turned off on its own to measure its effect on node count and strength
+public final class SearchParameters {
+
+	// null move pruning: let the opponent move twice; if we are still above beta the node is cut
+	private final boolean nullMovePruning;
+	private final int nullMoveMinDepth;
+	private final int nullMoveReduction;
+
+	// late move reductions: quiet moves ordered late are searched shallower first
+	private final boolean lateMoveReductions;
+	private final int lateMoveMinDepth;
+	private final int lateMoveFullDepthMoves;
+	private final int lateMoveReduction;
+
+	// reverse futility pruning: static evaluation is so far above beta that the node is cut
+	private final boolean reverseFutilityPruning;
+	private final int reverseFutilityMaxDepth;
+	private final int reverseFutilityMargin;
+
+	// futility pruning: static evaluation is so far below alpha that quiet moves are skipped
+	private final boolean futilityPruning;
+	private final int futilityMaxDepth;
+	private final int futilityMargin;
+
+	private SearchParameters(final Builder builder) {
+		this.nullMovePruning = builder.nullMovePruning;
+		this.nullMoveMinDepth = builder.nullMoveMinDepth;
+		this.nullMoveReduction = builder.nullMoveReduction;
+		this.lateMoveReductions = builder.lateMoveReductions;
+		this.lateMoveMinDepth = builder.lateMoveMinDepth;
+		this.lateMoveFullDepthMoves = builder.lateMoveFullDepthMoves;
+		this.lateMoveReduction = builder.lateMoveReduction;
+		this.reverseFutilityPruning = builder.reverseFutilityPruning;
+		this.reverseFutilityMaxDepth = builder.reverseFutilityMaxDepth;
+		this.reverseFutilityMargin = builder.reverseFutilityMargin;
+		this.futilityPruning = builder.futilityPruning;
+		this.futilityMaxDepth = builder.futilityMaxDepth;
+		this.futilityMargin = builder.futilityMargin;
+	}
+
+	// all techniques turned on with the default values
+	public static SearchParameters createDefault() {
+		return new Builder().build();
+	}
+
+	// plain alpha-beta without any selective technique
+	public static SearchParameters createFullWidth() {
+		return new Builder().setNullMovePruning(false).setLateMoveReductions(false)
+				.setReverseFutilityPruning(false).setFutilityPruning(false).build();
+	}
+
+	public boolean nullMovePruning() {
+		return this.nullMovePruning;
+	}
+
+	public int getNullMoveMinDepth() {
+		return this.nullMoveMinDepth;
+	}
+
+	public int getNullMoveReduction() {
+		return this.nullMoveReduction;
+	}
+
+	public boolean lateMoveReductions() {
+		return this.lateMoveReductions;
+	}
+
+	public int getLateMoveMinDepth() {
+		return this.lateMoveMinDepth;
+	}
+
+	public int getLateMoveFullDepthMoves() {
+		return this.lateMoveFullDepthMoves;
+	}
+
+	public int getLateMoveReduction() {
+		return this.lateMoveReduction;
+	}
+
+	public boolean reverseFutilityPruning() {
+		return this.reverseFutilityPruning;
+	}
+
+	public int getReverseFutilityMaxDepth() {
+		return this.reverseFutilityMaxDepth;
+	}
+
+	public int getReverseFutilityMargin() {
+		return this.reverseFutilityMargin;
+	}
+
+	public boolean futilityPruning() {
+		return this.futilityPruning;
+	}
+
+	public int getFutilityMaxDepth() {
+		return this.futilityMaxDepth;
+	}
+
+	public int getFutilityMargin() {
+		return this.futilityMargin;
+	}
+
+	@Override
+	public String toString() {
+		return "nullMove=" + this.nullMovePruning + "(R=" + this.nullMoveReduction + ", minDepth="
+				+ this.nullMoveMinDepth + ") lmr=" + this.lateMoveReductions + "(R=" + this.lateMoveReduction
+				+ ", minDepth=" + this.lateMoveMinDepth + ", fullDepthMoves=" + this.lateMoveFullDepthMoves
+				+ ") reverseFutility=" + this.reverseFutilityPruning + "(maxDepth=" + this.reverseFutilityMaxDepth
+				+ ", margin=" + this.reverseFutilityMargin + ") futility=" + this.futilityPruning + "(maxDepth="
+				+ this.futilityMaxDepth + ", margin=" + this.futilityMargin + ")";
+	}
+
+	public static class Builder {
+		boolean nullMovePruning = true;
+		int nullMoveMinDepth = 3;
+		int nullMoveReduction = 2;
+		boolean lateMoveReductions = true;
+		int lateMoveMinDepth = 3;
+		int lateMoveFullDepthMoves = 3;
+		int lateMoveReduction = 1;
+		boolean reverseFutilityPruning = true;
+		int reverseFutilityMaxDepth = 3;
+		int reverseFutilityMargin = 120;
+		boolean futilityPruning = true;
+		int futilityMaxDepth = 2;
+		int futilityMargin = 150;
+
+		public Builder setNullMovePruning(final boolean nullMovePruning) {
+			this.nullMovePruning = nullMovePruning;
+			return this;
+		}
+
+		public Builder setNullMoveMinDepth(final int nullMoveMinDepth) {
+			this.nullMoveMinDepth = nullMoveMinDepth;
+			return this;
+		}
+
+		public Builder setNullMoveReduction(final int nullMoveReduction) {
+			this.nullMoveReduction = nullMoveReduction;
+			return this;
+		}
+
+		public Builder setLateMoveReductions(final boolean lateMoveReductions) {
+			this.lateMoveReductions = lateMoveReductions;
+			return this;
+		}
+
+		public Builder setLateMoveMinDepth(final int lateMoveMinDepth) {
+			this.lateMoveMinDepth = lateMoveMinDepth;
+			return this;
+		}
+
+		public Builder setLateMoveFullDepthMoves(final int lateMoveFullDepthMoves) {
+			this.lateMoveFullDepthMoves = lateMoveFullDepthMoves;
+			return this;
+		}
+
+		public Builder setLateMoveReduction(final int lateMoveReduction) {
+			this.lateMoveReduction = lateMoveReduction;
+			return this;
+		}
+
+		public Builder setReverseFutilityPruning(final boolean reverseFutilityPruning) {
+			this.reverseFutilityPruning = reverseFutilityPruning;
+			return this;
+		}
+
+		public Builder setReverseFutilityMaxDepth(final int reverseFutilityMaxDepth) {
+			this.reverseFutilityMaxDepth = reverseFutilityMaxDepth;
+			return this;
+		}
+
+		public Builder setReverseFutilityMargin(final int reverseFutilityMargin) {
+			this.reverseFutilityMargin = reverseFutilityMargin;
+			return this;
+		}
+
+		public Builder setFutilityPruning(final boolean futilityPruning) {
+			this.futilityPruning = futilityPruning;
+			return this;
+		}
+
+		public Builder setFutilityMaxDepth(final int futilityMaxDepth) {
+			this.futilityMaxDepth = futilityMaxDepth;
+			return this;
+		}
+
+		public Builder setFutilityMargin(final int futilityMargin) {
+			this.futilityMargin = futilityMargin;
+			return this;
+		}
+
+		public SearchParameters build() {
+			return new SearchParameters(this);
+		}
+	}
+}
@@ -0,0 +1,38 @@
+public final class StandardBoardEvaluator implements BoardEvaluator {
+
+	private static final int CHECK_BONUS = 50;
+	private static final int CASTLE_BONUS = 60;
+	private static final int MOBILITY_MULTIPLIER = 2;
+
+	@Override
+	public int evaluate(final Board board, final int depth) {
+		return scorePlayer(board.whitePlayer()) - scorePlayer(board.blackPlayer());
+	}
+
+	private static int scorePlayer(final Player player) {
+		return pieceValue(player) + mobility(player) + check(player) + castled(player);
+	}
+
+	// sum of the values of all pieces the player still has on the board
+	private static int pieceValue(final Player player) {
+		int pieceValueScore = 0;
+		for (final Piece piece : player.getActivePieces()) {
+			pieceValueScore += piece.getType().getPieceValue();
+		}
+		return pieceValueScore;
+	}
+
+	// the more moves a player can make, the better
+	private static int mobility(final Player player) {
+		return MOBILITY_MULTIPLIER * player.getLegalMoves().size();
+	}
+
+	// the player puts the opponent in check
+	private static int check(final Player player) {
+		return player.getOpponent().inCheck() ? CHECK_BONUS : 0;
+	}
+
+	private static int castled(final Player player) {
+		return player.getKing().isCastled() ? CASTLE_BONUS : 0;
+	}
+}
@@ -1,34 +1,54 @@
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.GridBagLayout;
-import java.awt.GridLayout;
+import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
+import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
-import java.awt.image.BufferedImage;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
+import javax.swing.ButtonGroup;
 import javax.swing.ImageIcon;
+import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
-import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 public class Table {
 	private final JFrame gameFrame;
 	private final GameHistoryPanel gameHistoryPanel;
 	private final TakenPiecesPanel takenPiecesPanel;
+	// piece images, read once here and shared with the taken pieces panel
+	private final PieceSprites pieceSprites;
 	private final BoardPanel boardPanel;
 	private final MoveLog moveLog;
 	private Board chessBoard;
@@ -37,13 +57,44 @@ public class Table {
 	private Piece humanMovedPiece;
 	private BoardDirection boardDirection;
 	private boolean highlightLegalMoves;
+	// destinations of the selected piece, a bit per tile, for the board and piece they were computed for
+	private long selectedPieceDestinations;
+	private Board destinationsBoard;
+	private Piece destinationsPiece;
+	// drawn on the destinations of the selected piece; null when the image could not be read
+	private final ImageIcon legalMoveIcon;
+	// the computer searches on its own thread so the EDT keeps painting while it thinks
+	private final ExecutorService engineExecutor;
+	private final AlphaBeta engine;
+	private Future<?> engineTask;
+	// color played by the computer, null when two humans play
+	private PieceColor computerColor;
+	private ComputerLevel computerLevel;
+	// increased on every reset and take back, so results of stale searches are dropped
+	private int gameGeneration;
+	// while the human thinks the computer searches the position after the reply it expects
+	private boolean ponderEnabled;
+	private Move ponderMove;
+	private Board ponderBoard;
+	// stops the queued or running engine task or ends its pondering; made when the task is submitted, so a stop
+	// or ponder hit that comes before the engine thread picks the task up is not lost
+	private SearchControl engineControl;
+	// statistics of the moves played from the current position, null until a game collection is loaded
+	private OpeningTree openingTree;
+	private final OpeningPanel openingPanel;
+	// the computer plays from this Polyglot book while the position is in it
+	private PolyglotBook openingBook;
+	// distance to mate of endgames with few pieces, null until a tablebase directory is chosen
+	private Tablebase tablebase;
 
 	private final static Dimension OUTER_FRAME_DIMENSION = new Dimension(600, 600);
 	private final static Dimension BOARD_PANEL_DIMENSION = new Dimension(400, 350);
-	private final static Dimension TILE_PANEL_DIMENSION = new Dimension(10, 10);
+	private final static int ENGINE_TABLE_MEGABYTES = 32;
+	private final static Dimension PGN_DIALOG_DIMENSION = new Dimension(500, 400);
 	private static String defaultPieceImagesPath = "pieces/chessPieces/";
-	private Color lightTileColor = Color.decode("#98AFC7");
-	private Color darkTileColor = Color.decode("#E5E4E2");
+	private static String legalMoveImagePath = "legalMoves/legalMoves/green_dot.png";
+	private Color lightTileColor = BoardRenderer.LIGHT_TILE_COLOR;
+	private Color darkTileColor = BoardRenderer.DARK_TILE_COLOR;
 
 	public Table() {
 		this.gameFrame = new JFrame("Chess");
@@ -54,13 +105,27 @@ public class Table {
 		this.moveLog = new MoveLog();
 		this.chessBoard = Board.createStandardBoard();
 		this.gameHistoryPanel = new GameHistoryPanel();
-		this.takenPiecesPanel = new TakenPiecesPanel();
-		this.boardPanel = new BoardPanel();
+		this.openingPanel = new OpeningPanel();
+		this.openingPanel.setVisible(false);
+		this.pieceSprites = PieceSprites.load(defaultPieceImagesPath);
+		this.takenPiecesPanel = new TakenPiecesPanel(this.pieceSprites);
+		this.legalMoveIcon = loadIcon(legalMoveImagePath);
 		this.boardDirection = BoardDirection.NORMAL;
+		this.boardPanel = new BoardPanel();
 		this.highlightLegalMoves = true;
+		this.engineExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "chess-engine");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.engine = new AlphaBeta(AlphaBeta.MAX_DEPTH, new StandardBoardEvaluator(),
+				SearchParameters.createDefault(), new TranspositionTable(ENGINE_TABLE_MEGABYTES));
+		this.computerLevel = ComputerLevel.DEPTH_3;
+		this.ponderEnabled = true;
 		this.gameFrame.add(this.takenPiecesPanel, BorderLayout.WEST);
 		this.gameFrame.add(this.boardPanel, BorderLayout.CENTER);
 		this.gameFrame.add(this.gameHistoryPanel, BorderLayout.EAST);
+		this.gameFrame.add(this.openingPanel, BorderLayout.SOUTH);
 		this.gameFrame.setVisible(true);
 	}
 
@@ -68,6 +133,7 @@ public class Table {
 		final JMenuBar tableMenuBar = new JMenuBar();
 		tableMenuBar.add(createFileMenu());
 		tableMenuBar.add(createPreferencesMenu());
+		tableMenuBar.add(createGameMenu());
 		return tableMenuBar;
 	}
 
@@ -75,10 +141,54 @@ public class Table {
 		final JMenu fileMenu = new JMenu("File");
 		final JMenuItem openPGN = new JMenuItem("Load PGN File");
 		openPGN.addActionListener((e) -> {
-			System.out.println("open up that pgn file!");
+			final JFileChooser chooser = new JFileChooser();
+			chooser.setFileFilter(new FileNameExtensionFilter("PGN files", "pgn"));
+			if (chooser.showOpenDialog(gameFrame) == JFileChooser.APPROVE_OPTION) {
+				showPgnGames(chooser.getSelectedFile());
+			}
 		});
 		fileMenu.add(openPGN);
 
+		final JMenuItem savePGN = new JMenuItem("Save PGN File");
+		savePGN.addActionListener((e) -> {
+			final JFileChooser chooser = new JFileChooser();
+			chooser.setFileFilter(new FileNameExtensionFilter("PGN files", "pgn"));
+			if (chooser.showSaveDialog(gameFrame) == JFileChooser.APPROVE_OPTION) {
+				savePgnGame(chooser.getSelectedFile());
+			}
+		});
+		fileMenu.add(savePGN);
+
+		final JMenuItem openingTreeMenuItem = new JMenuItem("Load Opening Tree");
+		openingTreeMenuItem.addActionListener((e) -> {
+			final JFileChooser chooser = new JFileChooser();
+			chooser.setFileFilter(new FileNameExtensionFilter("PGN files and game archives", "pgn", "cga"));
+			if (chooser.showOpenDialog(gameFrame) == JFileChooser.APPROVE_OPTION) {
+				loadOpeningTree(chooser.getSelectedFile());
+			}
+		});
+		fileMenu.add(openingTreeMenuItem);
+
+		final JMenuItem openingBookMenuItem = new JMenuItem("Load Opening Book");
+		openingBookMenuItem.addActionListener((e) -> {
+			final JFileChooser chooser = new JFileChooser();
+			chooser.setFileFilter(new FileNameExtensionFilter("Polyglot books", "bin"));
+			if (chooser.showOpenDialog(gameFrame) == JFileChooser.APPROVE_OPTION) {
+				loadOpeningBook(chooser.getSelectedFile());
+			}
+		});
+		fileMenu.add(openingBookMenuItem);
+
+		final JMenuItem tablebaseMenuItem = new JMenuItem("Load Tablebases");
+		tablebaseMenuItem.addActionListener((e) -> {
+			final JFileChooser chooser = new JFileChooser();
+			chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+			if (chooser.showOpenDialog(gameFrame) == JFileChooser.APPROVE_OPTION) {
+				loadTablebases(chooser.getSelectedFile());
+			}
+		});
+		fileMenu.add(tablebaseMenuItem);
+
 		final JMenuItem exitMenuItem = new JMenuItem("Exit");
 		exitMenuItem.addActionListener(new ActionListener() {
 			@Override
@@ -116,267 +226,636 @@ public class Table {
 		return preferencesMenu;
 	}
 
-	public enum BoardDirection {
-		NORMAL {
-			@Override
-			List<TilePanel> traverse(final List<TilePanel> boardTiles) {
-				return boardTiles;
-			}
+	private JMenu createGameMenu() {
+		final JMenu gameMenu = new JMenu("Game");
+		final JMenuItem newGameMenuItem = new JMenuItem("New Game");
+		newGameMenuItem.addActionListener((e) -> newGame());
+		gameMenu.add(newGameMenuItem);
+
+		final JMenuItem takeBackMenuItem = new JMenuItem("Take Back Move");
+		takeBackMenuItem.addActionListener((e) -> takeBackMove());
+		gameMenu.add(takeBackMenuItem);
+		gameMenu.addSeparator();
+
+		// who the computer plays
+		final ButtonGroup opponentGroup = new ButtonGroup();
+		final JRadioButtonMenuItem humanItem = new JRadioButtonMenuItem("Human vs Human", true);
+		humanItem.addActionListener((e) -> setComputerColor(null));
+		final JRadioButtonMenuItem computerBlackItem = new JRadioButtonMenuItem("Computer Plays Black");
+		computerBlackItem.addActionListener((e) -> setComputerColor(PieceColor.BLACK));
+		final JRadioButtonMenuItem computerWhiteItem = new JRadioButtonMenuItem("Computer Plays White");
+		computerWhiteItem.addActionListener((e) -> setComputerColor(PieceColor.WHITE));
+		for (final JRadioButtonMenuItem item : Arrays.asList(humanItem, computerBlackItem, computerWhiteItem)) {
+			opponentGroup.add(item);
+			gameMenu.add(item);
+		}
+		gameMenu.addSeparator();
+
+		// how long the computer thinks
+		final JMenu levelMenu = new JMenu("Computer Level");
+		final ButtonGroup levelGroup = new ButtonGroup();
+		for (final ComputerLevel level : ComputerLevel.values()) {
+			final JRadioButtonMenuItem levelItem = new JRadioButtonMenuItem(level.toString(),
+					level == ComputerLevel.DEPTH_3);
+			levelItem.addActionListener((e) -> computerLevel = level);
+			levelGroup.add(levelItem);
+			levelMenu.add(levelItem);
+		}
+		gameMenu.add(levelMenu);
 
-			@Override
-			BoardDirection opposite() {
-				return FLIPPED;
-			}
-		},
-		FLIPPED {
-			@Override
-			List<TilePanel> traverse(final List<TilePanel> boardTiles) {
-				Collections.reverse(boardTiles);
-				return boardTiles;
+		final JCheckBoxMenuItem ponderCheckbox = new JCheckBoxMenuItem("Think During Human Turn", true);
+		ponderCheckbox.addActionListener((e) -> {
+			ponderEnabled = ponderCheckbox.isSelected();
+			if (!ponderEnabled && ponderMove != null) {
+				cancelComputerMove();
 			}
+		});
+		gameMenu.add(ponderCheckbox);
 
-			@Override
-			BoardDirection opposite() {
-				return NORMAL;
-			}
-		};
+		return gameMenu;
+	}
 
-		abstract List<TilePanel> traverse(final List<TilePanel> boardTiles);
+	public enum ComputerLevel {
+		DEPTH_2("Depth 2", SearchLimits.fixedDepth(2)),
+		DEPTH_3("Depth 3", SearchLimits.fixedDepth(3)),
+		DEPTH_4("Depth 4", SearchLimits.fixedDepth(4)),
+		ONE_SECOND("1 Second per Move", SearchLimits.fixedMoveTime(1000)),
+		THREE_SECONDS("3 Seconds per Move", SearchLimits.fixedMoveTime(3000)),
+		TEN_SECONDS("10 Seconds per Move", SearchLimits.fixedMoveTime(10000));
 
-		abstract BoardDirection opposite();
+		private final String levelName;
+		private final SearchLimits limits;
 
-	}
+		ComputerLevel(final String levelName, final SearchLimits limits) {
+			this.levelName = levelName;
+			this.limits = limits;
+		}
 
-	private class BoardPanel extends JPanel {
-		final List<TilePanel> boardTiles;
+		SearchLimits getLimits() {
+			return this.limits;
+		}
 
-		BoardPanel() {
-			super(new GridLayout(8, 8));
-			this.boardTiles = new ArrayList<>();
-			for (int i = 0; i < 64; i++) {
-				final TilePanel tilePanel = new TilePanel(this, i);
-				this.boardTiles.add(tilePanel);
-				add(tilePanel);
-			}
-			setPreferredSize(BOARD_PANEL_DIMENSION);
-			validate();
+		@Override
+		public String toString() {
+			return this.levelName;
 		}
+	}
 
-		public void drawBoard(final Board board) {
-			removeAll();
-			for (final TilePanel tilePanel : boardDirection.traverse(boardTiles)) {
-				tilePanel.drawTile(board);
-				add(tilePanel);
+	private void setComputerColor(final PieceColor color) {
+		this.computerColor = color;
+		cancelComputerMove();
+		startComputerMove();
+	}
+
+	private boolean isComputerTurn() {
+		return this.computerColor != null && this.chessBoard.currentPlayer().getColor() == this.computerColor;
+	}
+
+	// search on the engine thread and hand the result back to the EDT
+	private void startComputerMove() {
+		// after a ponder hit the running ponder search already works on this move
+		if (!isComputerTurn() || (this.engineTask != null && !this.engineTask.isDone())) {
+			return;
+		}
+		if (this.openingBook != null) {
+			final Move bookMove = this.openingBook.probe(this.chessBoard);
+			if (bookMove != Move.NULL_MOVE) {
+				final Board bookBoard = this.chessBoard;
+				final int generation = this.gameGeneration;
+				SwingUtilities.invokeLater(() -> applyComputerMove(bookBoard, bookMove, generation));
+				return;
 			}
-			validate();
-			repaint();
 		}
+		submitSearch(this.chessBoard, this.computerLevel.getLimits());
 	}
 
-	public static class MoveLog {
-		private final List<Move> moves;
+	private void submitSearch(final Board searchedBoard, final SearchLimits limits) {
+		final int generation = this.gameGeneration;
+		final SearchControl control = new SearchControl(limits.isPonder());
+		this.engineControl = control;
+		this.engineTask = this.engineExecutor.submit(() -> {
+			final Move bestMove = this.engine.execute(searchedBoard, limits, control);
+			// the second move of the principal variation is the reply we expect from the human
+			final List<Move> principalVariation = this.engine.getPrincipalVariation(searchedBoard, 2);
+			final Move expectedReply = principalVariation.size() == 2 && principalVariation.get(0).equals(bestMove)
+					? principalVariation.get(1)
+					: null;
+			SwingUtilities.invokeLater(() -> {
+				if (applyComputerMove(searchedBoard, bestMove, generation)) {
+					startPondering(expectedReply);
+				}
+			});
+		});
+	}
 
-		MoveLog() {
-			this.moves = new ArrayList<>();
+	// ponder: search the position after the expected reply with the limits switched off
+	private void startPondering(final Move expectedReply) {
+		if (!this.ponderEnabled || expectedReply == null) {
+			return;
 		}
+		// the same move on the board the computer's move was just applied to
+		final Move reply = AlphaBeta.findMove(this.chessBoard, expectedReply.getCurrentCoordinate(),
+				expectedReply.getDestination());
+		final MoveTransition transition = this.chessBoard.currentPlayer().makeMove(reply);
+		if (!transition.getMoveStatus().done()) {
+			return;
+		}
+		this.ponderMove = reply;
+		this.ponderBoard = transition.getNextBoard();
+		submitSearch(this.ponderBoard, this.computerLevel.getLimits().toPonder());
+	}
 
-		public List<Move> getMoves() {
-			return this.moves;
+	// called after every human move while the computer ponders
+	private void resolvePonder(final Move humanMove) {
+		if (this.ponderMove == null) {
+			return;
+		}
+		if (humanMove.equals(this.ponderMove)) {
+			// ponder hit: the search goes on under the normal limits, with the time already spent credited
+			this.chessBoard = this.ponderBoard;
+			this.engineControl.ponderHit();
+			this.ponderMove = null;
+			this.ponderBoard = null;
+		} else {
+			// ponder miss: drop the search, the transposition table keeps what it learned
+			cancelComputerMove();
 		}
+	}
 
-		public void addMove(final Move move) {
-			this.moves.add(move);
+	// true when the move was played
+	private boolean applyComputerMove(final Board searchedBoard, final Move bestMove, final int generation) {
+		// the game was reset or a move was taken back while the computer was thinking
+		if (generation != this.gameGeneration || searchedBoard != this.chessBoard) {
+			return false;
+		}
+		final MoveTransition transition = this.chessBoard.currentPlayer().makeMove(bestMove);
+		if (!transition.getMoveStatus().done()) {
+			// no legal move left: checkmate or stalemate
+			return false;
 		}
+		this.chessBoard = transition.getNextBoard();
+		this.moveLog.addMove(bestMove);
+		redrawAll();
+		return true;
+	}
 
-		public int size() {
-			return this.moves.size();
+	private void cancelComputerMove() {
+		this.gameGeneration++;
+		this.ponderMove = null;
+		this.ponderBoard = null;
+		if (this.engineTask != null) {
+			this.engineTask.cancel(false);
+			this.engineTask = null;
 		}
+		if (this.engineControl != null) {
+			this.engineControl.stop();
+			this.engineControl = null;
+		}
+	}
 
-		public void clear() {
-			this.moves.clear();
+	private void newGame() {
+		cancelComputerMove();
+		this.chessBoard = Board.createStandardBoard();
+		this.moveLog.clear();
+		clearSelection();
+		redrawAll();
+		startComputerMove();
+	}
+
+	private void takeBackMove() {
+		cancelComputerMove();
+		// against the computer take back its reply as well, so the human is to move again
+		do {
+			if (this.moveLog.size() == 0) {
+				break;
+			}
+			final Move lastMove = this.moveLog.removeMove(this.moveLog.size() - 1);
+			this.chessBoard = lastMove.getBoard();
+		} while (isComputerTurn());
+		clearSelection();
+		redrawAll();
+		startComputerMove();
+	}
+
+	// build the opening tree off the EDT; the panel shows it once it is complete
+	private void loadOpeningTree(final File file) {
+		final Thread loader = new Thread(() -> {
+			try {
+				final OpeningTree tree = OpeningTree.load(file.toPath(), OpeningTree.DEFAULT_MAX_PLY);
+				SwingUtilities.invokeLater(() -> {
+					this.openingTree = tree;
+					this.openingPanel.setVisible(true);
+					this.openingPanel.redo(this.chessBoard, tree);
+					this.gameFrame.validate();
+				});
+			} catch (final IOException | RuntimeException e) {
+				SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this.gameFrame,
+						"Cannot load " + file + ": " + e.getMessage()));
+			}
+		}, "opening-tree");
+		loader.setDaemon(true);
+		loader.start();
+	}
+
+	private void loadOpeningBook(final File file) {
+		try {
+			final PolyglotBook book = new PolyglotBook(file.toPath());
+			if (this.openingBook != null) {
+				this.openingBook.close();
+			}
+			this.openingBook = book;
+			startComputerMove();
+		} catch (final IOException e) {
+			JOptionPane.showMessageDialog(this.gameFrame, "Cannot load " + file + ": " + e.getMessage());
 		}
+	}
 
-		public Move removeMove(int index) {
-			return this.moves.remove(index);
+	// the tables are opened when a position needs them; the engine uses them from its next search on
+	private void loadTablebases(final File directory) {
+		this.tablebase = new Tablebase(directory.toPath());
+		this.engine.setTablebase(this.tablebase);
+		redrawAll();
+	}
+
+	// write the game played so far as PGN
+	private void savePgnGame(final File pgnFile) {
+		final Map<String, String> tags = new LinkedHashMap<>();
+		tags.put("Event", "Casual game");
+		tags.put("Date", LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+		tags.put("White", this.computerColor == PieceColor.WHITE ? "Computer" : "Human");
+		tags.put("Black", this.computerColor == PieceColor.BLACK ? "Computer" : "Human");
+		final List<Move> moves = this.moveLog.getMoves();
+		final Board startBoard = moves.isEmpty() ? this.chessBoard : moves.get(0).getBoard();
+		try (Writer writer = Files.newBufferedWriter(pgnFile.toPath(), StandardCharsets.UTF_8)) {
+			new PgnWriter().writeGame(writer, tags, startBoard, moves, this.chessBoard);
+		} catch (final IOException e) {
+			JOptionPane.showMessageDialog(this.gameFrame, "Cannot write " + pgnFile + ": " + e.getMessage());
 		}
+	}
 
-		public boolean removeMove(final Move move) {
-			return this.moves.remove(move);
+	// list the games of the file in a dialog; more games are read as the user scrolls down
+	private void showPgnGames(final File pgnFile) {
+		final PgnGameListModel model;
+		try {
+			model = new PgnGameListModel(pgnFile.toPath());
+			model.loadMore();
+		} catch (final IOException e) {
+			JOptionPane.showMessageDialog(this.gameFrame, "Cannot read " + pgnFile + ": " + e.getMessage());
+			return;
 		}
+		final JDialog dialog = new JDialog(this.gameFrame, pgnFile.getName(), true);
+		final JList<String> gameList = new JList<>(model);
+		gameList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		final JScrollPane scrollPane = new JScrollPane(gameList);
+		scrollPane.getVerticalScrollBar().addAdjustmentListener((e) -> {
+			final JScrollBar bar = scrollPane.getVerticalScrollBar();
+			if (!model.isComplete() && bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - 50) {
+				try {
+					model.loadMore();
+				} catch (final IOException ex) {
+					ex.printStackTrace();
+				}
+			}
+		});
+		final JButton loadButton = new JButton("Load Game");
+		loadButton.addActionListener((e) -> {
+			final int index = gameList.getSelectedIndex();
+			if (index >= 0) {
+				try {
+					loadPgnGame(model.getGame(index));
+					dialog.dispose();
+				} catch (final IOException ex) {
+					JOptionPane.showMessageDialog(dialog, "Cannot read the game: " + ex.getMessage());
+				}
+			}
+		});
+		dialog.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(final WindowEvent e) {
+				try {
+					model.close();
+				} catch (final IOException ex) {
+					ex.printStackTrace();
+				}
+			}
+		});
+		dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+		dialog.add(scrollPane, BorderLayout.CENTER);
+		dialog.add(loadButton, BorderLayout.SOUTH);
+		dialog.setSize(PGN_DIALOG_DIMENSION);
+		dialog.setLocationRelativeTo(this.gameFrame);
+		dialog.setVisible(true);
 	}
 
-	private class TilePanel extends JPanel {
-		private final int tileId;
+	// replace the current game by a game from a PGN file
+	private void loadPgnGame(final PgnGame game) {
+		final List<Move> playedMoves = new ArrayList<>();
+		final Board board;
+		try {
+			board = PgnUtilities.replay(game, playedMoves);
+		} catch (final IllegalArgumentException e) {
+			JOptionPane.showMessageDialog(this.gameFrame, e.getMessage());
+			return;
+		}
+		cancelComputerMove();
+		this.chessBoard = board;
+		this.moveLog.clear();
+		for (final Move move : playedMoves) {
+			this.moveLog.addMove(move);
+		}
+		clearSelection();
+		redrawAll();
+		if (playedMoves.size() < game.getMoves().size()) {
+			JOptionPane.showMessageDialog(this.gameFrame, "Stopped at move " + (playedMoves.size() + 1) + ": "
+					+ game.getMoves().get(playedMoves.size()) + " cannot be played");
+		}
+	}
 
-		TilePanel(final BoardPanel boardPanel, final int tileId) {
-			super(new GridBagLayout());
-			this.tileId = tileId;
-			setPreferredSize(TILE_PANEL_DIMENSION);
-			assignTileColor();
-			assignTilePieceIcon(chessBoard);
-			addMouseListener(new MouseListener() {
+	private void clearSelection() {
+		this.sourceTile = null;
+		this.destinationTile = null;
+		this.humanMovedPiece = null;
+	}
 
-				@Override
-				public void mouseClicked(final MouseEvent event) {
-					if (isRightMouseButton(event)) {
-						sourceTile = null;
-						destinationTile = null;
-						humanMovedPiece = null;
-					} else if (isLeftMouseButton(event)) {
-						if (sourceTile == null) {
-							sourceTile = chessBoard.getTile(tileId);
-							humanMovedPiece = sourceTile.getPiece();
-							if (humanMovedPiece == null) {
-								sourceTile = null;
-							}
-						} else {
-							destinationTile = chessBoard.getTile(tileId);
-							final Move move = Move.MoveFactory.createMove(chessBoard, sourceTile.getTileCoordinate(),
-									destinationTile.getTileCoordinate());
-							final MoveTransition transition = chessBoard.currentPlayer().makeMove(move);
-							if (transition.getMoveStatus().done()) {
-								chessBoard = transition.getNextBoard();
-								moveLog.addMove(move);
-							}
-							sourceTile = null;
-							destinationTile = null;
-							humanMovedPiece = null;
-						}
-						SwingUtilities.invokeLater(new Runnable() {
-							@Override
-							public void run() {
-								gameHistoryPanel.redo(chessBoard, moveLog);
-								takenPiecesPanel.redo(moveLog);
-								boardPanel.drawBoard(chessBoard);
-							}
-						});
-					}
-				}
+	private static ImageIcon loadIcon(final String path) {
+		try {
+			return new ImageIcon(ImageIO.read(new File(path)));
+		} catch (final IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
 
-				private boolean isRightMouseButton(MouseEvent event) {
-					return ((event.getModifiersEx() & InputEvent.BUTTON3_DOWN_MASK) != 0
-							|| event.getButton() == MouseEvent.BUTTON3);
+	// the tiles the selected piece can move to; computed by the first tile that asks and shared by the other 63
+	private long selectedPieceDestinations(final Board board) {
+		if (this.humanMovedPiece == null || this.humanMovedPiece.getColor() != board.currentPlayer().getColor()) {
+			return 0L;
+		}
+		if (board != this.destinationsBoard || this.humanMovedPiece != this.destinationsPiece) {
+			long destinations = 0L;
+			for (final Move move : this.humanMovedPiece.calculateMoves(board)) {
+				destinations |= 1L << move.getDestination();
+			}
+			if (this.humanMovedPiece.getType() == Piece.Type.KING) {
+				for (final Move move : board.currentPlayer().calculateKingCastles(board.currentPlayer().legalMoves,
+						board.currentPlayer().getOpponent().legalMoves)) {
+					destinations |= 1L << move.getDestination();
 				}
-
-				private boolean isLeftMouseButton(MouseEvent event) {
-					return ((event.getModifiersEx() & InputEvent.BUTTON1_DOWN_MASK) != 0
-							|| event.getButton() == MouseEvent.BUTTON1);
+				// the king does not step onto a tile the opponent moves to
+				long opponentDestinations = 0L;
+				for (final Move move : board.currentPlayer().getOpponent().getLegalMoves()) {
+					opponentDestinations |= 1L << move.getDestination();
 				}
+				destinations &= ~opponentDestinations;
+			}
+			this.selectedPieceDestinations = destinations;
+			this.destinationsBoard = board;
+			this.destinationsPiece = this.humanMovedPiece;
+		}
+		return this.selectedPieceDestinations;
+	}
 
-				@Override
-				public void mousePressed(final MouseEvent e) {
+	private void redrawAll() {
+		this.gameHistoryPanel.redo(this.chessBoard, this.moveLog);
+		this.takenPiecesPanel.redo(this.moveLog);
+		this.boardPanel.drawBoard(this.chessBoard);
+		this.openingPanel.redo(this.chessBoard, this.openingTree);
+		final String tablebaseResult = this.tablebase != null ? this.tablebase.describe(this.chessBoard) : null;
+		this.gameFrame.setTitle(tablebaseResult != null ? "Chess - " + tablebaseResult : "Chess");
+	}
 
-				}
+	public enum BoardDirection {
+		NORMAL {
+			@Override
+			int tileId(final int viewIndex) {
+				return viewIndex;
+			}
 
-				@Override
-				public void mouseReleased(final MouseEvent e) {
+			@Override
+			BoardDirection opposite() {
+				return FLIPPED;
+			}
+		},
+		FLIPPED {
+			@Override
+			int tileId(final int viewIndex) {
+				return 63 - viewIndex;
+			}
 
-				}
+			@Override
+			BoardDirection opposite() {
+				return NORMAL;
+			}
+		};
 
-				@Override
-				public void mouseEntered(final MouseEvent e) {
+		// the tile shown at a place of the board, counted from the top left corner
+		abstract int tileId(final int viewIndex);
 
-				}
+		abstract BoardDirection opposite();
 
-				@Override
-				public void mouseExited(final MouseEvent e) {
+	}
 
+	// the whole board in one component: drawBoard compares the new position with the one on screen
+	// and repaints only the tiles whose piece or highlight changed
+	private class BoardPanel extends JPanel {
+		private static final int EMPTY = -1;
+		// what each tile shows: color and type of its piece, or EMPTY
+		private final int[] shownPieces;
+		private final Piece[] pieces;
+		private long shownDestinations;
+		private BoardDirection shownDirection;
+
+		BoardPanel() {
+			this.shownPieces = new int[64];
+			this.pieces = new Piece[64];
+			Arrays.fill(this.shownPieces, EMPTY);
+			setPreferredSize(BOARD_PANEL_DIMENSION);
+			addMouseListener(new MouseAdapter() {
+				@Override
+				public void mouseClicked(final MouseEvent event) {
+					final int tileId = tileIdAt(event.getX(), event.getY());
+					if (tileId >= 0) {
+						tileClicked(tileId, event);
+					}
 				}
 			});
-
-			validate();
-
+			drawBoard(chessBoard);
 		}
 
-		public void drawTile(final Board board) {
-			assignTileColor();
-			assignTilePieceIcon(board);
-			highlightLegals(board);
-			validate();
-			repaint();
+		public void drawBoard(final Board board) {
+			final long destinations = highlightLegalMoves && legalMoveIcon != null ? selectedPieceDestinations(board)
+					: 0L;
+			final boolean turned = this.shownDirection != boardDirection;
+			for (int tileId = 0; tileId < 64; tileId++) {
+				final Piece piece = board.getTile(tileId).getPiece();
+				final int shown = piece == null ? EMPTY
+						: piece.getColor().ordinal() * Piece.Type.values().length + piece.getType().ordinal();
+				this.pieces[tileId] = piece;
+				final long bit = 1L << tileId;
+				if (shown != this.shownPieces[tileId] || (destinations & bit) != (this.shownDestinations & bit)) {
+					this.shownPieces[tileId] = shown;
+					if (!turned) {
+						repaint(tileBounds(viewIndex(tileId)));
+					}
+				}
+			}
+			this.shownDestinations = destinations;
+			if (turned) {
+				this.shownDirection = boardDirection;
+				repaint();
+			}
 		}
 
-		private void assignTilePieceIcon(final Board board) {
-			this.removeAll();
-			if (board.getTile(this.tileId).occupied()) {
-				try {
-					final BufferedImage image = ImageIO.read(new File(defaultPieceImagesPath
-							+ board.getTile(this.tileId).getPiece().getColor().toString().substring(0, 1) + ""
-							+ board.getTile(this.tileId).getPiece().toString() + ".gif"));
-					add(new JLabel(new ImageIcon(image)));
-				} catch (final IOException e) {
-					e.printStackTrace();
+		@Override
+		protected void paintComponent(final Graphics graphics) {
+			super.paintComponent(graphics);
+			final Rectangle clip = graphics.getClipBounds();
+			for (int viewIndex = 0; viewIndex < 64; viewIndex++) {
+				final Rectangle bounds = tileBounds(viewIndex);
+				if (clip != null && !clip.intersects(bounds)) {
+					continue;
+				}
+				final int tileId = this.shownDirection.tileId(viewIndex);
+				graphics.setColor((tileId / 8 + tileId % 8) % 2 == 0 ? lightTileColor : darkTileColor);
+				graphics.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+				final Graphics tileGraphics = graphics.create(bounds.x, bounds.y, bounds.width, bounds.height);
+				if (this.shownPieces[tileId] != EMPTY) {
+					paintCentered(pieceSprites.getIcon(this.pieces[tileId]), bounds, tileGraphics);
 				}
+				if ((this.shownDestinations & (1L << tileId)) != 0) {
+					paintCentered(legalMoveIcon, bounds, tileGraphics);
+				}
+				tileGraphics.dispose();
 			}
 		}
 
-		private void highlightLegals(final Board board) {
-			if (highlightLegalMoves) {
-				for (final Move move : pieceLegalMoves(board)) {
-					if (move.getDestination() == this.tileId) {
-						try {
-							add(new JLabel(
-									new ImageIcon(ImageIO.read(new File("legalMoves/legalMoves/green_dot.png")))));
-						} catch (Exception e) {
-							e.printStackTrace();
-						}
-					}
-				}
+		private void paintCentered(final ImageIcon icon, final Rectangle bounds, final Graphics tileGraphics) {
+			if (icon != null) {
+				icon.paintIcon(this, tileGraphics, (bounds.width - icon.getIconWidth()) / 2,
+						(bounds.height - icon.getIconHeight()) / 2);
 			}
 		}
 
-		private boolean attackOnSquare(Move move, Collection<Move> enemyMoves) {
-			return enemyMoves.stream().anyMatch(m -> m.destination == move.destination);
+		// the tiles share the panel evenly; edges are rounded so that no gap is left between them
+		private Rectangle tileBounds(final int viewIndex) {
+			final int column = viewIndex % 8;
+			final int row = viewIndex / 8;
+			final int left = column * getWidth() / 8;
+			final int top = row * getHeight() / 8;
+			return new Rectangle(left, top, (column + 1) * getWidth() / 8 - left, (row + 1) * getHeight() / 8 - top);
 		}
 
-		private Collection<Move> pieceLegalMoves(final Board board) {
-			if (humanMovedPiece != null && humanMovedPiece.getColor() == board.currentPlayer().getColor()) {
-				Set<Move> moves = humanMovedPiece.calculateMoves(board).stream().collect(Collectors.toSet());
-				if (humanMovedPiece.type == Piece.Type.KING) {
-					moves.addAll(board.currentPlayer().calculateKingCastles(board.currentPlayer().legalMoves,
-							board.currentPlayer().getOpponent().legalMoves));
-					moves = moves.stream()
-							.filter(m -> !attackOnSquare(m, board.currentPlayer().getOpponent().getLegalMoves()))
-							.collect(Collectors.toSet());
-				}
-				return moves;
+		private int viewIndex(final int tileId) {
+			// both directions are their own inverse
+			return boardDirection.tileId(tileId);
+		}
+
+		private int tileIdAt(final int x, final int y) {
+			if (x < 0 || y < 0 || x >= getWidth() || y >= getHeight()) {
+				return -1;
 			}
-			return Collections.emptyList();
+			return this.shownDirection.tileId(edgeIndex(y, getHeight()) * 8 + edgeIndex(x, getWidth()));
 		}
 
-		private void assignTileColor() {
-			if (firstRow.contains(this.tileId) || thirdRow.contains(this.tileId) || fifthRow.contains(this.tileId)
-					|| seventhRow.contains(this.tileId)) {
-				if (this.tileId % 2 == 0) {
-					setBackground(lightTileColor);
-				} else {
-					setBackground(darkTileColor);
-				}
-			} else if (secondRow.contains(this.tileId) || fourthRow.contains(this.tileId)
-					|| sixthRow.contains(this.tileId) || eighthRow.contains(this.tileId)) {
-				if (this.tileId % 2 == 0) {
-					setBackground(darkTileColor);
+		// the row or column a pixel falls in, with the same rounding as tileBounds
+		private int edgeIndex(final int position, final int size) {
+			int index = 0;
+			while (index < 7 && position >= (index + 1) * size / 8) {
+				index++;
+			}
+			return index;
+		}
+
+		private void tileClicked(final int tileId, final MouseEvent event) {
+			// the board is locked while the computer is thinking
+			if (isComputerTurn()) {
+				return;
+			}
+			if (isRightMouseButton(event)) {
+				sourceTile = null;
+				destinationTile = null;
+				humanMovedPiece = null;
+			} else if (isLeftMouseButton(event)) {
+				if (sourceTile == null) {
+					sourceTile = chessBoard.getTile(tileId);
+					humanMovedPiece = sourceTile.getPiece();
+					if (humanMovedPiece == null) {
+						sourceTile = null;
+					}
 				} else {
-					setBackground(lightTileColor);
+					destinationTile = chessBoard.getTile(tileId);
+					final Move move = Move.MoveFactory.createMove(chessBoard, sourceTile.getTileCoordinate(),
+							destinationTile.getTileCoordinate());
+					final MoveTransition transition = chessBoard.currentPlayer().makeMove(move);
+					if (transition.getMoveStatus().done()) {
+						chessBoard = transition.getNextBoard();
+						moveLog.addMove(move);
+						resolvePonder(move);
+					}
+					sourceTile = null;
+					destinationTile = null;
+					humanMovedPiece = null;
 				}
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						redrawAll();
+						startComputerMove();
+					}
+				});
 			}
 		}
 
-		public final List<Integer> firstRow = initRow(0);
-		public final List<Integer> secondRow = initRow(8);
-		public final List<Integer> thirdRow = initRow(16);
-		public final List<Integer> fourthRow = initRow(24);
-		public final List<Integer> fifthRow = initRow(32);
-		public final List<Integer> sixthRow = initRow(40);
-		public final List<Integer> seventhRow = initRow(48);
-		public final List<Integer> eighthRow = initRow(56);
+		private boolean isRightMouseButton(MouseEvent event) {
+			return ((event.getModifiersEx() & InputEvent.BUTTON3_DOWN_MASK) != 0
+					|| event.getButton() == MouseEvent.BUTTON3);
+		}
 
-		public List<Integer> initRow(int start) {
-			List<Integer> row = new ArrayList<>();
-			for (int i = start; i < start + 8; i++) {
-				row.add(i);
+		private boolean isLeftMouseButton(MouseEvent event) {
+			return ((event.getModifiersEx() & InputEvent.BUTTON1_DOWN_MASK) != 0
+					|| event.getButton() == MouseEvent.BUTTON1);
+		}
+	}
+
+	public static class MoveLog {
+		private final List<Move> moves;
+
+		MoveLog() {
+			this.moves = new ArrayList<>();
+		}
+
+		public List<Move> getMoves() {
+			return this.moves;
+		}
+
+		public void addMove(final Move move) {
+			this.moves.add(move);
+		}
+
+		public int size() {
+			return this.moves.size();
+		}
+
+		// plies at the start of the log that a view showing the given moves has already: normally all but the
+		// last move or all; moves are compared by identity, a move played again after a take back is new
+		public int commonPlies(final List<Move> shown) {
+			int common = Math.min(shown.size(), this.moves.size());
+			while (common > 0 && shown.get(common - 1) != this.moves.get(common - 1)) {
+				common--;
 			}
-			return row;
+			return common;
+		}
+
+		public void clear() {
+			this.moves.clear();
+		}
+
+		public Move removeMove(int index) {
+			return this.moves.remove(index);
+		}
+
+		public boolean removeMove(final Move move) {
+			return this.moves.remove(move);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,280 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// endgame tablebases written by TablebaseGenerator: the distance to mate of every position of a material
+// signature, e.g. KQK or KBNK (white pieces, then black pieces, each starting with the king)
+// one file per signature, <signature>.tb, memory mapped and inflated one block at a time when probed
+//
+// file:  magic "CHTB", int version, int number of pieces, int number of blocks,
+//        long offset of each block and of the end of the last one, then the deflated blocks
+// value: one byte per position, 0 draw, 255 illegal, otherwise the distance to mate in plies + 1;
+//        an odd distance is a win for the side to move, an even one a loss (0: mated)
+// index: side to move (0 white) << 6n | square of piece i << 6i, with the pieces ordered white king,
+//        black king, the other white pieces, the other black pieces, each side in the order Q R B N P
+// castling rights and en passant are not part of a position
+public class Tablebase {
+
+	public static final int NOT_FOUND = -1;
+	public static final int DRAW = 0;
+	public static final int MAX_PIECES = 4;
+	static final int ILLEGAL = 255;
+	static final int BLOCK_SIZE = 4096;
+	static final byte[] MAGIC = { 'C', 'H', 'T', 'B' };
+	static final int VERSION = 1;
+	static final String FILE_SUFFIX = ".tb";
+	private static final String PIECE_ORDER = "QRBNP";
+	private static final Piece.Type[] TYPES = { Piece.Type.QUEEN, Piece.Type.ROOK, Piece.Type.BISHOP,
+			Piece.Type.KNIGHT, Piece.Type.PAWN };
+
+	private final Path directory;
+	// tables by signature, opened the first time they are probed; a missing file is remembered as the missing marker
+	private final Map<String, TableFile> tables;
+	private final TableFile missing;
+	private final ThreadLocal<BlockCache> blockCache;
+
+	public Tablebase(final Path directory) {
+		this.directory = directory;
+		this.tables = new ConcurrentHashMap<>();
+		this.missing = new TableFile();
+		this.blockCache = ThreadLocal.withInitial(BlockCache::new);
+	}
+
+	// the value of the position for the side to move, or NOT_FOUND
+	public int probe(final Board board) {
+		if (board.getAllPieces().size() > MAX_PIECES) {
+			return NOT_FOUND;
+		}
+		final StringBuilder white = new StringBuilder("K");
+		final StringBuilder black = new StringBuilder("K");
+		for (final char letter : PIECE_ORDER.toCharArray()) {
+			for (final Piece piece : board.getAllPieces()) {
+				if (letter(piece.getType()) == letter) {
+					(piece.getColor().white() ? white : black).append(letter);
+				}
+			}
+		}
+		final String signature = white.toString() + black;
+		final String canonical = canonical(signature);
+		final TableFile table = table(canonical);
+		if (table == this.missing) {
+			return NOT_FOUND;
+		}
+		// the canonical table may have the colors the other way round: mirror the board
+		final boolean flip = !canonical.equals(signature);
+		final int pieceCount = canonical.length();
+		final char[] letters = pieceLetters(canonical);
+		final boolean[] whitePieces = whitePieces(canonical);
+		final boolean[] used = new boolean[pieceCount];
+		long index = (board.currentPlayer().getColor().white() != flip ? 0L : 1L) << (6 * pieceCount);
+		for (final Piece piece : board.getAllPieces()) {
+			final boolean pieceWhite = piece.getColor().white() != flip;
+			final char letter = piece.getType().isKing() ? 'K' : letter(piece.getType());
+			for (int i = 0; i < pieceCount; i++) {
+				if (!used[i] && whitePieces[i] == pieceWhite && letters[i] == letter) {
+					used[i] = true;
+					index |= (long) (flip ? piece.getPosition() ^ 56 : piece.getPosition()) << (6 * i);
+					break;
+				}
+			}
+		}
+		final int value = table.value(index, this.blockCache.get());
+		return value == ILLEGAL ? NOT_FOUND : value;
+	}
+
+	// search score of the position for the side to move: mate scores count from the root, see AlphaBeta
+	public int score(final Board board, final int ply, final int mate) {
+		final int value = probe(board);
+		if (value == NOT_FOUND) {
+			return Integer.MIN_VALUE;
+		}
+		if (value == DRAW) {
+			return 0;
+		}
+		final int distance = getDistanceToMate(value);
+		return isWin(value) ? mate - ply - distance : -mate + ply + distance;
+	}
+
+	// e.g. "White mates in 12", "Black is mated in 3", "Draw", or null when the position is not in a table
+	public String describe(final Board board) {
+		final int value = probe(board);
+		if (value == NOT_FOUND) {
+			return null;
+		}
+		if (value == DRAW) {
+			return "Draw";
+		}
+		final String side = board.currentPlayer().getColor().white() ? "White" : "Black";
+		final int distance = getDistanceToMate(value);
+		if (distance == 0) {
+			return side + " is mated";
+		}
+		// moves of the side to move: plies 1, 2 are move 1, plies 3, 4 move 2, ...
+		final int moves = (distance + 1) / 2;
+		return side + (isWin(value) ? " mates in " : " is mated in ") + moves;
+	}
+
+	public static boolean isWin(final int value) {
+		return value > DRAW && value != ILLEGAL && (value - 1) % 2 == 1;
+	}
+
+	public static boolean isLoss(final int value) {
+		return value > DRAW && value != ILLEGAL && (value - 1) % 2 == 0;
+	}
+
+	public static int getDistanceToMate(final int value) {
+		return value - 1;
+	}
+
+	private TableFile table(final String signature) {
+		return this.tables.computeIfAbsent(signature, key -> {
+			final Path path = this.directory.resolve(key + FILE_SUFFIX);
+			if (!Files.isRegularFile(path)) {
+				return this.missing;
+			}
+			try {
+				return new TableFile(path);
+			} catch (final IOException e) {
+				return this.missing;
+			}
+		});
+	}
+
+	// the colors of a signature swapped: KRKQ for KQKR
+	static String flip(final String signature) {
+		final int blackKing = signature.indexOf('K', 1);
+		return signature.substring(blackKing) + signature.substring(0, blackKing);
+	}
+
+	// the signature the table is stored under: the side with more material is white
+	static String canonical(final String signature) {
+		final int blackKing = signature.indexOf('K', 1);
+		final String white = signature.substring(0, blackKing);
+		final String black = signature.substring(blackKing);
+		final int whiteValue = material(white);
+		final int blackValue = material(black);
+		if (whiteValue > blackValue || (whiteValue == blackValue && white.compareTo(black) <= 0)) {
+			return signature;
+		}
+		return flip(signature);
+	}
+
+	// letters of the pieces in index order: white king, black king, other white pieces, other black pieces
+	static char[] pieceLetters(final String signature) {
+		final int blackKing = signature.indexOf('K', 1);
+		final char[] letters = new char[signature.length()];
+		letters[0] = 'K';
+		letters[1] = 'K';
+		int i = 2;
+		for (int j = 1; j < blackKing; j++) {
+			letters[i++] = signature.charAt(j);
+		}
+		for (int j = blackKing + 1; j < signature.length(); j++) {
+			letters[i++] = signature.charAt(j);
+		}
+		return letters;
+	}
+
+	// colors of the pieces in index order
+	static boolean[] whitePieces(final String signature) {
+		final int blackKing = signature.indexOf('K', 1);
+		final boolean[] white = new boolean[signature.length()];
+		white[0] = true;
+		for (int i = 2; i < blackKing + 1; i++) {
+			white[i] = true;
+		}
+		return white;
+	}
+
+	static char letter(final Piece.Type type) {
+		for (int i = 0; i < TYPES.length; i++) {
+			if (TYPES[i] == type) {
+				return PIECE_ORDER.charAt(i);
+			}
+		}
+		return 'K';
+	}
+
+	static int order(final char letter) {
+		return letter == 'K' ? -1 : PIECE_ORDER.indexOf(letter);
+	}
+
+	private static int material(final String side) {
+		int value = 0;
+		for (int i = 0; i < side.length(); i++) {
+			final int order = order(side.charAt(i));
+			if (order >= 0) {
+				value += TYPES[order].getPieceValue();
+			}
+		}
+		return value;
+	}
+
+	// the inflated block a thread read last
+	private static final class BlockCache {
+		final Inflater inflater = new Inflater();
+		final byte[] values = new byte[BLOCK_SIZE];
+		TableFile table;
+		int block = -1;
+	}
+
+	private static final class TableFile {
+		private final FileChannel channel;
+		private final MappedByteBuffer data;
+		private final long[] offsets;
+
+		// the marker for a missing table
+		TableFile() {
+			this.channel = null;
+			this.data = null;
+			this.offsets = null;
+		}
+
+		TableFile(final Path path) throws IOException {
+			this.channel = FileChannel.open(path, StandardOpenOption.READ);
+			this.data = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+			for (final byte b : MAGIC) {
+				if (this.data.get() != b) {
+					throw new IOException("Not a tablebase: " + path);
+				}
+			}
+			if (this.data.getInt() != VERSION) {
+				throw new IOException("Unsupported tablebase version: " + path);
+			}
+			this.data.getInt();
+			final int blocks = this.data.getInt();
+			this.offsets = new long[blocks + 1];
+			for (int i = 0; i <= blocks; i++) {
+				this.offsets[i] = this.data.getLong();
+			}
+		}
+
+		int value(final long index, final BlockCache cache) {
+			final int block = (int) (index / BLOCK_SIZE);
+			if (cache.table != this || cache.block != block) {
+				final int start = (int) this.offsets[block];
+				final int length = (int) (this.offsets[block + 1] - start);
+				final ByteBuffer compressed = this.data.duplicate();
+				compressed.position(start).limit(start + length);
+				cache.inflater.reset();
+				cache.inflater.setInput(compressed);
+				try {
+					cache.inflater.inflate(cache.values);
+				} catch (final DataFormatException e) {
+					throw new IllegalStateException("Corrupt tablebase block " + block, e);
+				}
+				cache.table = this;
+				cache.block = block;
+			}
+			return cache.values[(int) (index % BLOCK_SIZE)] & 0xFF;
+		}
+	}
+}
@@ -0,0 +1,685 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.DataFormatException;
+
+// writes endgame tablebases by retrograde analysis, see Tablebase for the file format
+// usage: java TablebaseGenerator <directory> KQK KRK KPK KBNK ...
+//
+// every placement of the pieces is a slot of a byte array (a perfect index, see Tablebase); the generator
+// has its own move generator on plain square arrays, building a Board per position would be far too slow
+// 1. each legal position counts its moves; captures and promotions lead to smaller tables, generated first,
+//    whose values are known at once; mates are distance 0
+// 2. pass k takes the positions at distance k - 1 and walks their moves backwards (no uncaptures, no
+//    unpromotions): predecessors of a loss are wins in k, predecessors of a win lose one escape, and
+//    those left without escapes are losses in k
+// positions never reached are draws; every step runs on all cores
+public class TablebaseGenerator {
+
+	private static final int LOCK_STRIPES = 4096;
+	// minimum loss distance of a position that has a move into a drawn smaller table
+	private static final int CANNOT_LOSE = 255;
+	private static final int MAX_DISTANCE = 253;
+	private static final int[] KING_STEPS = { -9, -8, -7, -1, 1, 7, 8, 9 };
+	private static final int[] KNIGHT_JUMPS = { -17, -15, -10, -6, 6, 10, 15, 17 };
+	private static final int[] ROOK_DIRECTIONS = { -8, -1, 1, 8 };
+	private static final int[] BISHOP_DIRECTIONS = { -9, -7, 7, 9 };
+	private static final int[] QUEEN_DIRECTIONS = { -9, -8, -7, -1, 1, 7, 8, 9 };
+
+	private final Path directory;
+	private final int threads;
+	// values of the tables generated or loaded so far, by canonical signature
+	private final Map<String, byte[]> tables;
+
+	public TablebaseGenerator(final Path directory, final int threads) {
+		this.directory = directory;
+		this.threads = threads;
+		this.tables = new HashMap<>();
+	}
+
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.err.println("usage: java TablebaseGenerator <directory> KQK KRK KPK KBNK ...");
+			System.exit(2);
+		}
+		final TablebaseGenerator generator = new TablebaseGenerator(Paths.get(args[0]),
+				Runtime.getRuntime().availableProcessors());
+		Files.createDirectories(generator.directory);
+		for (int i = 1; i < args.length; i++) {
+			generator.generate(args[i]);
+		}
+	}
+
+	// the values of a table: read from its file when it exists, generated together with its smaller tables otherwise
+	public byte[] generate(final String signature) throws IOException, InterruptedException {
+		final String canonical = Tablebase.canonical(normalize(signature));
+		final byte[] cached = this.tables.get(canonical);
+		if (cached != null) {
+			return cached;
+		}
+		final Path path = this.directory.resolve(canonical + Tablebase.FILE_SUFFIX);
+		final byte[] values;
+		if (Files.isRegularFile(path)) {
+			values = read(path, canonical.length());
+		} else {
+			for (final String smaller : conversions(canonical)) {
+				if (!smaller.equals("KK")) {
+					generate(smaller);
+				}
+			}
+			final long start = System.nanoTime();
+			final Generation generation = new Generation(canonical);
+			values = generation.run();
+			write(path, values, canonical.length());
+			System.out.println(canonical + ": longest mate " + generation.longestMate() + " plies, "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+		}
+		this.tables.put(canonical, values);
+		return values;
+	}
+
+	// the letters of each side in the order Q R B N P, e.g. KNBK becomes KBNK
+	static String normalize(final String signature) {
+		if (signature.length() > Tablebase.MAX_PIECES || signature.isEmpty() || signature.charAt(0) != 'K'
+				|| signature.indexOf('K', 1) < 0 || signature.indexOf('K', signature.indexOf('K', 1) + 1) >= 0) {
+			throw new IllegalArgumentException("Invalid material signature: " + signature);
+		}
+		final int blackKing = signature.indexOf('K', 1);
+		return "K" + sortSide(signature.substring(1, blackKing)) + "K" + sortSide(signature.substring(blackKing + 1));
+	}
+
+	private static String sortSide(final String pieces) {
+		final Character[] letters = new Character[pieces.length()];
+		for (int i = 0; i < letters.length; i++) {
+			letters[i] = pieces.charAt(i);
+			if (Tablebase.order(letters[i]) < 0) {
+				throw new IllegalArgumentException("Invalid piece letter: " + letters[i]);
+			}
+		}
+		Arrays.sort(letters, (first, second) -> Tablebase.order(first) - Tablebase.order(second));
+		final StringBuilder builder = new StringBuilder();
+		for (final Character letter : letters) {
+			builder.append(letter);
+		}
+		return builder.toString();
+	}
+
+	// the smaller tables a capture or a promotion (to a queen, the only one in this game) leads to
+	private static Set<String> conversions(final String signature) {
+		final char[] letters = Tablebase.pieceLetters(signature);
+		final boolean[] white = Tablebase.whitePieces(signature);
+		final Set<String> smaller = new LinkedHashSet<>();
+		for (int captured = -1; captured < letters.length; captured++) {
+			for (int promoted = -1; promoted < letters.length; promoted++) {
+				if (isConversion(letters, white, captured, promoted)) {
+					smaller.add(Tablebase.canonical(signature(letters, white, captured, promoted)));
+				}
+			}
+		}
+		return smaller;
+	}
+
+	// captured and promoted are piece indices, -1 for none; kings are never captured
+	private static boolean isConversion(final char[] letters, final boolean[] white, final int captured,
+			final int promoted) {
+		if (captured < 0 && promoted < 0) {
+			return false;
+		}
+		if (promoted >= 0 && (letters[promoted] != 'P' || (captured >= 0 && white[captured] == white[promoted]))) {
+			return false;
+		}
+		return captured < 0 || (captured >= 2 && captured != promoted);
+	}
+
+	private static String signature(final char[] letters, final boolean[] white, final int captured,
+			final int promoted) {
+		final StringBuilder whiteSide = new StringBuilder();
+		final StringBuilder blackSide = new StringBuilder();
+		for (int i = 2; i < letters.length; i++) {
+			if (i != captured) {
+				(white[i] ? whiteSide : blackSide).append(i == promoted ? 'Q' : letters[i]);
+			}
+		}
+		return normalize("K" + whiteSide + "K" + blackSide);
+	}
+
+	private static int positions(final int pieceCount) {
+		return 2 << (6 * pieceCount);
+	}
+
+	private void write(final Path path, final byte[] values, final int pieceCount) throws IOException {
+		final int blocks = (values.length + Tablebase.BLOCK_SIZE - 1) / Tablebase.BLOCK_SIZE;
+		final List<byte[]> compressed = new ArrayList<>(blocks);
+		final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		final byte[] buffer = new byte[Tablebase.BLOCK_SIZE * 2];
+		for (int block = 0; block < blocks; block++) {
+			deflater.reset();
+			deflater.setInput(values, block * Tablebase.BLOCK_SIZE,
+					Math.min(Tablebase.BLOCK_SIZE, values.length - block * Tablebase.BLOCK_SIZE));
+			deflater.finish();
+			final int length = deflater.deflate(buffer);
+			compressed.add(Arrays.copyOf(buffer, length));
+		}
+		deflater.end();
+		final ByteBuffer header = ByteBuffer.allocate(16 + 8 * (blocks + 1));
+		header.put(Tablebase.MAGIC).putInt(Tablebase.VERSION).putInt(pieceCount).putInt(blocks);
+		long offset = header.capacity();
+		for (final byte[] block : compressed) {
+			header.putLong(offset);
+			offset += block.length;
+		}
+		header.putLong(offset).flip();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			for (final byte[] block : compressed) {
+				final ByteBuffer data = ByteBuffer.wrap(block);
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
+			}
+		}
+	}
+
+	private static byte[] read(final Path path, final int pieceCount) throws IOException {
+		final ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+		for (final byte b : Tablebase.MAGIC) {
+			if (file.get() != b) {
+				throw new IOException("Not a tablebase: " + path);
+			}
+		}
+		if (file.getInt() != Tablebase.VERSION || file.getInt() != pieceCount) {
+			throw new IOException("Unsupported tablebase: " + path);
+		}
+		final int blocks = file.getInt();
+		final long[] offsets = new long[blocks + 1];
+		for (int i = 0; i <= blocks; i++) {
+			offsets[i] = file.getLong();
+		}
+		final byte[] values = new byte[positions(pieceCount)];
+		final Inflater inflater = new Inflater();
+		try {
+			for (int block = 0; block < blocks; block++) {
+				inflater.reset();
+				inflater.setInput(file.array(), (int) offsets[block], (int) (offsets[block + 1] - offsets[block]));
+				inflater.inflate(values, block * Tablebase.BLOCK_SIZE,
+						Math.min(Tablebase.BLOCK_SIZE, values.length - block * Tablebase.BLOCK_SIZE));
+			}
+		} catch (final DataFormatException e) {
+			throw new IOException("Corrupt tablebase: " + path, e);
+		} finally {
+			inflater.end();
+		}
+		return values;
+	}
+
+	// a capture and/or a promotion: the table it leads to and where the pieces go in its index
+	private final class Conversion {
+		// null for two bare kings, always a draw
+		final byte[] values;
+		final boolean flip;
+		final int pieceCount;
+		// index of each piece of the larger table in the smaller one, -1 for the captured piece
+		final int[] slots;
+
+		Conversion(final char[] letters, final boolean[] white, final int captured, final int promoted) {
+			final String signature = signature(letters, white, captured, promoted);
+			final String canonical = Tablebase.canonical(signature);
+			this.values = TablebaseGenerator.this.tables.get(canonical);
+			this.flip = !canonical.equals(signature);
+			this.pieceCount = canonical.length();
+			final char[] smallerLetters = Tablebase.pieceLetters(canonical);
+			final boolean[] smallerWhite = Tablebase.whitePieces(canonical);
+			final boolean[] used = new boolean[this.pieceCount];
+			this.slots = new int[letters.length];
+			Arrays.fill(this.slots, -1);
+			for (int i = 0; i < letters.length; i++) {
+				if (i == captured) {
+					continue;
+				}
+				final char letter = i == promoted ? 'Q' : letters[i];
+				for (int slot = 0; slot < this.pieceCount; slot++) {
+					if (!used[slot] && smallerLetters[slot] == letter && smallerWhite[slot] == (white[i] != this.flip)) {
+						used[slot] = true;
+						this.slots[i] = slot;
+						break;
+					}
+				}
+			}
+		}
+
+		// value of the position after the move, for the side to move then
+		int value(final int[] squares, final boolean whiteToMove) {
+			if (this.values == null) {
+				return Tablebase.DRAW;
+			}
+			int index = (whiteToMove != this.flip ? 0 : 1) << (6 * this.pieceCount);
+			for (int i = 0; i < squares.length; i++) {
+				if (this.slots[i] >= 0) {
+					index |= (this.flip ? squares[i] ^ 56 : squares[i]) << (6 * this.slots[i]);
+				}
+			}
+			final int value = this.values[index] & 0xFF;
+			return value == Tablebase.ILLEGAL ? Tablebase.DRAW : value;
+		}
+	}
+
+	// the generation of one table
+	private final class Generation {
+		private final int pieceCount;
+		private final char[] letters;
+		private final boolean[] white;
+		private final int size;
+		private final byte[] values;
+		// legal moves that stay in this table and do not lead to a win yet
+		private final byte[] escapes;
+		// a loss is at least this far away, because of captures or promotions into lost positions
+		private final byte[] minimumLoss;
+		private final Conversion[] conversions;
+		private final Object[] locks;
+		private final AtomicInteger longestMate;
+
+		Generation(final String signature) {
+			this.letters = Tablebase.pieceLetters(signature);
+			this.white = Tablebase.whitePieces(signature);
+			this.pieceCount = this.letters.length;
+			this.size = positions(this.pieceCount);
+			this.values = new byte[this.size];
+			this.escapes = new byte[this.size];
+			this.minimumLoss = new byte[this.size];
+			this.conversions = new Conversion[(this.pieceCount + 1) * (this.pieceCount + 1)];
+			for (int captured = -1; captured < this.pieceCount; captured++) {
+				for (int promoted = -1; promoted < this.pieceCount; promoted++) {
+					if (isConversion(this.letters, this.white, captured, promoted)) {
+						this.conversions[conversionIndex(captured, promoted)] = new Conversion(this.letters,
+								this.white, captured, promoted);
+					}
+				}
+			}
+			this.locks = new Object[LOCK_STRIPES];
+			for (int i = 0; i < LOCK_STRIPES; i++) {
+				this.locks[i] = new Object();
+			}
+			this.longestMate = new AtomicInteger();
+		}
+
+		int longestMate() {
+			return this.longestMate.get();
+		}
+
+		byte[] run() throws InterruptedException {
+			final ExecutorService pool = Executors.newFixedThreadPool(TablebaseGenerator.this.threads);
+			try {
+				runChunks(pool, (scratch, index) -> initialize(scratch, index));
+				final AtomicInteger distance = new AtomicInteger();
+				while (distance.get() <= this.longestMate.get()) {
+					final int value = distance.getAndIncrement() + 1;
+					runChunks(pool, (scratch, index) -> {
+						if ((this.values[index] & 0xFF) == value) {
+							retract(scratch, index, value - 1);
+						}
+					});
+				}
+			} finally {
+				pool.shutdown();
+			}
+			return this.values;
+		}
+
+		private void runChunks(final ExecutorService pool, final PositionTask task) throws InterruptedException {
+			final int chunks = TablebaseGenerator.this.threads * 4;
+			final int chunkSize = (this.size + chunks - 1) / chunks;
+			final List<Callable<Void>> jobs = new ArrayList<>();
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				final int from = chunk * chunkSize;
+				final int to = Math.min(this.size, from + chunkSize);
+				jobs.add(() -> {
+					final Scratch scratch = new Scratch(this.pieceCount);
+					for (int index = from; index < to; index++) {
+						task.run(scratch, index);
+					}
+					return null;
+				});
+			}
+			for (final Future<Void> result : pool.invokeAll(jobs)) {
+				try {
+					result.get();
+				} catch (final ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		}
+
+		// step 1: legality, mates, and the moves of a position
+		private void initialize(final Scratch scratch, final int index) {
+			final boolean whiteToMove = decode(scratch, index);
+			if (!isLegal(scratch, whiteToMove)) {
+				this.values[index] = (byte) Tablebase.ILLEGAL;
+				return;
+			}
+			int escapes = 0;
+			int conversionWin = Integer.MAX_VALUE;
+			int conversionLoss = 0;
+			boolean conversionDraw = false;
+			boolean anyMove = false;
+			final int[] squares = scratch.squares;
+			final int[] board = scratch.board;
+			final int king = whiteToMove ? 0 : 1;
+			for (int piece = 0; piece < this.pieceCount; piece++) {
+				if (this.white[piece] != whiteToMove) {
+					continue;
+				}
+				final int source = squares[piece];
+				final int targets = moves(scratch, piece, source, scratch.targets);
+				for (int t = 0; t < targets; t++) {
+					final int destination = scratch.targets[t];
+					final int captured = board[destination] - 1;
+					// play the move
+					board[source] = 0;
+					board[destination] = piece + 1;
+					squares[piece] = destination;
+					if (captured >= 0) {
+						squares[captured] = -1;
+					}
+					if (!isAttacked(scratch, squares[king], !whiteToMove)) {
+						anyMove = true;
+						final boolean promotion = this.letters[piece] == 'P' && (destination / 8 == 0 || destination / 8 == 7);
+						if (captured >= 0 || promotion) {
+							final int value = this.conversions[conversionIndex(captured, promotion ? piece : -1)]
+									.value(squares, !whiteToMove);
+							if (value == Tablebase.DRAW) {
+								conversionDraw = true;
+							} else if (Tablebase.isLoss(value)) {
+								conversionWin = Math.min(conversionWin, Tablebase.getDistanceToMate(value) + 1);
+							} else {
+								conversionLoss = Math.max(conversionLoss, Tablebase.getDistanceToMate(value) + 1);
+							}
+						} else {
+							escapes++;
+						}
+					}
+					// take it back
+					squares[piece] = source;
+					board[source] = piece + 1;
+					board[destination] = captured + 1;
+					if (captured >= 0) {
+						squares[captured] = destination;
+					}
+				}
+			}
+			this.escapes[index] = (byte) escapes;
+			this.minimumLoss[index] = (byte) (conversionDraw ? CANNOT_LOSE : conversionLoss);
+			if (!anyMove) {
+				// checkmate is a loss at distance 0, stalemate a draw
+				this.values[index] = (byte) (isAttacked(scratch, squares[king], !whiteToMove) ? 1 : Tablebase.DRAW);
+				this.minimumLoss[index] = (byte) CANNOT_LOSE;
+			} else if (conversionWin != Integer.MAX_VALUE) {
+				setDistance(index, conversionWin);
+			} else if (escapes == 0 && !conversionDraw) {
+				setDistance(index, conversionLoss);
+			}
+		}
+
+		// step 2: the predecessors of a position at the given distance
+		private void retract(final Scratch scratch, final int index, final int distance) {
+			final boolean whiteToMove = decode(scratch, index);
+			final boolean loss = distance % 2 == 0;
+			// the side that moved into this position
+			final boolean mover = !whiteToMove;
+			final int stmShift = 6 * this.pieceCount;
+			final int base = (index & ((1 << stmShift) - 1)) | (mover ? 0 : 1 << stmShift);
+			for (int piece = 0; piece < this.pieceCount; piece++) {
+				if (this.white[piece] != mover) {
+					continue;
+				}
+				final int destination = scratch.squares[piece];
+				final int sources = unmoves(scratch, piece, destination, scratch.targets);
+				for (int s = 0; s < sources; s++) {
+					final int predecessor = base & ~(63 << (6 * piece)) | scratch.targets[s] << (6 * piece);
+					synchronized (this.locks[predecessor & (LOCK_STRIPES - 1)]) {
+						final int value = this.values[predecessor] & 0xFF;
+						if (value == Tablebase.ILLEGAL) {
+							continue;
+						}
+						if (loss) {
+							// a move into a lost position: a win, unless a shorter one is known
+							if (value == Tablebase.DRAW
+									|| (Tablebase.isWin(value) && Tablebase.getDistanceToMate(value) > distance + 1)) {
+								setDistance(predecessor, distance + 1);
+							}
+						} else if (value == Tablebase.DRAW) {
+							final int escapes = (this.escapes[predecessor] & 0xFF) - 1;
+							this.escapes[predecessor] = (byte) escapes;
+							final int minimumLoss = this.minimumLoss[predecessor] & 0xFF;
+							if (escapes == 0 && minimumLoss != CANNOT_LOSE) {
+								setDistance(predecessor, Math.max(distance + 1, minimumLoss));
+							}
+						}
+					}
+				}
+			}
+		}
+
+		private void setDistance(final int index, final int distance) {
+			if (distance > MAX_DISTANCE) {
+				throw new IllegalStateException("Mate too long for the file format: " + distance);
+			}
+			this.values[index] = (byte) (distance + 1);
+			this.longestMate.accumulateAndGet(distance, Math::max);
+		}
+
+		// fills squares and board; true when white is to move
+		private boolean decode(final Scratch scratch, final int index) {
+			Arrays.fill(scratch.board, 0);
+			scratch.collision = false;
+			for (int piece = 0; piece < this.pieceCount; piece++) {
+				final int square = (index >>> (6 * piece)) & 63;
+				scratch.squares[piece] = square;
+				if (scratch.board[square] != 0) {
+					scratch.collision = true;
+				}
+				scratch.board[square] = piece + 1;
+			}
+			return (index >>> (6 * this.pieceCount)) == 0;
+		}
+
+		private boolean isLegal(final Scratch scratch, final boolean whiteToMove) {
+			if (scratch.collision) {
+				return false;
+			}
+			for (int piece = 2; piece < this.pieceCount; piece++) {
+				final int row = scratch.squares[piece] / 8;
+				if (this.letters[piece] == 'P' && (row == 0 || row == 7)) {
+					return false;
+				}
+			}
+			// the side that just moved cannot be in check
+			return !isAttacked(scratch, scratch.squares[whiteToMove ? 1 : 0], whiteToMove);
+		}
+
+		// true when a piece of the given color attacks the square
+		private boolean isAttacked(final Scratch scratch, final int target, final boolean byWhite) {
+			for (int piece = 0; piece < this.pieceCount; piece++) {
+				final int source = scratch.squares[piece];
+				if (this.white[piece] != byWhite || source < 0) {
+					continue;
+				}
+				final int rowDelta = target / 8 - source / 8;
+				final int fileDelta = target % 8 - source % 8;
+				final int rows = Math.abs(rowDelta);
+				final int files = Math.abs(fileDelta);
+				switch (this.letters[piece]) {
+				case 'K':
+					if (Math.max(rows, files) == 1) {
+						return true;
+					}
+					break;
+				case 'N':
+					if ((rows == 1 && files == 2) || (rows == 2 && files == 1)) {
+						return true;
+					}
+					break;
+				case 'P':
+					// white pawns move up the board, towards row 0
+					if (files == 1 && rowDelta == (this.white[piece] ? -1 : 1)) {
+						return true;
+					}
+					break;
+				default:
+					final boolean straight = (rows == 0) != (files == 0);
+					final boolean diagonal = rows == files && rows > 0;
+					final char letter = this.letters[piece];
+					if ((straight && (letter == 'R' || letter == 'Q')) || (diagonal && (letter == 'B' || letter == 'Q'))) {
+						final int step = Integer.signum(rowDelta) * 8 + Integer.signum(fileDelta);
+						int square = source + step;
+						while (square != target && scratch.board[square] == 0) {
+							square += step;
+						}
+						if (square == target) {
+							return true;
+						}
+					}
+					break;
+				}
+			}
+			return false;
+		}
+
+		// destinations of a piece: empty squares and squares of the opponent
+		private int moves(final Scratch scratch, final int piece, final int source, final int[] targets) {
+			final int[] board = scratch.board;
+			int count = 0;
+			if (this.letters[piece] == 'P') {
+				final int direction = this.white[piece] ? -8 : 8;
+				final int forward = source + direction;
+				if (board[forward] == 0) {
+					targets[count++] = forward;
+					final int startRow = this.white[piece] ? 6 : 1;
+					if (source / 8 == startRow && board[forward + direction] == 0) {
+						targets[count++] = forward + direction;
+					}
+				}
+				for (final int side : new int[] { -1, 1 }) {
+					final int file = source % 8 + side;
+					if (file >= 0 && file < 8) {
+						final int capture = forward + side;
+						final int occupant = board[capture] - 1;
+						if (occupant >= 0 && this.white[occupant] != this.white[piece]) {
+							targets[count++] = capture;
+						}
+					}
+				}
+				return count;
+			}
+			final int all = steps(scratch, piece, source, targets, false);
+			for (int i = 0; i < all; i++) {
+				final int occupant = board[targets[i]] - 1;
+				// the other king is never captured: the position before would be illegal
+				if (occupant < 0 || (this.white[occupant] != this.white[piece] && occupant >= 2)) {
+					targets[count++] = targets[i];
+				}
+			}
+			return count;
+		}
+
+		// squares a piece can have come from: empty squares it moves to the other way round
+		private int unmoves(final Scratch scratch, final int piece, final int destination, final int[] sources) {
+			final int[] board = scratch.board;
+			if (this.letters[piece] == 'P') {
+				int count = 0;
+				final int direction = this.white[piece] ? 8 : -8;
+				final int back = destination + direction;
+				final int backRow = back / 8;
+				if (back >= 0 && back < 64 && backRow != 0 && backRow != 7 && board[back] == 0) {
+					sources[count++] = back;
+					final int startRow = this.white[piece] ? 6 : 1;
+					final int jump = back + direction;
+					if (jump / 8 == startRow && board[jump] == 0) {
+						sources[count++] = jump;
+					}
+				}
+				return count;
+			}
+			return steps(scratch, piece, destination, sources, true);
+		}
+
+		// squares reached by a king, knight or slider; emptyOnly leaves out occupied squares
+		private int steps(final Scratch scratch, final int piece, final int from, final int[] targets,
+				final boolean emptyOnly) {
+			final int[] board = scratch.board;
+			int count = 0;
+			final char letter = this.letters[piece];
+			if (letter == 'K' || letter == 'N') {
+				for (final int step : letter == 'K' ? KING_STEPS : KNIGHT_JUMPS) {
+					final int to = from + step;
+					// a step may not wrap around the edge of the board
+					if (to >= 0 && to < 64 && Math.abs(to % 8 - from % 8) <= 2 && (!emptyOnly || board[to] == 0)) {
+						targets[count++] = to;
+					}
+				}
+				return count;
+			}
+			final int[] directions = letter == 'R' ? ROOK_DIRECTIONS
+					: letter == 'B' ? BISHOP_DIRECTIONS : QUEEN_DIRECTIONS;
+			for (final int direction : directions) {
+				int square = from;
+				while (true) {
+					final int next = square + direction;
+					if (next < 0 || next >= 64 || Math.abs(next % 8 - square % 8) > 1) {
+						break;
+					}
+					if (board[next] != 0) {
+						if (!emptyOnly) {
+							targets[count++] = next;
+						}
+						break;
+					}
+					targets[count++] = next;
+					square = next;
+				}
+			}
+			return count;
+		}
+
+		private int conversionIndex(final int captured, final int promoted) {
+			return (captured + 1) * (this.pieceCount + 1) + promoted + 1;
+		}
+	}
+
+	private interface PositionTask {
+		void run(Scratch scratch, int index);
+	}
+
+	// per thread state: the position being looked at
+	private static final class Scratch {
+		final int[] squares;
+		final int[] board = new int[64];
+		final int[] targets = new int[64];
+		boolean collision;
+
+		Scratch(final int pieceCount) {
+			this.squares = new int[pieceCount];
+		}
+	}
+}
@@ -1,23 +1,18 @@
-
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.GridLayout;
-import java.awt.Image;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
-import javax.imageio.ImageIO;
-import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingConstants;
 import javax.swing.border.EtchedBorder;
 
+// the pieces each side has lost, one cell per piece type with a count, and the material balance between them
+// captures are counted as moves are appended to the move log and uncounted as they are taken back,
+// so a redo touches only the cells of the moves that changed
 public class TakenPiecesPanel extends JPanel {
 
 	/**
@@ -26,94 +21,102 @@ public class TakenPiecesPanel extends JPanel {
 	private static final long serialVersionUID = 1L;
 	private final JPanel northPanel;
 	private final JPanel southPanel;
+	private final JLabel balanceLabel;
+	private final PieceSprites sprites;
+	private final int iconSize;
+	// one cell and one counter per color and piece type, by ordinal
+	private final JLabel[][] cells;
+	private final int[][] takenCounts;
+	// the moves counted so far, the start of the move log
+	private final List<Move> countedMoves;
 	private static final Color PANEL_COLOR = Color.decode("0xFDFE6");
 	private static final Dimension TAKEN_PIECES_DIMENSION = new Dimension(40, 80);
 	private static final EtchedBorder PANEL_BORDER = new EtchedBorder(EtchedBorder.RAISED);
+	// taken pieces are drawn this much smaller than on the board
+	private static final int ICON_SHRINK = 15;
+	// kings are never taken
+	private static final Piece.Type[] TAKEN_TYPES = { Piece.Type.PAWN, Piece.Type.KNIGHT, Piece.Type.BISHOP,
+			Piece.Type.ROOK, Piece.Type.QUEEN };
 
-	public TakenPiecesPanel() {
+	public TakenPiecesPanel(final PieceSprites sprites) {
 		super(new BorderLayout());
+		this.sprites = sprites;
+		this.iconSize = Math.max(1, sprites.getWidth() - ICON_SHRINK);
 		this.setBackground(PANEL_COLOR);
 		this.setBorder(PANEL_BORDER);
-		this.northPanel = new JPanel(new GridLayout(8, 2));
-		this.southPanel = new JPanel(new GridLayout(8, 2));
+		this.northPanel = new JPanel(new GridLayout(TAKEN_TYPES.length, 1));
+		this.southPanel = new JPanel(new GridLayout(TAKEN_TYPES.length, 1));
 		this.northPanel.setBackground(PANEL_COLOR);
 		this.southPanel.setBackground(PANEL_COLOR);
+		this.cells = new JLabel[PieceColor.values().length][Piece.Type.values().length];
+		this.takenCounts = new int[PieceColor.values().length][Piece.Type.values().length];
+		this.countedMoves = new ArrayList<>();
+		for (final PieceColor color : PieceColor.values()) {
+			for (final Piece.Type type : TAKEN_TYPES) {
+				final JLabel cell = new JLabel();
+				cell.setVisible(false);
+				this.cells[color.ordinal()][type.ordinal()] = cell;
+				// white pieces taken by black at the bottom, black pieces taken by white at the top
+				(color.white() ? this.southPanel : this.northPanel).add(cell);
+			}
+		}
+		this.balanceLabel = new JLabel("", SwingConstants.CENTER);
 		this.add(this.northPanel, BorderLayout.NORTH);
+		this.add(this.balanceLabel, BorderLayout.CENTER);
 		this.add(this.southPanel, BorderLayout.SOUTH);
 		setPreferredSize(TAKEN_PIECES_DIMENSION);
 	}
 
 	public void redo(final Table.MoveLog moveLog) {
-		this.southPanel.removeAll();
-		this.northPanel.removeAll();
-		final List<Piece> whiteTakenPieces = new ArrayList<>();
-		final List<Piece> blackTakenPieces = new ArrayList<>();
-
-		for (final Move move : moveLog.getMoves()) {
-			if (move.isAttack()) {
-				final Piece takenPiece = move.getAttackedPiece();
-				if (takenPiece.getColor().white()) {
-					whiteTakenPieces.add(takenPiece);
-				} else if (takenPiece.getColor().black()) {
-					blackTakenPieces.add(takenPiece);
-				} else {
-					throw new RuntimeException();
-				}
-			}
+		final List<Move> moves = moveLog.getMoves();
+		final int common = moveLog.commonPlies(this.countedMoves);
+		boolean changed = false;
+		// taken back
+		while (this.countedMoves.size() > common) {
+			changed |= count(this.countedMoves.remove(this.countedMoves.size() - 1), -1);
 		}
-
-		Collections.sort(whiteTakenPieces, new Comparator<Piece>() {
-			@Override
-			public int compare(final Piece p1, final Piece p2) {
-				if (p1.getType().getPieceValue() == p2.getType().getPieceValue()) {
-					return 0;
-				} else if (p1.getType().getPieceValue() > p2.getType().getPieceValue()) {
-					return 1;
-				} else {
-					return -1;
-				}
-			}
-		});
-
-		Collections.sort(blackTakenPieces, new Comparator<Piece>() {
-			@Override
-			public int compare(final Piece p1, final Piece p2) {
-				if (p1.getType().getPieceValue() == p2.getType().getPieceValue()) {
-					return 0;
-				} else if (p1.getType().getPieceValue() > p2.getType().getPieceValue()) {
-					return 1;
-				} else {
-					return -1;
-				}
-			}
-		});
-
-		for (final Piece takenPiece : whiteTakenPieces) {
-			try {
-				final BufferedImage image = ImageIO.read(new File("pieces/chessPieces/"
-						+ takenPiece.getColor().toString().substring(0, 1) + "" + takenPiece.toString() + ".gif"));
-				final ImageIcon icon = new ImageIcon(image);
-				final JLabel imageLabel = new JLabel(new ImageIcon(icon.getImage()
-						.getScaledInstance(icon.getIconWidth() - 15, icon.getIconWidth() - 15, Image.SCALE_SMOOTH)));
-				this.southPanel.add(imageLabel);
-			} catch (final IOException e) {
-				e.printStackTrace();
-			}
+		// appended
+		for (int i = common; i < moves.size(); i++) {
+			this.countedMoves.add(moves.get(i));
+			changed |= count(moves.get(i), 1);
+		}
+		if (changed) {
+			this.balanceLabel.setText(balanceText());
 		}
+	}
 
-		for (final Piece takenPiece : blackTakenPieces) {
-			try {
-				final BufferedImage image = ImageIO.read(new File("pieces/chessPieces/"
-						+ takenPiece.getColor().toString().substring(0, 1) + "" + takenPiece.toString() + ".gif"));
-				final ImageIcon icon = new ImageIcon(image);
-				final JLabel imageLabel = new JLabel(new ImageIcon(icon.getImage()
-						.getScaledInstance(icon.getIconWidth() - 15, icon.getIconWidth() - 15, Image.SCALE_SMOOTH)));
-				this.northPanel.add(imageLabel);
+	// material taken by white minus material taken by black
+	public int getMaterialBalance() {
+		int balance = 0;
+		for (final Piece.Type type : TAKEN_TYPES) {
+			balance += (this.takenCounts[PieceColor.BLACK.ordinal()][type.ordinal()]
+					- this.takenCounts[PieceColor.WHITE.ordinal()][type.ordinal()]) * type.getPieceValue();
+		}
+		return balance;
+	}
 
-			} catch (final IOException e) {
-				e.printStackTrace();
-			}
+	// true when the move is a capture; its cell is updated
+	private boolean count(final Move move, final int delta) {
+		if (!move.isAttack()) {
+			return false;
+		}
+		final Piece takenPiece = move.getAttackedPiece();
+		final int color = takenPiece.getColor().ordinal();
+		final int type = takenPiece.getType().ordinal();
+		final int count = this.takenCounts[color][type] + delta;
+		this.takenCounts[color][type] = count;
+		final JLabel cell = this.cells[color][type];
+		if (cell.getIcon() == null) {
+			cell.setIcon(this.sprites.getIcon(takenPiece, this.iconSize));
 		}
-		validate();
+		cell.setText(count > 1 ? "x" + count : "");
+		cell.setVisible(count > 0);
+		return true;
+	}
+
+	// in pawns, from white's point of view: +3 when white is a knight up
+	private String balanceText() {
+		final int pawns = getMaterialBalance() / Piece.Type.PAWN.getPieceValue();
+		return pawns > 0 ? "+" + pawns : pawns < 0 ? Integer.toString(pawns) : "";
 	}
-}
\ No newline at end of file
+}
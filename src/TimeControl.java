@@ -0,0 +1,77 @@
+// the time control of a chess clock, all times in milliseconds
+// sudden death: only the initial time; increment: added after every move (Fischer);
+// delay: the first part of every turn is not taken from the clock (simple or US delay)
+public final class TimeControl {
+
+	private final long initialTime;
+	private final long increment;
+	private final long delay;
+
+	private TimeControl(final long initialTime, final long increment, final long delay) {
+		if (initialTime <= 0 || increment < 0 || delay < 0) {
+			throw new IllegalArgumentException("Invalid time control: " + initialTime + ", " + increment + ", " + delay);
+		}
+		this.initialTime = initialTime;
+		this.increment = increment;
+		this.delay = delay;
+	}
+
+	public static TimeControl suddenDeath(final long initialTime) {
+		return new TimeControl(initialTime, 0, 0);
+	}
+
+	public static TimeControl withIncrement(final long initialTime, final long increment) {
+		return new TimeControl(initialTime, increment, 0);
+	}
+
+	public static TimeControl withDelay(final long initialTime, final long delay) {
+		return new TimeControl(initialTime, 0, delay);
+	}
+
+	// seconds as in PGN TimeControl tags: "300" sudden death, "180+2" increment, "300d5" delay
+	public static TimeControl parse(final String text) {
+		try {
+			final int plus = text.indexOf('+');
+			final int d = text.indexOf('d');
+			if (plus > 0) {
+				return withIncrement(seconds(text.substring(0, plus)), seconds(text.substring(plus + 1)));
+			}
+			if (d > 0) {
+				return withDelay(seconds(text.substring(0, d)), seconds(text.substring(d + 1)));
+			}
+			return suddenDeath(seconds(text));
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid time control: " + text, e);
+		}
+	}
+
+	private static long seconds(final String text) {
+		return Math.round(Double.parseDouble(text) * 1000);
+	}
+
+	public long getInitialTime() {
+		return this.initialTime;
+	}
+
+	public long getIncrement() {
+		return this.increment;
+	}
+
+	public long getDelay() {
+		return this.delay;
+	}
+
+	// the text parse() reads
+	@Override
+	public String toString() {
+		final String initial = formatSeconds(this.initialTime);
+		if (this.increment > 0) {
+			return initial + "+" + formatSeconds(this.increment);
+		}
+		return this.delay > 0 ? initial + "d" + formatSeconds(this.delay) : initial;
+	}
+
+	private static String formatSeconds(final long millis) {
+		return millis % 1000 == 0 ? Long.toString(millis / 1000) : Double.toString(millis / 1000.0);
+	}
+}
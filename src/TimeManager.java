@@ -0,0 +1,41 @@
+// splits the remaining clock time into a budget for one move
+// soft limit: no new iteration is started after it
+// hard limit: the running iteration is aborted when it is reached
+public final class TimeManager {
+
+	// time kept back for communication and for building the reply
+	private static final long MOVE_OVERHEAD = 30;
+	// moves we expect to still play when the clock has no moves-to-go
+	private static final int DEFAULT_MOVES_TO_GO = 30;
+	// how far the hard limit may stretch the soft limit
+	private static final int HARD_LIMIT_FACTOR = 4;
+
+	private final long softLimit;
+	private final long hardLimit;
+
+	public TimeManager(final SearchLimits limits, final PieceColor color) {
+		if (!limits.isTimed()) {
+			this.softLimit = Long.MAX_VALUE;
+			this.hardLimit = Long.MAX_VALUE;
+		} else if (limits.getMoveTime() > 0) {
+			// fixed time per move: use all of it
+			this.hardLimit = Math.max(1, limits.getMoveTime() - MOVE_OVERHEAD);
+			this.softLimit = this.hardLimit;
+		} else {
+			final long available = Math.max(1, limits.getTime(color) - MOVE_OVERHEAD);
+			final int movesToGo = limits.getMovesToGo() > 0 ? limits.getMovesToGo() : DEFAULT_MOVES_TO_GO;
+			final long share = available / movesToGo + limits.getIncrement(color) * 3 / 4;
+			// never plan to use more than most of what is left on the clock
+			this.hardLimit = Math.max(1, Math.min(share * HARD_LIMIT_FACTOR, available * 4 / 5));
+			this.softLimit = Math.max(1, Math.min(share, this.hardLimit));
+		}
+	}
+
+	public long getSoftLimit() {
+		return this.softLimit;
+	}
+
+	public long getHardLimit() {
+		return this.hardLimit;
+	}
+}
@@ -0,0 +1,216 @@
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+// many timers on one thread, to the millisecond: a hierarchical timing wheel
+// LEVELS wheels of SLOTS slots; a timer due within 256 ms sits in the slot of its tick in the first wheel,
+// one due within 65 s in the slot of its 256 ms block in the second, and so on up to 49 days; when the time
+// reaches a block, the timers of its slot move down a wheel. adding, moving and firing a timer is constant time
+//
+// timers are linked into their slots by the wheel thread only: schedule() only records the new deadline and queues
+// the timer, so any thread may call it without a lock. the thread sleeps until the next occupied slot of the first
+// wheel or the next block, and is woken when a timer is scheduled before that
+public final class TimerWheel implements Closeable {
+
+	public static final long NEVER = Long.MAX_VALUE;
+	private static final int SLOT_BITS = 8;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+	// timers further away wait in the last wheel and are moved down again when they come round
+	private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+	private static final long NANOS_PER_TICK = 1000000;
+
+	// System.nanoTime() of tick 0
+	private final long origin;
+	// first timer of every slot by wheel, the others are linked from it
+	private final Timer[][] slots;
+	// timers whose deadline changed since the wheel thread last looked
+	private final Queue<Timer> changed;
+	private final Thread thread;
+	// the tick the thread sleeps until
+	private volatile long wakeTick;
+	private volatile boolean closed;
+	// the next tick to run: every timer due before it has fired; only the wheel thread
+	private long tick;
+
+	public TimerWheel(final String name) {
+		this.origin = System.nanoTime();
+		this.slots = new Timer[LEVELS][SLOTS];
+		this.changed = new ConcurrentLinkedQueue<>();
+		this.thread = new Thread(this::run, name);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	// milliseconds since the wheel was made: the time deadlines are given in
+	public long now() {
+		return (System.nanoTime() - this.origin) / NANOS_PER_TICK;
+	}
+
+	// a timer that runs the task on the wheel thread; the task must be short and must not block
+	public Timer newTimer(final Runnable task) {
+		return new Timer(this, task);
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+		LockSupport.unpark(this.thread);
+	}
+
+	private void run() {
+		while (!this.closed) {
+			Timer timer;
+			while ((timer = this.changed.poll()) != null) {
+				// cleared before the deadline is read, so a later schedule() queues the timer again
+				timer.queued.set(false);
+				unlink(timer);
+				link(timer, timer.requested);
+			}
+			final long now = now();
+			while (this.tick <= now) {
+				advance();
+			}
+			final long next = nextTick();
+			this.wakeTick = next;
+			// a timer scheduled before wakeTick was written saw the old one and may not have woken the thread
+			if (this.changed.isEmpty()) {
+				LockSupport.parkNanos(this, this.origin + next * NANOS_PER_TICK - System.nanoTime());
+			}
+		}
+	}
+
+	// runs the tick: moves the timers of the blocks starting at it down, then fires the timers due at it
+	private void advance() {
+		final long current = this.tick;
+		for (int level = LEVELS - 1; level > 0; level--) {
+			final int shift = SLOT_BITS * level;
+			if ((current & ((1L << shift) - 1)) == 0) {
+				Timer timer = detach(level, (int) ((current >>> shift) & SLOT_MASK));
+				while (timer != null) {
+					final Timer next = timer.next;
+					link(timer, timer.deadline);
+					timer = next;
+				}
+			}
+		}
+		Timer timer = detach(0, (int) (current & SLOT_MASK));
+		this.tick = current + 1;
+		while (timer != null) {
+			final Timer next = timer.next;
+			if (timer.deadline > current) {
+				// beyond MAX_DELAY when it was linked
+				link(timer, timer.deadline);
+			} else {
+				timer.prev = null;
+				timer.next = null;
+				timer.deadline = NEVER;
+				try {
+					timer.task.run();
+				} catch (final RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+			timer = next;
+		}
+	}
+
+	// the next tick with work: an occupied slot of the first wheel or the start of the next block
+	private long nextTick() {
+		final long blockEnd = this.tick | SLOT_MASK;
+		if ((this.tick & SLOT_MASK) == 0) {
+			return this.tick;
+		}
+		for (long t = this.tick; t <= blockEnd; t++) {
+			if (this.slots[0][(int) (t & SLOT_MASK)] != null) {
+				return t;
+			}
+		}
+		return blockEnd + 1;
+	}
+
+	private void link(final Timer timer, final long deadline) {
+		timer.deadline = deadline;
+		if (deadline == NEVER) {
+			return;
+		}
+		// an overdue timer fires on the next tick
+		final long placed = Math.max(this.tick, Math.min(deadline, this.tick + MAX_DELAY));
+		final long delay = placed - this.tick;
+		int level = 0;
+		while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+			level++;
+		}
+		final int slot = (int) ((placed >>> (SLOT_BITS * level)) & SLOT_MASK);
+		timer.level = level;
+		timer.slot = slot;
+		timer.prev = null;
+		timer.next = this.slots[level][slot];
+		if (timer.next != null) {
+			timer.next.prev = timer;
+		}
+		this.slots[level][slot] = timer;
+	}
+
+	private void unlink(final Timer timer) {
+		if (timer.deadline == NEVER) {
+			return;
+		}
+		if (timer.prev != null) {
+			timer.prev.next = timer.next;
+		} else {
+			this.slots[timer.level][timer.slot] = timer.next;
+		}
+		if (timer.next != null) {
+			timer.next.prev = timer.prev;
+		}
+		timer.prev = null;
+		timer.next = null;
+	}
+
+	// takes all timers of a slot off the wheel and returns the first
+	private Timer detach(final int level, final int slot) {
+		final Timer first = this.slots[level][slot];
+		this.slots[level][slot] = null;
+		return first;
+	}
+
+	public static final class Timer {
+		private final TimerWheel wheel;
+		private final Runnable task;
+		private final AtomicBoolean queued;
+		private volatile long requested;
+		// the fields below belong to the wheel thread
+		private long deadline;
+		private int level;
+		private int slot;
+		private Timer prev;
+		private Timer next;
+
+		private Timer(final TimerWheel wheel, final Runnable task) {
+			this.wheel = wheel;
+			this.task = task;
+			this.queued = new AtomicBoolean();
+			this.requested = NEVER;
+			this.deadline = NEVER;
+		}
+
+		// runs the task once now() reaches the deadline, in place of any deadline set before
+		public void schedule(final long deadline) {
+			this.requested = deadline;
+			if (this.queued.compareAndSet(false, true)) {
+				this.wheel.changed.add(this);
+			}
+			if (deadline < this.wheel.wakeTick) {
+				LockSupport.unpark(this.wheel.thread);
+			}
+		}
+
+		public void cancel() {
+			schedule(NEVER);
+		}
+	}
+}
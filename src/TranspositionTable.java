@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+// hash table of search results shared by all search threads
+// every entry is a key and a packed data word; the key is stored xor-ed with the data
+// so that an entry torn by two threads writing at the same time is simply a miss
+public final class TranspositionTable {
+
+	static final int EXACT = 0;
+	static final int LOWER_BOUND = 1;
+	static final int UPPER_BOUND = 2;
+
+	private static final int ENTRY_BYTES = 16;
+	// data layout: score (32 bits) | depth (8) | flag (2) | from (6) | to (6) | has move (1) | valid (1)
+	private static final long VALID = 1L << 55;
+	private static final long HAS_MOVE = 1L << 54;
+
+	private long[] keys;
+	private long[] data;
+	private int mask;
+
+	public TranspositionTable(final int megabytes) {
+		resize(megabytes);
+	}
+
+	// the number of entries is the largest power of two that fits into the given size
+	public synchronized void resize(final int megabytes) {
+		final long bytes = Math.max(1, megabytes) * 1024L * 1024L;
+		int entries = Integer.highestOneBit((int) Math.min(bytes / ENTRY_BYTES, 1 << 30));
+		this.keys = new long[entries];
+		this.data = new long[entries];
+		this.mask = entries - 1;
+	}
+
+	public synchronized void clear() {
+		Arrays.fill(this.keys, 0);
+		Arrays.fill(this.data, 0);
+	}
+
+	// packed data of the entry, or 0 when the position is not in the table
+	public long probe(final long key) {
+		final int index = (int) key & this.mask;
+		final long entry = this.data[index];
+		if ((this.keys[index] ^ entry) == key && (entry & VALID) != 0) {
+			return entry;
+		}
+		return 0;
+	}
+
+	// mate scores are stored relative to the node and turned back into distances from the root on probe
+	public void store(final long key, final int depth, final int score, final int flag, final Move bestMove,
+			final int ply) {
+		final int index = (int) key & this.mask;
+		final long oldEntry = this.data[index];
+		// keep a deeper result of the same position
+		if ((this.keys[index] ^ oldEntry) == key && (oldEntry & VALID) != 0 && getDepth(oldEntry) > depth) {
+			return;
+		}
+		long entry = (scoreToTable(score, ply) & 0xFFFFFFFFL) | ((long) (depth & 0xFF) << 32)
+				| ((long) flag << 40) | VALID;
+		if (bestMove != null && bestMove.getCurrentCoordinate() >= 0) {
+			entry |= ((long) bestMove.getCurrentCoordinate() << 42) | ((long) bestMove.getDestination() << 48)
+					| HAS_MOVE;
+		}
+		this.data[index] = entry;
+		this.keys[index] = key ^ entry;
+	}
+
+	static int getScore(final long entry, final int ply) {
+		return scoreFromTable((int) entry, ply);
+	}
+
+	static int getDepth(final long entry) {
+		return (int) (entry >>> 32) & 0xFF;
+	}
+
+	static int getFlag(final long entry) {
+		return (int) (entry >>> 40) & 0x3;
+	}
+
+	static boolean hasMove(final long entry) {
+		return (entry & HAS_MOVE) != 0;
+	}
+
+	static int getMoveSource(final long entry) {
+		return (int) (entry >>> 42) & 0x3F;
+	}
+
+	static int getMoveDestination(final long entry) {
+		return (int) (entry >>> 48) & 0x3F;
+	}
+
+	private static int scoreToTable(final int score, final int ply) {
+		if (score > AlphaBeta.MATE - AlphaBeta.MAX_DEPTH * 2) {
+			return score + ply;
+		} else if (score < -AlphaBeta.MATE + AlphaBeta.MAX_DEPTH * 2) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	private static int scoreFromTable(final int score, final int ply) {
+		if (score > AlphaBeta.MATE - AlphaBeta.MAX_DEPTH * 2) {
+			return score - ply;
+		} else if (score < -AlphaBeta.MATE + AlphaBeta.MAX_DEPTH * 2) {
+			return score + ply;
+		}
+		return score;
+	}
+}
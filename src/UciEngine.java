@@ -0,0 +1,389 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// headless engine speaking the Universal Chess Interface over stdin and stdout
+// nothing on this path touches AWT or Swing, so it starts fast and runs on servers without a display
+public class UciEngine {
+
+	private static final String ENGINE_NAME = "Chess";
+	private static final int DEFAULT_HASH_MEGABYTES = 16;
+	private static final int MAX_HASH_MEGABYTES = 4096;
+	private static final int MAX_THREADS = 64;
+
+	private final BufferedReader input;
+	private final PrintStream output;
+	private final TranspositionTable transpositionTable;
+	// one searcher per thread, all of them share the transposition table (lazy SMP)
+	private final List<AlphaBeta> searchers;
+	private int threads;
+	// Polyglot book played from before searching, when OwnBook is on
+	private PolyglotBook book;
+	private boolean ownBook;
+	// shared by all searchers, null when no TablebasePath is set
+	private Tablebase tablebase;
+	private Board board;
+	private Thread searchThread;
+	// stops the running search or ends its pondering; made before its thread starts, so an early "stop" or
+	// "ponderhit" is not lost
+	private SearchControl searchControl;
+	// an infinite search must not report its best move before "stop"
+	private volatile boolean stopRequested;
+
+	public UciEngine(final InputStream input, final PrintStream output) {
+		this.input = new BufferedReader(new InputStreamReader(input));
+		this.output = output;
+		this.transpositionTable = new TranspositionTable(DEFAULT_HASH_MEGABYTES);
+		this.searchers = new ArrayList<>();
+		this.threads = 1;
+		this.board = Board.createStandardBoard();
+	}
+
+	// read commands until "quit" or the end of the input
+	public void run() {
+		try {
+			String line;
+			while ((line = this.input.readLine()) != null) {
+				if (!handleCommand(line.trim())) {
+					break;
+				}
+			}
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+		stopSearch();
+	}
+
+	// false when the engine should quit
+	boolean handleCommand(final String line) {
+		if (line.isEmpty()) {
+			return true;
+		}
+		final String[] tokens = line.split("\\s+");
+		switch (tokens[0]) {
+		case "uci":
+			send("id name " + ENGINE_NAME);
+			send("id author HinaMatsuzaki");
+			send("option name Hash type spin default " + DEFAULT_HASH_MEGABYTES + " min 1 max " + MAX_HASH_MEGABYTES);
+			send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+			send("option name Ponder type check default false");
+			send("option name OwnBook type check default false");
+			send("option name BookFile type string default <empty>");
+			send("option name TablebasePath type string default <empty>");
+			send("uciok");
+			break;
+		case "isready":
+			send("readyok");
+			break;
+		case "ucinewgame":
+			stopSearch();
+			this.transpositionTable.clear();
+			this.board = Board.createStandardBoard();
+			break;
+		case "setoption":
+			setOption(tokens);
+			break;
+		case "position":
+			stopSearch();
+			setPosition(tokens);
+			break;
+		case "go":
+			go(tokens);
+			break;
+		case "stop":
+			stopSearch();
+			break;
+		case "ponderhit":
+			// the opponent played the move we pondered on: the running search goes on with its clock
+			if (this.searchThread != null) {
+				this.searchControl.ponderHit();
+			}
+			break;
+		case "quit":
+			return false;
+		default:
+			send("info string unknown command " + tokens[0]);
+			break;
+		}
+		return true;
+	}
+
+	private void setOption(final String[] tokens) {
+		// setoption name <name> value <value>
+		final StringBuilder name = new StringBuilder();
+		String value = null;
+		for (int i = 1; i < tokens.length; i++) {
+			if (tokens[i].equals("name")) {
+				continue;
+			}
+			if (tokens[i].equals("value")) {
+				// the value runs to the end of the line: a book path may contain spaces
+				value = i + 1 < tokens.length ? String.join(" ", Arrays.copyOfRange(tokens, i + 1, tokens.length))
+						: null;
+				break;
+			}
+			if (name.length() > 0) {
+				name.append(' ');
+			}
+			name.append(tokens[i]);
+		}
+		if (value == null) {
+			return;
+		}
+		try {
+			if (name.toString().equalsIgnoreCase("Hash")) {
+				stopSearch();
+				this.transpositionTable.resize(clamp(Integer.parseInt(value), 1, MAX_HASH_MEGABYTES));
+			} else if (name.toString().equalsIgnoreCase("Threads")) {
+				stopSearch();
+				this.threads = clamp(Integer.parseInt(value), 1, MAX_THREADS);
+			} else if (name.toString().equalsIgnoreCase("OwnBook")) {
+				this.ownBook = Boolean.parseBoolean(value);
+			} else if (name.toString().equalsIgnoreCase("BookFile")) {
+				openBook(value);
+			} else if (name.toString().equalsIgnoreCase("TablebasePath")) {
+				stopSearch();
+				this.tablebase = value.isEmpty() || value.equals("<empty>") ? null : new Tablebase(Paths.get(value));
+			} else if (name.toString().equalsIgnoreCase("Ponder")) {
+				// the GUI decides when to send "go ponder"; nothing to prepare
+			} else {
+				send("info string unknown option " + name);
+			}
+		} catch (final NumberFormatException e) {
+			send("info string invalid value " + value);
+		}
+	}
+
+	private void openBook(final String path) {
+		try {
+			if (this.book != null) {
+				this.book.close();
+				this.book = null;
+			}
+			if (!path.isEmpty() && !path.equals("<empty>")) {
+				this.book = new PolyglotBook(Paths.get(path));
+			}
+		} catch (final IOException e) {
+			send("info string cannot open book " + path + ": " + e.getMessage());
+		}
+	}
+
+	private void setPosition(final String[] tokens) {
+		// position startpos [moves ...] or position fen <fen> [moves ...]
+		int movesIndex = tokens.length;
+		for (int i = 1; i < tokens.length; i++) {
+			if (tokens[i].equals("moves")) {
+				movesIndex = i;
+				break;
+			}
+		}
+		Board position;
+		if (tokens.length > 1 && tokens[1].equals("fen")) {
+			final StringBuilder fen = new StringBuilder();
+			for (int i = 2; i < movesIndex; i++) {
+				fen.append(tokens[i]).append(' ');
+			}
+			try {
+				position = FenUtilities.createGameFromFEN(fen.toString());
+			} catch (final RuntimeException e) {
+				send("info string invalid fen " + fen.toString().trim());
+				return;
+			}
+		} else {
+			position = Board.createStandardBoard();
+		}
+		for (int i = movesIndex + 1; i < tokens.length; i++) {
+			final Move move = NotationCodec.parseUci(position, tokens[i]);
+			final MoveTransition transition = position.currentPlayer().makeMove(move);
+			if (!transition.getMoveStatus().done()) {
+				send("info string illegal move " + tokens[i]);
+				break;
+			}
+			position = transition.getNextBoard();
+		}
+		this.board = position;
+	}
+
+	private void go(final String[] tokens) {
+		stopSearch();
+		final SearchLimits.Builder builder = new SearchLimits.Builder();
+		try {
+			for (int i = 1; i < tokens.length; i++) {
+				switch (tokens[i]) {
+				case "wtime":
+					builder.setWhiteTime(Long.parseLong(tokens[++i]));
+					break;
+				case "btime":
+					builder.setBlackTime(Long.parseLong(tokens[++i]));
+					break;
+				case "winc":
+					builder.setWhiteIncrement(Long.parseLong(tokens[++i]));
+					break;
+				case "binc":
+					builder.setBlackIncrement(Long.parseLong(tokens[++i]));
+					break;
+				case "movestogo":
+					builder.setMovesToGo(Integer.parseInt(tokens[++i]));
+					break;
+				case "movetime":
+					builder.setMoveTime(Long.parseLong(tokens[++i]));
+					break;
+				case "depth":
+					builder.setDepth(Integer.parseInt(tokens[++i]));
+					break;
+				case "nodes":
+					builder.setNodes(Long.parseLong(tokens[++i]));
+					break;
+				case "infinite":
+					builder.setInfinite(true);
+					break;
+				case "ponder":
+					builder.setPonder(true);
+					break;
+				default:
+					break;
+				}
+			}
+		} catch (final NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			send("info string invalid go command");
+			return;
+		}
+		final SearchLimits limits = builder.build();
+		final Board position = this.board;
+		// a book move needs no search; pondering and infinite searches are left to the engine
+		if (this.ownBook && this.book != null && !limits.isPonder() && !limits.isInfinite()) {
+			final Move bookMove = this.book.probe(position);
+			if (bookMove != Move.NULL_MOVE) {
+				send("bestmove " + NotationCodec.toUci(bookMove));
+				return;
+			}
+		}
+		prepareSearchers(position);
+		this.stopRequested = false;
+		final SearchControl control = new SearchControl(limits.isPonder());
+		this.searchControl = control;
+		this.searchThread = new Thread(() -> search(position, limits, control), "uci-search");
+		this.searchThread.start();
+	}
+
+	private void prepareSearchers(final Board position) {
+		while (this.searchers.size() < this.threads) {
+			final AlphaBeta searcher = new AlphaBeta(AlphaBeta.MAX_DEPTH, new StandardBoardEvaluator(),
+					SearchParameters.createDefault(), this.transpositionTable);
+			this.searchers.add(searcher);
+		}
+		while (this.searchers.size() > this.threads) {
+			this.searchers.remove(this.searchers.size() - 1);
+		}
+		for (final AlphaBeta searcher : this.searchers) {
+			searcher.setTablebase(this.tablebase);
+		}
+		this.searchers.get(0).setSearchListener((depth, score, nodes, elapsedMillis, bestMove) -> sendInfo(position,
+				depth, score, nodes, elapsedMillis));
+	}
+
+	// runs on the search thread; helper threads only fill the shared transposition table
+	private void search(final Board position, final SearchLimits limits, final SearchControl control) {
+		final List<Thread> helpers = new ArrayList<>();
+		final SearchLimits helperLimits = new SearchLimits.Builder().setInfinite(true).build();
+		// the helpers search until the main search ends, even when it ends before a helper thread got going
+		final SearchControl helperControl = new SearchControl();
+		for (int i = 1; i < this.searchers.size(); i++) {
+			final AlphaBeta helper = this.searchers.get(i);
+			final Thread thread = new Thread(() -> helper.execute(position, helperLimits, helperControl),
+					"uci-helper-" + i);
+			thread.setDaemon(true);
+			helpers.add(thread);
+			thread.start();
+		}
+		final AlphaBeta mainSearcher = this.searchers.get(0);
+		final Move bestMove = mainSearcher.execute(position, limits, control);
+		helperControl.stop();
+		for (final Thread helper : helpers) {
+			try {
+				helper.join();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (limits.isInfinite()) {
+			waitForStop();
+		}
+		// the expected reply is the second move of the principal variation
+		final List<Move> principalVariation = mainSearcher.getPrincipalVariation(position, 2);
+		if (principalVariation.size() == 2 && principalVariation.get(0).equals(bestMove)) {
+			send("bestmove " + NotationCodec.toUci(bestMove) + " ponder " + NotationCodec.toUci(principalVariation.get(1)));
+		} else {
+			send("bestmove " + NotationCodec.toUci(bestMove));
+		}
+	}
+
+	private synchronized void waitForStop() {
+		while (!this.stopRequested) {
+			try {
+				wait();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	// stop a running search and wait until it has reported its best move
+	private void stopSearch() {
+		if (this.searchThread == null) {
+			return;
+		}
+		synchronized (this) {
+			this.stopRequested = true;
+			notifyAll();
+		}
+		this.searchControl.stop();
+		try {
+			this.searchThread.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.searchThread = null;
+	}
+
+	private void sendInfo(final Board position, final int depth, final int score, final long nodes,
+			final long elapsedMillis) {
+		final String scoreText;
+		if (Math.abs(score) > AlphaBeta.MATE - AlphaBeta.MAX_DEPTH * 2) {
+			final int plies = AlphaBeta.MATE - Math.abs(score);
+			scoreText = "mate " + (score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2);
+		} else {
+			scoreText = "cp " + score;
+		}
+		send("info depth " + depth + " score " + scoreText + " nodes " + nodes + " nps "
+				+ (nodes * 1000 / Math.max(1, elapsedMillis)) + " time " + elapsedMillis + " pv "
+				+ principalVariationText(position, depth));
+	}
+
+	private String principalVariationText(final Board position, final int depth) {
+		final StringBuilder builder = new StringBuilder();
+		for (final Move move : this.searchers.get(0).getPrincipalVariation(position, depth)) {
+			if (builder.length() > 0) {
+				builder.append(' ');
+			}
+			NotationCodec.appendUci(move, builder);
+		}
+		return builder.toString();
+	}
+
+	private synchronized void send(final String message) {
+		this.output.println(message);
+		this.output.flush();
+	}
+
+	private static int clamp(final int value, final int min, final int max) {
+		return Math.max(min, Math.min(max, value));
+	}
+}
@@ -0,0 +1,76 @@
+import java.util.Random;
+
+// 64-bit position keys: every (piece, tile) pair, the side to move, each castling right
+// and each en passant file gets a fixed random number; the key of a board is the xor of its features
+public final class ZobristHashing {
+
+	// fixed seed so keys stay the same from one run to the next
+	private static final long SEED = 0x43686573734C4FL;
+	private static final long[][] PIECE_KEYS = new long[12][64];
+	private static final long[] CASTLING_KEYS = new long[4];
+	private static final long[] EN_PASSANT_KEYS = new long[8];
+	private static final long BLACK_TO_MOVE_KEY;
+
+	static {
+		final Random random = new Random(SEED);
+		for (final long[] pieceKeys : PIECE_KEYS) {
+			for (int i = 0; i < pieceKeys.length; i++) {
+				pieceKeys[i] = random.nextLong();
+			}
+		}
+		for (int i = 0; i < CASTLING_KEYS.length; i++) {
+			CASTLING_KEYS[i] = random.nextLong();
+		}
+		for (int i = 0; i < EN_PASSANT_KEYS.length; i++) {
+			EN_PASSANT_KEYS[i] = random.nextLong();
+		}
+		BLACK_TO_MOVE_KEY = random.nextLong();
+	}
+
+	private ZobristHashing() {
+		throw new RuntimeException();
+	}
+
+	public static long hash(final Board board) {
+		long key = 0;
+		for (int i = 0; i < 64; i++) {
+			final Tile tile = board.getTile(i);
+			if (tile.occupied()) {
+				key ^= PIECE_KEYS[pieceIndex(tile.getPiece())][i];
+			}
+		}
+		if (board.currentPlayer().getColor().black()) {
+			key ^= BLACK_TO_MOVE_KEY;
+		}
+		// castling rights: king and rook have not moved yet
+		if (canCastle(board, 60, 63)) {
+			key ^= CASTLING_KEYS[0];
+		}
+		if (canCastle(board, 60, 56)) {
+			key ^= CASTLING_KEYS[1];
+		}
+		if (canCastle(board, 4, 7)) {
+			key ^= CASTLING_KEYS[2];
+		}
+		if (canCastle(board, 4, 0)) {
+			key ^= CASTLING_KEYS[3];
+		}
+		if (board.getEnPassantPawn() != null) {
+			key ^= EN_PASSANT_KEYS[board.getEnPassantPawn().getPosition() % 8];
+		}
+		return key;
+	}
+
+	// 0 to 11: white pawn, black pawn, white knight, ... black king
+	static int pieceIndex(final Piece piece) {
+		return piece.getType().ordinal() * 2 + (piece.getColor().black() ? 1 : 0);
+	}
+
+	private static boolean canCastle(final Board board, final int kingPosition, final int rookPosition) {
+		final Tile kingTile = board.getTile(kingPosition);
+		final Tile rookTile = board.getTile(rookPosition);
+		return kingTile.occupied() && kingTile.getPiece().getType().isKing() && kingTile.getPiece().firstMove()
+				&& rookTile.occupied() && rookTile.getPiece().getType().isRook() && rookTile.getPiece().firstMove()
+				&& kingTile.getPiece().getColor() == rookTile.getPiece().getColor();
+	}
+}